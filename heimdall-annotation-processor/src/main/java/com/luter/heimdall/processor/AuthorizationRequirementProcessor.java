@@ -0,0 +1,401 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.processor;
+
+import com.luter.heimdall.core.annotation.*;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * 注解授权要求处理器
+ * <p>
+ * 编译期扫描 RequiresUser、RequiresRole、RequiresRoles、RequiresPermission、RequiresPermissions 注解，
+ * 为每一个使用了这些注解的类生成一个 AuthorizationRequirementIndex 子类，
+ * 按与运行期相同的规则(方法注解优先)合并方法和类上的注解，并注册到 ServiceLoader 配置文件。
+ * <p>
+ * 运行期 AuthorizationRequirementResolver 启动时加载这些索引，拦截时不再需要反射解析注解。
+ * <p>
+ * 使用方式: 把本模块加入编译期依赖(或者 maven-compiler-plugin 的 annotationProcessorPaths)即可。
+ *
+ * @author Luter
+ */
+@SupportedAnnotationTypes({
+        "com.luter.heimdall.core.annotation.RequiresUser",
+        "com.luter.heimdall.core.annotation.RequiresRole",
+        "com.luter.heimdall.core.annotation.RequiresRoles",
+        "com.luter.heimdall.core.annotation.RequiresPermission",
+        "com.luter.heimdall.core.annotation.RequiresPermissions"})
+public class AuthorizationRequirementProcessor extends AbstractProcessor {
+    /**
+     * 生成类名后缀
+     */
+    private static final String SUFFIX = "_HeimdallRequirements";
+    /**
+     * 索引基类
+     */
+    private static final String INDEX_CLASS = "com.luter.heimdall.core.authorization.requirement.AuthorizationRequirementIndex";
+    /**
+     * 授权要求类
+     */
+    private static final String REQUIREMENT_CLASS = "com.luter.heimdall.core.authorization.requirement.AuthorizationRequirement";
+    /**
+     * ServiceLoader 配置文件
+     */
+    private static final String SERVICE_FILE = "META-INF/services/" + INDEX_CLASS;
+    /**
+     * 授权注解
+     */
+    private static final List<Class<? extends Annotation>> ANNOTATIONS = Arrays.asList(
+            RequiresUser.class, RequiresRole.class, RequiresRoles.class, RequiresPermission.class, RequiresPermissions.class);
+    /**
+     * 已经生成的索引类，最后一轮写入 ServiceLoader 配置文件
+     */
+    private final Set<String> generated = new TreeSet<>();
+    /**
+     * 已经处理过的类
+     */
+    private final Set<String> processed = new HashSet<>();
+
+    private Messager messager;
+    private Elements elements;
+    private Types types;
+    private Filer filer;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        this.messager = processingEnv.getMessager();
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.filer = processingEnv.getFiler();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+        final Set<TypeElement> typeElements = new LinkedHashSet<>();
+        for (Class<? extends Annotation> annotation : ANNOTATIONS) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                final Element type = element.getKind() == ElementKind.METHOD ? element.getEnclosingElement() : element;
+                // 接口上的注解运行期不生效，只处理类
+                if (type.getKind().isClass()) {
+                    typeElements.add((TypeElement) type);
+                }
+            }
+        }
+        for (TypeElement typeElement : typeElements) {
+            if (processed.add(typeElement.getQualifiedName().toString())) {
+                generate(typeElement);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 为一个类生成授权要求索引
+     *
+     * @param type the type
+     */
+    private void generate(TypeElement type) {
+        if (!isAccessible(type)) {
+            messager.printMessage(Diagnostic.Kind.NOTE, "Heimdall: 类型不可访问，运行期通过反射解析授权注解", type);
+            return;
+        }
+        final StringBuilder body = new StringBuilder();
+        final String typeLiteral = types.erasure(type.asType()).toString();
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            final Set<Modifier> modifiers = method.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            final String requirement = requirement(method, type);
+            if (null == requirement) {
+                continue;
+            }
+            final StringBuilder parameterTypes = new StringBuilder();
+            boolean accessible = true;
+            for (VariableElement parameter : method.getParameters()) {
+                final TypeMirror erasure = types.erasure(parameter.asType());
+                if (!isAccessible(erasure)) {
+                    accessible = false;
+                    break;
+                }
+                if (parameterTypes.length() > 0) {
+                    parameterTypes.append(", ");
+                }
+                parameterTypes.append(erasure.toString()).append(".class");
+            }
+            if (!accessible) {
+                continue;
+            }
+            body.append("        put(").append(typeLiteral).append(".class, ")
+                    .append(literal(method.getSimpleName().toString()))
+                    .append(", new Class<?>[]{").append(parameterTypes).append("},\n")
+                    .append("                ").append(requirement).append(");\n");
+        }
+        if (body.length() == 0) {
+            return;
+        }
+        final String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        final String simpleName = binarySimpleName(type) + SUFFIX;
+        final String className = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        final StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/**\n")
+                .append(" * ").append(type.getQualifiedName()).append(" 的注解授权要求索引，由 heimdall-annotation-processor 生成，请勿修改\n")
+                .append(" */\n")
+                .append("public final class ").append(simpleName).append(" extends ").append(INDEX_CLASS).append(" {\n")
+                .append("    @Override\n")
+                .append("    protected void load() {\n")
+                .append(body)
+                .append("    }\n")
+                .append("}\n");
+        try (Writer writer = filer.createSourceFile(className, type).openWriter()) {
+            writer.write(source.toString());
+            generated.add(className);
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Heimdall: 生成注解授权索引失败:" + e.getMessage(), type);
+        }
+    }
+
+    /**
+     * 合并方法和类上的注解，规则与 AuthorizationRequirement.merge 保持一致
+     *
+     * @param method the method
+     * @param type   the type
+     * @return 构造 AuthorizationRequirement 的代码, 没有任何注解返回 null
+     */
+    private String requirement(ExecutableElement method, TypeElement type) {
+        final RequiresUser user = firstNonNull(method.getAnnotation(RequiresUser.class), type.getAnnotation(RequiresUser.class));
+        final RequiresRole role = firstNonNull(method.getAnnotation(RequiresRole.class), type.getAnnotation(RequiresRole.class));
+        final RequiresRoles roles = firstNonNull(method.getAnnotation(RequiresRoles.class), type.getAnnotation(RequiresRoles.class));
+        final RequiresPermission permission = firstNonNull(method.getAnnotation(RequiresPermission.class), type.getAnnotation(RequiresPermission.class));
+        final RequiresPermissions permissions = firstNonNull(method.getAnnotation(RequiresPermissions.class), type.getAnnotation(RequiresPermissions.class));
+        if (null == user && null == role && null == roles && null == permission && null == permissions) {
+            return null;
+        }
+        String methodAnnotation = null;
+        for (Class<? extends Annotation> annotation : ANNOTATIONS) {
+            if (null != method.getAnnotation(annotation)) {
+                methodAnnotation = annotation.getSimpleName();
+                break;
+            }
+        }
+        return "new " + REQUIREMENT_CLASS + "(" + (null != user) + ", "
+                + (null == role ? "null" : literal(role.value())) + ", "
+                + (null == roles ? "null" : literal(roles.value())) + ", "
+                + mode(null == roles ? null : roles.mode()) + ", "
+                + (null == permission ? "null" : literal(permission.value())) + ", "
+                + (null == permissions ? "null" : literal(permissions.value())) + ", "
+                + mode(null == permissions ? null : permissions.mode()) + ", "
+                + (null == methodAnnotation ? "null" : literal(methodAnnotation)) + ")";
+    }
+
+    /**
+     * 最后一轮写入 ServiceLoader 配置文件
+     * <p>
+     * 增量编译时只处理了部分类，要先读出已有的配置文件，与本次生成的合并后再写入，否则未重新编译的类的索引会丢失
+     */
+    private void writeServiceFile() {
+        if (generated.isEmpty()) {
+            return;
+        }
+        final Set<String> classNames = new TreeSet<>(readServiceFile());
+        classNames.addAll(generated);
+        try {
+            final FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = file.openWriter()) {
+                for (String className : classNames) {
+                    writer.write(className);
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Heimdall: 写入注解授权索引配置失败:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取上一次编译留下的 ServiceLoader 配置文件
+     *
+     * @return 已经登记的索引类 ，文件不存在返回空集合
+     */
+    private Set<String> readServiceFile() {
+        final Set<String> classNames = new TreeSet<>();
+        try {
+            final FileObject file = filer.getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while (null != (line = reader.readLine())) {
+                    final int comment = line.indexOf('#');
+                    final String className = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                    if (!className.isEmpty()) {
+                        classNames.add(className);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // 第一次编译，文件不存在
+        }
+        return classNames;
+    }
+
+    /**
+     * 生成的索引类与目标类同包，目标类及其外部类都不能是 private 的
+     *
+     * @param element the element
+     * @return the boolean
+     */
+    private boolean isAccessible(Element element) {
+        for (Element e = element; null != e && e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 参数类型在生成的索引类中是否可以引用
+     * <p>
+     * 只允许 public 类型，否则跳过该方法，运行期退回反射解析
+     *
+     * @param type the type
+     * @return the boolean
+     */
+    private boolean isAccessible(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return isAccessible(((ArrayType) type).getComponentType());
+        }
+        if (type.getKind().isPrimitive()) {
+            return true;
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        final Element element = ((DeclaredType) type).asElement();
+        for (Element e = element; null != e && e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (!e.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 嵌套类以 Outer_Inner 作为生成类名前缀
+     *
+     * @param type the type
+     * @return the string
+     */
+    private String binarySimpleName(TypeElement type) {
+        final Element enclosing = type.getEnclosingElement();
+        if (enclosing instanceof TypeElement) {
+            return binarySimpleName((TypeElement) enclosing) + "_" + type.getSimpleName();
+        }
+        return type.getSimpleName().toString();
+    }
+
+    private static <A extends Annotation> A firstNonNull(A onMethod, A onClass) {
+        return null != onMethod ? onMethod : onClass;
+    }
+
+    private static String mode(Mod mode) {
+        return null == mode ? "null" : Mod.class.getName() + "." + mode.name();
+    }
+
+    private static String literal(String[] values) {
+        final StringBuilder sb = new StringBuilder("new String[]{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(literal(values[i]));
+        }
+        return sb.append("}").toString();
+    }
+
+    /**
+     * 字符串字面量，非 ASCII 字符转义为 unicode
+     *
+     * @param value the value
+     * @return the string
+     */
+    private static String literal(String value) {
+        if (null == value) {
+            return "null";
+        }
+        final StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append("\"").toString();
+    }
+}
@@ -27,7 +27,7 @@ import com.luter.heimdall.core.config.ConfigManager;
 import com.luter.heimdall.core.servlet.ServletHolder;
 import com.luter.heimdall.core.session.SimpleSession;
 import com.luter.heimdall.core.session.dao.impl.CachedSessionDaoImpl;
-import com.luter.heimdall.core.session.generator.UUIDSessionIdGeneratorImpl;
+import com.luter.heimdall.core.session.generator.SecureRandomSessionIdGeneratorImpl;
 import lombok.extern.slf4j.Slf4j;
 
 import java.time.Duration;
@@ -63,6 +63,6 @@ public class CaffeineSessionDaoImpl extends CachedSessionDaoImpl {
         this.setSessionCache(simSessionCache);
         this.setUserAuthCache(simpleUserAuthCache);
         this.setServletHolder(servletHolder);
-        this.setSessionIdGenerator(new UUIDSessionIdGeneratorImpl());
+        this.setSessionIdGenerator(new SecureRandomSessionIdGeneratorImpl(config.getSession().getSessionIdNodeTag()));
     }
 }
@@ -18,11 +18,9 @@
 
 package com.luter.heimdall.core.authorization.aspect;
 
-import com.luter.heimdall.core.annotation.*;
 import com.luter.heimdall.core.authorization.handler.AuthorizationFilterHandler;
-import com.luter.heimdall.core.exception.UnAuthorizedException;
-import com.luter.heimdall.core.exception.UnAuthticatedException;
-import com.luter.heimdall.core.utils.StrUtils;
+import com.luter.heimdall.core.authorization.requirement.AuthorizationRequirement;
+import com.luter.heimdall.core.authorization.requirement.AuthorizationRequirementResolver;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
@@ -30,7 +28,7 @@ import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 
-import java.util.Arrays;
+import java.lang.reflect.Method;
 
 /**
  * 权限注解拦截器
@@ -62,6 +60,10 @@ public class AuthorizationAnnotationAspect {
      * The Permission handler.
      */
     private final AuthorizationFilterHandler authorizationFilterHandler;
+    /**
+     * 注解授权要求解析器
+     */
+    private final AuthorizationRequirementResolver requirementResolver = AuthorizationRequirementResolver.getInstance();
 
     /**
      * Instantiates a new Security aspect.
@@ -81,196 +83,20 @@ public class AuthorizationAnnotationAspect {
 
     /**
      * On before.
+     * <p>
+     * 方法和类上的注解只在第一次调用时解析，之后直接使用缓存的授权要求
      *
      * @param joinPoint the join point
      */
     @Before("pointCut()")
     public void onBefore(JoinPoint joinPoint) {
-        handleRequiresUser(joinPoint);
-        handleRequiresRole(joinPoint);
-        handleRequiresRoles(joinPoint);
-        handleRequiresPermission(joinPoint);
-        handleRequiresPermissions(joinPoint);
-    }
-
-
-    /**
-     * Handle requires user.
-     *
-     * @param joinPoint the join point
-     */
-    public void handleRequiresUser(JoinPoint joinPoint) {
-        log.debug("注解权限拦截= 开始处理登录注解:RequiresUser");
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        String className = joinPoint.getTarget().getClass().getName();
-        String methodName = signature.getMethod().getName();
-        RequiresUser annotation = signature.getMethod().getAnnotation(RequiresUser.class);
-        if (null == annotation) {
-            // 验证类上的
-            annotation = joinPoint.getTarget().getClass().getAnnotation(RequiresUser.class);
-            if (null != annotation) {
-                log.debug("注解权限拦截= 从类: {} 上找到注解:RequiresUser", className);
-            }
-
-        } else {
-            log.debug("注解权限拦截= 从方法:{}上找到注解:RequiresUser", className + "." + methodName + "()");
-        }
-        if (annotation != null) {
-            if (!authorizationFilterHandler.isAuthenticated()) {
-                throw new UnAuthticatedException();
-            }
-            log.debug("注解权限拦截= RequiresUser: 通过");
-        }
-    }
-
-    /**
-     * Handle require role.
-     *
-     * @param joinPoint the join point
-     */
-    public void handleRequiresRole(JoinPoint joinPoint) {
-        log.debug("注解权限拦截= 开始处理登录注解:RequiresRole");
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        String className = joinPoint.getTarget().getClass().getName();
-        String methodName = signature.getMethod().getName();
-        RequiresRole annotation = signature.getMethod().getAnnotation(RequiresRole.class);
-        if (null == annotation) {
-            // 验证类上的
-            annotation = joinPoint.getTarget().getClass().getAnnotation(RequiresRole.class);
-            if (null != annotation) {
-                log.debug("注解权限拦截= 从类: {} 上找到注解:RequiresRole", className);
-            }
-
-        } else {
-            log.debug("注解权限拦截= 从方法:{}上找到注解:RequiresRole", className + "." + methodName + "()");
-        }
-        if (annotation != null) {
-            String roleName = annotation.value();
-            log.debug("注解权限拦截= 单个角色权限验证: role: {}", roleName);
-            if (StrUtils.isNotBlank(roleName)) {
-                if (!authorizationFilterHandler.hasRole(roleName)) {
-                    throw new UnAuthorizedException("You do not have the permission . Role:" + roleName + ". Access denied.");
-                }
-                log.debug("注解权限拦截= 单个角色权限验证通过: role: {}", roleName);
-            }
-        }
-    }
-
-    /**
-     * Handle require roles.
-     *
-     * @param joinPoint the join point
-     */
-    public void handleRequiresRoles(JoinPoint joinPoint) {
-        log.debug("注解权限拦截= 开始处理登录注解:RequiresRoles");
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        String className = joinPoint.getTarget().getClass().getName();
-        String methodName = signature.getMethod().getName();
-        RequiresRoles annotation = signature.getMethod().getAnnotation(RequiresRoles.class);
-        if (null == annotation) {
-            // 验证类上的
-            annotation = joinPoint.getTarget().getClass().getAnnotation(RequiresRoles.class);
-            if (null != annotation) {
-                log.debug("注解权限拦截= 从类: {} 上找到注解:RequiresRoles", className);
-            }
-
-        } else {
-            log.debug("注解权限拦截= 从方法:{}上找到注解:RequiresRoles", className + "." + methodName + "()");
-        }
-        if (annotation != null) {
-            String[] roles = annotation.value();
-            Mod mode = annotation.mode();
-            log.debug("注解权限拦截= 多角色权限验证: roles: {},Mod:{} ", roles, mode);
-            if (roles.length > 0) {
-                if (Mod.ALL.equals(mode)) {
-                    if (!authorizationFilterHandler.hasAllRoles(roles)) {
-                        throw new UnAuthorizedException("You do not have the permission. All Roles:" + Arrays.toString(roles) + ". Access denied.");
-                    }
-                } else {
-                    if (!authorizationFilterHandler.hasAnyRoles(roles)) {
-                        throw new UnAuthorizedException("You do not have the permission. Any Roles:" + Arrays.toString(roles) + ". Access denied.");
-                    }
-                }
-            }
-        }
-    }
-
-
-    /**
-     * Handle requires permission.
-     *
-     * @param joinPoint the join point
-     */
-    public void handleRequiresPermission(JoinPoint joinPoint) {
-        log.debug("注解权限拦截= 开始处理登录注解:RequiresPermission");
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        String className = joinPoint.getTarget().getClass().getName();
-        String methodName = signature.getMethod().getName();
-        RequiresPermission annotation = signature.getMethod().getAnnotation(RequiresPermission.class);
-        if (null == annotation) {
-            // 验证类上的
-            annotation = joinPoint.getTarget().getClass().getAnnotation(RequiresPermission.class);
-            if (null != annotation) {
-                log.debug("注解权限拦截= 从类: {} 上找到注解:RequiresPermission", className);
-            }
-
-        } else {
-            log.debug("注解权限拦截= 从方法:{}上找到注解:RequiresPermission", className + "." + methodName + "()");
-        }
-        if (annotation != null) {
-            String perm = annotation.value();
-            log.debug("注解权限拦截= 单个 权限标志 权限验证,需要权限: Permission: [{}]", perm);
-            if (StrUtils.isNotBlank(perm)) {
-                if (!authorizationFilterHandler.hasPermission(perm)) {
-                    throw new UnAuthorizedException("You do not have the permission : " + perm + ". Access denied.");
-                } else {
-                    log.debug("注解权限拦截= 单个 权限标志 权限验证,具备权限: Permission: [{}]", perm);
-                }
-            }
-        }
-    }
-
-    /**
-     * Handle requires permissions.
-     *
-     * @param joinPoint the join point
-     */
-    public void handleRequiresPermissions(JoinPoint joinPoint) {
-        log.debug("注解权限拦截= 开始处理登录注解:RequiresPermissions");
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        String className = joinPoint.getTarget().getClass().getName();
-        String methodName = signature.getMethod().getName();
-        RequiresPermissions annotation = signature.getMethod().getAnnotation(RequiresPermissions.class);
-        if (null == annotation) {
-            // 验证类上的
-            annotation = joinPoint.getTarget().getClass().getAnnotation(RequiresPermissions.class);
-            if (null != annotation) {
-                log.debug("注解权限拦截= 从类: {} 上找到注解:RequiresPermissions", className);
-            }
-
-        } else {
-            log.debug("注解权限拦截= 从方法:{}上找到注解:RequiresPermissions", className + "." + methodName + "()");
-        }
-        if (annotation != null) {
-            String[] permissions = annotation.value();
-            Mod mode = annotation.mode();
-            log.debug("注解权限拦截= 多 权限标志 权限验证: Permissions: [{}],Mod:[{}] ", permissions, mode);
-            if (permissions.length > 0) {
-                if (Mod.ALL.equals(mode)) {
-                    if (!authorizationFilterHandler.hasAllPermissions(permissions)) {
-                        throw new UnAuthorizedException("You do not have all of the permissions  :" + Arrays.toString(permissions) + ". Access denied.");
-                    } else {
-                        log.debug("注解权限拦截= 多 权限标志 权限验证,具备权限: Permissions: [{}],Mod:[{}]", permissions, mode);
-                    }
-                } else {
-                    if (!authorizationFilterHandler.hasAnyPermissions(permissions)) {
-                        throw new UnAuthorizedException("You do not have any of the permission:" + Arrays.toString(permissions) + ". Access denied.");
-                    } else {
-                        log.debug("注解权限拦截= 多 权限标志 权限验证,具备权限: Permissions: [{}],Mod:[{}]", permissions, mode);
-                    }
-                }
-            }
+        final Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        final AuthorizationRequirement requirement = requirementResolver.resolve(method, joinPoint.getTarget().getClass());
+        if (requirement.isEmpty()) {
+            return;
         }
+        authorizationFilterHandler.checkRequirement(requirement);
+        log.debug("注解权限拦截= 授权通过:{}", requirement);
     }
 
 }
@@ -0,0 +1,295 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.authority;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 权限位图,不可变
+ * <p>
+ * 每一位对应 {@link PermissionSymbolTable} 中的一个权限标识编号，
+ * <p>
+ * 用户具备的权限被编译成一个位图，需要的权限(如注解上的多个权限)也可以预先编译成一个位图掩码，
+ * <p>
+ * any / all 校验就是按字(long)做与运算，不再需要把用户权限转换成 List 然后嵌套 contains 。
+ *
+ * @author Luter
+ */
+public final class AuthorityBitSet implements Serializable {
+    /**
+     * 空位图
+     */
+    public static final AuthorityBitSet EMPTY = new AuthorityBitSet(new long[0]);
+    /**
+     * 位图数据,尾部不保留全 0 的字
+     */
+    private final long[] words;
+
+    private AuthorityBitSet(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * 把用户权限编译成位图，用户权限中的标识会被驻留
+     * <p>
+     * 如果是 {@link GrantedAuthorityList} ，直接使用其缓存的位图
+     *
+     * @param authorities 用户权限
+     * @return the authority bit set
+     */
+    public static AuthorityBitSet of(Collection<? extends GrantedAuthority> authorities) {
+        if (null == authorities || authorities.isEmpty()) {
+            return EMPTY;
+        }
+        if (authorities instanceof GrantedAuthorityList) {
+            return ((GrantedAuthorityList) authorities).getBitSet();
+        }
+        final PermissionSymbolTable table = PermissionSymbolTable.getInstance();
+        long[] bits = new long[0];
+        for (GrantedAuthority authority : authorities) {
+            if (null != authority) {
+                bits = set(bits, table.intern(authority.getAuthority()));
+            }
+        }
+        return valueOf(bits);
+    }
+
+    /**
+     * 把权限标识编译成位图掩码，标识会被驻留
+     * <p>
+     * 仅用于注解、系统规则等数量有限的标识，不要用来编译请求参数
+     *
+     * @param identifiers 权限标识或者角色标识
+     * @return the authority bit set
+     */
+    public static AuthorityBitSet ofIdentifiers(String... identifiers) {
+        if (null == identifiers || identifiers.length == 0) {
+            return EMPTY;
+        }
+        final PermissionSymbolTable table = PermissionSymbolTable.getInstance();
+        long[] bits = new long[0];
+        for (String identifier : identifiers) {
+            bits = set(bits, table.intern(identifier));
+        }
+        return valueOf(bits);
+    }
+
+    /**
+     * 是否具备某个编号对应的权限
+     *
+     * @param id 权限编号
+     * @return the boolean
+     */
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        final int index = id >>> 6;
+        return index < words.length && (words[index] & (1L << id)) != 0;
+    }
+
+    /**
+     * 是否具备某个权限标识
+     *
+     * @param identifier 权限标识
+     * @return the boolean
+     */
+    public boolean contains(String identifier) {
+        return contains(PermissionSymbolTable.getInstance().idOf(identifier));
+    }
+
+    /**
+     * 是否具备全部权限标识，identifiers 为空返回 false
+     *
+     * @param identifiers 权限标识
+     * @return the boolean
+     */
+    public boolean containsAll(String... identifiers) {
+        if (null == identifiers || identifiers.length == 0) {
+            return false;
+        }
+        final PermissionSymbolTable table = PermissionSymbolTable.getInstance();
+        for (String identifier : identifiers) {
+            if (!contains(table.idOf(identifier))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否具备权限标识之一，identifiers 为空返回 false
+     *
+     * @param identifiers 权限标识
+     * @return the boolean
+     */
+    public boolean containsAny(String... identifiers) {
+        if (null == identifiers || identifiers.length == 0) {
+            return false;
+        }
+        final PermissionSymbolTable table = PermissionSymbolTable.getInstance();
+        for (String identifier : identifiers) {
+            if (contains(table.idOf(identifier))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否包含掩码中的全部位，按字运算
+     *
+     * @param mask 预编译的权限掩码
+     * @return the boolean
+     */
+    public boolean containsAll(AuthorityBitSet mask) {
+        final long[] m = mask.words;
+        if (m.length > words.length) {
+            return false;
+        }
+        for (int i = 0; i < m.length; i++) {
+            if ((words[i] & m[i]) != m[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否包含掩码中的任意一位，按字运算
+     *
+     * @param mask 预编译的权限掩码
+     * @return the boolean
+     */
+    public boolean intersects(AuthorityBitSet mask) {
+        final long[] m = mask.words;
+        final int n = Math.min(m.length, words.length);
+        for (int i = 0; i < n; i++) {
+            if ((words[i] & m[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按位或，返回新位图
+     *
+     * @param other the other
+     * @return the authority bit set
+     */
+    public AuthorityBitSet or(AuthorityBitSet other) {
+        if (other.words.length == 0) {
+            return this;
+        }
+        if (words.length == 0) {
+            return other;
+        }
+        final long[] big = words.length >= other.words.length ? words : other.words;
+        final long[] small = big == words ? other.words : words;
+        final long[] result = big.clone();
+        for (int i = 0; i < small.length; i++) {
+            result[i] |= small[i];
+        }
+        return new AuthorityBitSet(result);
+    }
+
+    /**
+     * 置位的总数
+     *
+     * @return the int
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Is empty boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    /**
+     * 设置某一位，必要时扩容
+     *
+     * @param bits the bits
+     * @param id   the id
+     * @return the long [ ]
+     */
+    private static long[] set(long[] bits, int id) {
+        if (id < 0) {
+            return bits;
+        }
+        final int index = id >>> 6;
+        if (index >= bits.length) {
+            bits = Arrays.copyOf(bits, index + 1);
+        }
+        bits[index] |= 1L << id;
+        return bits;
+    }
+
+    /**
+     * 去掉尾部全 0 的字，保证 equals 和 hashCode 只与内容有关
+     *
+     * @param bits the bits
+     * @return the authority bit set
+     */
+    private static AuthorityBitSet valueOf(long[] bits) {
+        int n = bits.length;
+        while (n > 0 && bits[n - 1] == 0) {
+            n--;
+        }
+        if (n == 0) {
+            return EMPTY;
+        }
+        return new AuthorityBitSet(n == bits.length ? bits : Arrays.copyOf(bits, n));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return Arrays.equals(words, ((AuthorityBitSet) o).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public String toString() {
+        return "AuthorityBitSet{" +
+                "cardinality=" + cardinality() +
+                '}';
+    }
+}
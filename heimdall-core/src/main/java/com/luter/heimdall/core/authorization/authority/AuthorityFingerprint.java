@@ -0,0 +1,126 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.authority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 用户权限集合的指纹,不可变
+ * <p>
+ * 授权结果只与用户权限集合的内容有关，与具体是哪个用户无关，拥有相同角色的用户指纹相同，可以共享授权结果缓存。
+ * <p>
+ * 指纹由普通权限标识位图、MethodAndUrl 权限位图、是否含有不支持的权限类型三部分组成，
+ * 比较的是完整内容而不是摘要，不存在哈希碰撞导致误授权的问题。
+ *
+ * @author Luter
+ * @see GrantedAuthorityList#getFingerprint()
+ */
+public final class AuthorityFingerprint {
+    /**
+     * 普通权限标识
+     */
+    private final AuthorityBitSet simple;
+    /**
+     * MethodAndUrl 权限
+     */
+    private final AuthorityBitSet restful;
+    /**
+     * 是否含有不支持的权限类型
+     */
+    private final boolean unsupported;
+    /**
+     * 预先计算的 hash
+     */
+    private final int hash;
+
+    private AuthorityFingerprint(AuthorityBitSet simple, AuthorityBitSet restful, boolean unsupported) {
+        this.simple = simple;
+        this.restful = restful;
+        this.unsupported = unsupported;
+        this.hash = Objects.hash(simple, restful, unsupported);
+    }
+
+    /**
+     * 计算用户权限集合的指纹，权限标识会被驻留
+     * <p>
+     * 如果是 {@link GrantedAuthorityList} ，直接使用其缓存的指纹
+     *
+     * @param authorities 用户权限
+     * @return the authority fingerprint
+     */
+    public static AuthorityFingerprint of(Collection<? extends GrantedAuthority> authorities) {
+        if (authorities instanceof GrantedAuthorityList) {
+            return ((GrantedAuthorityList) authorities).getFingerprint();
+        }
+        return compute(authorities);
+    }
+
+    /**
+     * 计算用户权限集合的指纹
+     *
+     * @param authorities 用户权限
+     * @return the authority fingerprint
+     */
+    static AuthorityFingerprint compute(Collection<? extends GrantedAuthority> authorities) {
+        final List<String> simple = new ArrayList<>(authorities.size());
+        final List<String> restful = new ArrayList<>();
+        boolean unsupported = false;
+        for (GrantedAuthority authority : authorities) {
+            if (authority instanceof SimpleGrantedAuthority) {
+                simple.add(authority.getAuthority());
+            } else if (authority instanceof MethodAndUrlGrantedAuthority) {
+                restful.add(authority.getAuthority());
+            } else {
+                unsupported = true;
+            }
+        }
+        return new AuthorityFingerprint(AuthorityBitSet.ofIdentifiers(simple.toArray(new String[0])),
+                AuthorityBitSet.ofIdentifiers(restful.toArray(new String[0])), unsupported);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AuthorityFingerprint that = (AuthorityFingerprint) o;
+        return hash == that.hash && unsupported == that.unsupported
+                && simple.equals(that.simple) && restful.equals(that.restful);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthorityFingerprint{" +
+                "simple=" + simple.cardinality() +
+                ", restful=" + restful.cardinality() +
+                ", unsupported=" + unsupported +
+                '}';
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.authority;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.luter.heimdall.core.authorization.rule.AuthorizationRuleSet;
+import com.luter.heimdall.core.authorization.rule.RuleDecisionBitmap;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * 不可变的用户权限列表
+ * <p>
+ * 内存缓存中的用户权限以此形式保存，列表第一次参与校验时编译出权限位图(以及通配权限前缀树)并随列表一起缓存，
+ * <p>
+ * 对系统权限拦截规则的授权结果位图也随列表缓存，规则集版本变化时重新计算。
+ * <p>
+ * 用户权限变化时缓存被整体替换或者清除，位图也就随之失效。
+ * <p>
+ * 内容相同的权限列表可以通过 {@link #intern(Collection)} 共享同一个实例(享元)，
+ * 大量用户具有相同权限时只保存一份，位图等编译结果也只计算一次。
+ *
+ * @author Luter
+ * @see AuthorityBitSet
+ */
+public final class GrantedAuthorityList extends AbstractList<GrantedAuthority> implements RandomAccess, Serializable {
+    /**
+     * 享元池，没有会话引用的实例随 GC 回收
+     */
+    private static final Interner<GrantedAuthorityList> INTERNER = Interners.newWeakInterner();
+    /**
+     * 权限数据
+     */
+    private final GrantedAuthority[] authorities;
+    /**
+     * 编译后的权限位图，延迟计算
+     */
+    private transient volatile AuthorityBitSet bitSet;
+    /**
+     * 编译后的权限位图和通配权限前缀树(含继承的角色)，延迟计算
+     */
+    private transient volatile GrantedPermissions permissions;
+    /**
+     * 权限集合指纹，延迟计算
+     */
+    private transient volatile AuthorityFingerprint fingerprint;
+    /**
+     * 对系统权限拦截规则的授权结果位图，延迟计算，规则集版本变化时重新计算
+     */
+    private transient volatile RuleDecisionBitmap decisions;
+    /**
+     * 内容摘要，延迟计算
+     */
+    private transient volatile String contentHash;
+    /**
+     * hashCode 缓存，享元池查找时使用
+     */
+    private transient int hash;
+
+    private GrantedAuthorityList(GrantedAuthority[] authorities) {
+        this.authorities = authorities;
+    }
+
+    /**
+     * 构造不可变用户权限列表，已经是 GrantedAuthorityList 的直接返回
+     *
+     * @param authorities 用户权限
+     * @return the granted authority list
+     */
+    public static GrantedAuthorityList of(Collection<? extends GrantedAuthority> authorities) {
+        if (authorities instanceof GrantedAuthorityList) {
+            return (GrantedAuthorityList) authorities;
+        }
+        return new GrantedAuthorityList(authorities.toArray(new GrantedAuthority[0]));
+    }
+
+    /**
+     * 获取内容相同的共享实例
+     *
+     * @param authorities 用户权限
+     * @return the granted authority list
+     */
+    public static GrantedAuthorityList intern(Collection<? extends GrantedAuthority> authorities) {
+        return INTERNER.intern(of(authorities));
+    }
+
+    @Override
+    public GrantedAuthority get(int index) {
+        return authorities[index];
+    }
+
+    @Override
+    public int size() {
+        return authorities.length;
+    }
+
+    /**
+     * 获取编译后的权限位图
+     *
+     * @return the bit set
+     */
+    public AuthorityBitSet getBitSet() {
+        AuthorityBitSet bits = bitSet;
+        if (null == bits) {
+            final String[] identifiers = new String[authorities.length];
+            for (int i = 0; i < authorities.length; i++) {
+                identifiers[i] = null == authorities[i] ? null : authorities[i].getAuthority();
+            }
+            bits = AuthorityBitSet.ofIdentifiers(identifiers);
+            bitSet = bits;
+        }
+        return bits;
+    }
+
+    /**
+     * 获取编译后的权限位图和通配权限前缀树，角色继承关系版本变化时重新计算
+     *
+     * @param hierarchy 当前的角色继承关系
+     * @return the permissions
+     */
+    public GrantedPermissions getPermissions(RoleHierarchy hierarchy) {
+        GrantedPermissions current = permissions;
+        if (null == current || current.getHierarchyVersion() != hierarchy.getVersion()) {
+            current = GrantedPermissions.compute(this, hierarchy);
+            permissions = current;
+        }
+        return current;
+    }
+
+    /**
+     * 获取内容摘要，按顺序对每个权限的类型和标识计算 SHA-256 ，取前 16 字节的十六进制
+     * <p>
+     * 内容相同的权限列表摘要相同，可以作为共享存储的 key
+     *
+     * @return the content hash
+     */
+    public String getContentHash() {
+        String current = contentHash;
+        if (null == current) {
+            final MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            for (GrantedAuthority authority : authorities) {
+                if (null != authority) {
+                    digest.update(authority.getClass().getName().getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) 0);
+                    digest.update(String.valueOf(authority.getAuthority()).getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) '\n');
+            }
+            final byte[] bytes = digest.digest();
+            final StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16)).append(Character.forDigit(bytes[i] & 0xF, 16));
+            }
+            current = hex.toString();
+            contentHash = current;
+        }
+        return current;
+    }
+
+    /**
+     * 获取权限集合指纹
+     *
+     * @return the fingerprint
+     */
+    public AuthorityFingerprint getFingerprint() {
+        AuthorityFingerprint current = fingerprint;
+        if (null == current) {
+            current = AuthorityFingerprint.compute(this);
+            fingerprint = current;
+        }
+        return current;
+    }
+
+    /**
+     * 获取对系统权限拦截规则的授权结果位图
+     *
+     * @param ruleSet 当前的规则集
+     * @return the decisions
+     */
+    public RuleDecisionBitmap getDecisions(AuthorizationRuleSet ruleSet) {
+        RuleDecisionBitmap current = decisions;
+        if (null == current || current.getVersion() != ruleSet.getVersion()) {
+            current = RuleDecisionBitmap.compute(ruleSet, this);
+            decisions = current;
+        }
+        return current;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof GrantedAuthorityList) {
+            final GrantedAuthorityList other = (GrantedAuthorityList) o;
+            return hashCode() == other.hashCode() && Arrays.equals(authorities, other.authorities);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(authorities);
+            hash = h;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.authority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 用户具备的权限标识,不可变
+ * <p>
+ * 由权限位图和通配权限前缀树两部分组成:
+ * <p>
+ * 1、精确匹配先走位图，按字运算，与之前完全一样
+ * <p>
+ * 2、位图不通过且用户具有通配权限(如 pet:*、pet:*:read)时，再沿前缀树校验一遍
+ * <p>
+ * 用户没有任何通配权限时前缀树为空，校验开销与只用位图时相同。
+ * <p>
+ * 如果配置了角色继承关系，编译时按 {@link RoleHierarchy} 把直接授予的角色展开，继承的角色和权限标识一并计入。
+ * <p>
+ * 通配权限只蕴含多段的权限标识，角色(不含 : 的标识)只做精确匹配(含继承的角色)，单独的 * 只是普通标识，见 {@link PermissionTrie} 。
+ *
+ * @author Luter
+ * @see AuthorityBitSet
+ * @see PermissionTrie
+ */
+public final class GrantedPermissions {
+    /**
+     * 空权限
+     */
+    public static final GrantedPermissions EMPTY = new GrantedPermissions(AuthorityBitSet.EMPTY, PermissionTrie.EMPTY, RoleHierarchy.EMPTY.getVersion());
+    /**
+     * 权限位图
+     */
+    private final AuthorityBitSet bitSet;
+    /**
+     * 通配权限前缀树
+     */
+    private final PermissionTrie trie;
+    /**
+     * 编译时使用的角色继承关系版本号
+     */
+    private final long hierarchyVersion;
+
+    private GrantedPermissions(AuthorityBitSet bitSet, PermissionTrie trie, long hierarchyVersion) {
+        this.bitSet = bitSet;
+        this.trie = trie;
+        this.hierarchyVersion = hierarchyVersion;
+    }
+
+    /**
+     * 编译用户权限，不考虑角色继承关系
+     *
+     * @param authorities 用户权限
+     * @return the granted permissions
+     */
+    public static GrantedPermissions of(Collection<? extends GrantedAuthority> authorities) {
+        return of(authorities, RoleHierarchy.EMPTY);
+    }
+
+    /**
+     * 编译用户权限
+     * <p>
+     * 如果是 {@link GrantedAuthorityList} ，直接使用其缓存的结果
+     *
+     * @param authorities 用户权限
+     * @param hierarchy   角色继承关系
+     * @return the granted permissions
+     */
+    public static GrantedPermissions of(Collection<? extends GrantedAuthority> authorities, RoleHierarchy hierarchy) {
+        if (null == authorities || authorities.isEmpty()) {
+            return EMPTY;
+        }
+        if (authorities instanceof GrantedAuthorityList) {
+            return ((GrantedAuthorityList) authorities).getPermissions(hierarchy);
+        }
+        return compute(authorities, hierarchy);
+    }
+
+    /**
+     * 编译用户权限，只有 SimpleGrantedAuthority 参与角色展开和通配权限
+     *
+     * @param authorities 用户权限
+     * @param hierarchy   角色继承关系
+     * @return the granted permissions
+     */
+    static GrantedPermissions compute(Collection<? extends GrantedAuthority> authorities, RoleHierarchy hierarchy) {
+        final List<String> identifiers = new ArrayList<>(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            if (authority instanceof SimpleGrantedAuthority) {
+                identifiers.add(authority.getAuthority());
+            }
+        }
+        final Collection<String> expanded = hierarchy.expand(identifiers);
+        final List<String> wildcards = new ArrayList<>();
+        for (String identifier : expanded) {
+            if (PermissionTrie.isWildcard(identifier)) {
+                wildcards.add(identifier);
+            }
+        }
+        AuthorityBitSet bits = authorities instanceof GrantedAuthorityList
+                ? ((GrantedAuthorityList) authorities).getBitSet() : AuthorityBitSet.of(authorities);
+        if (expanded != identifiers) {
+            bits = bits.or(AuthorityBitSet.ofIdentifiers(expanded.toArray(new String[0])));
+        }
+        return new GrantedPermissions(bits, wildcards.isEmpty() ? PermissionTrie.EMPTY : PermissionTrie.compile(wildcards),
+                hierarchy.getVersion());
+    }
+
+    /**
+     * 是否具备某个权限标识
+     *
+     * @param identifier 权限标识
+     * @return the boolean
+     */
+    public boolean contains(String identifier) {
+        return bitSet.contains(identifier) || trie.implies(identifier);
+    }
+
+    /**
+     * 是否具备全部权限标识，identifiers 为空返回 false
+     *
+     * @param identifiers 权限标识
+     * @return the boolean
+     */
+    public boolean containsAll(String... identifiers) {
+        if (trie.isEmpty()) {
+            return bitSet.containsAll(identifiers);
+        }
+        if (null == identifiers || identifiers.length == 0) {
+            return false;
+        }
+        for (String identifier : identifiers) {
+            if (!contains(identifier)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否具备权限标识之一，identifiers 为空返回 false
+     *
+     * @param identifiers 权限标识
+     * @return the boolean
+     */
+    public boolean containsAny(String... identifiers) {
+        if (bitSet.containsAny(identifiers)) {
+            return true;
+        }
+        if (trie.isEmpty() || null == identifiers) {
+            return false;
+        }
+        for (String identifier : identifiers) {
+            if (trie.implies(identifier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否具备全部权限标识，先按预编译的掩码运算，不通过再按通配权限校验
+     *
+     * @param mask        identifiers 预编译的权限掩码
+     * @param identifiers 权限标识
+     * @return the boolean
+     */
+    public boolean containsAll(AuthorityBitSet mask, String... identifiers) {
+        return bitSet.containsAll(mask) || (!trie.isEmpty() && containsAll(identifiers));
+    }
+
+    /**
+     * 是否具备权限标识之一，先按预编译的掩码运算，不通过再按通配权限校验
+     *
+     * @param mask        identifiers 预编译的权限掩码
+     * @param identifiers 权限标识
+     * @return the boolean
+     */
+    public boolean containsAny(AuthorityBitSet mask, String... identifiers) {
+        return bitSet.intersects(mask) || (!trie.isEmpty() && containsAny(identifiers));
+    }
+
+    /**
+     * 是否具有某个角色，只做精确匹配，不按通配权限蕴含
+     *
+     * @param role 角色标识
+     * @return the boolean
+     */
+    public boolean hasRole(String role) {
+        return bitSet.contains(role);
+    }
+
+    /**
+     * 是否具有全部角色，roles 为空返回 false
+     *
+     * @param roles 角色标识
+     * @return the boolean
+     */
+    public boolean hasAllRoles(String... roles) {
+        return bitSet.containsAll(roles);
+    }
+
+    /**
+     * 是否具有角色之一，roles 为空返回 false
+     *
+     * @param roles 角色标识
+     * @return the boolean
+     */
+    public boolean hasAnyRoles(String... roles) {
+        return bitSet.containsAny(roles);
+    }
+
+    /**
+     * 是否具有全部角色，按预编译的掩码运算
+     *
+     * @param mask 角色掩码
+     * @return the boolean
+     */
+    public boolean hasAllRoles(AuthorityBitSet mask) {
+        return bitSet.containsAll(mask);
+    }
+
+    /**
+     * 是否具有角色之一，按预编译的掩码运算
+     *
+     * @param mask 角色掩码
+     * @return the boolean
+     */
+    public boolean hasAnyRoles(AuthorityBitSet mask) {
+        return bitSet.intersects(mask);
+    }
+
+    /**
+     * 通配权限是否蕴含集合中任意一个权限标识，不含精确匹配
+     *
+     * @param identifiers 权限标识
+     * @return the boolean
+     */
+    public boolean impliesAny(Iterable<String> identifiers) {
+        return trie.impliesAny(identifiers);
+    }
+
+    /**
+     * 是否具有通配权限
+     *
+     * @return the boolean
+     */
+    public boolean hasWildcard() {
+        return !trie.isEmpty();
+    }
+
+    /**
+     * Gets hierarchy version.
+     *
+     * @return the hierarchy version
+     */
+    public long getHierarchyVersion() {
+        return hierarchyVersion;
+    }
+
+    /**
+     * Gets bit set.
+     *
+     * @return the bit set
+     */
+    public AuthorityBitSet getBitSet() {
+        return bitSet;
+    }
+
+    @Override
+    public String toString() {
+        return "GrantedPermissions{" +
+                "bitSet=" + bitSet +
+                ", wildcard=" + hasWildcard() +
+                '}';
+    }
+}
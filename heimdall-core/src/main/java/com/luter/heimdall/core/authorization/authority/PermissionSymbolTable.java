@@ -0,0 +1,108 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.authority;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 权限标识符号表,静态单例
+ * <p>
+ * 把每一个权限标识(角色标识)字符串驻留为一个紧凑、连续的 int 编号，
+ * <p>
+ * 用户权限据此编号可以表示为一个位图，权限校验就变成了按字(long)进行的位运算。
+ * <p>
+ * 编号一旦分配就不会改变，也不会回收，所以只有用户真实具备的权限和注解上声明的权限才会被驻留，
+ * <p>
+ * 校验阶段只查询，不驻留，避免任意字符串把符号表撑大。
+ *
+ * @author Luter
+ * @see AuthorityBitSet
+ */
+public final class PermissionSymbolTable {
+    /**
+     * 未驻留的标识返回的编号
+     */
+    public static final int NO_SYMBOL = -1;
+    /**
+     * 单例
+     */
+    private static final PermissionSymbolTable INSTANCE = new PermissionSymbolTable();
+    /**
+     * 标识 -> 编号
+     */
+    private final Map<String, Integer> symbols = new ConcurrentHashMap<>();
+    /**
+     * 下一个可用编号
+     */
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private PermissionSymbolTable() {
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static PermissionSymbolTable getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 驻留权限标识，返回其编号。已经驻留过的直接返回原编号
+     *
+     * @param identifier 权限标识或者角色标识
+     * @return 编号, identifier 为空返回 {@link #NO_SYMBOL}
+     */
+    public int intern(String identifier) {
+        if (null == identifier) {
+            return NO_SYMBOL;
+        }
+        final Integer id = symbols.get(identifier);
+        if (null != id) {
+            return id;
+        }
+        return symbols.computeIfAbsent(identifier, k -> sequence.getAndIncrement());
+    }
+
+    /**
+     * 查询权限标识的编号，不驻留
+     *
+     * @param identifier 权限标识或者角色标识
+     * @return 编号，没有驻留过返回 {@link #NO_SYMBOL}
+     */
+    public int idOf(String identifier) {
+        if (null == identifier) {
+            return NO_SYMBOL;
+        }
+        final Integer id = symbols.get(identifier);
+        return null == id ? NO_SYMBOL : id;
+    }
+
+    /**
+     * 已驻留的标识总数
+     *
+     * @return the int
+     */
+    public int size() {
+        return sequence.get();
+    }
+}
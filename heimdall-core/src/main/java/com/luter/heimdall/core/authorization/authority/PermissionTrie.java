@@ -0,0 +1,246 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.authority;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 通配权限标识前缀树,编译完成后不可变
+ * <p>
+ * 权限标识以 : 分段，如 pet:cat:list 。授予的权限中某一段为 * 时表示通配:
+ * <p>
+ * 1、中间的 * 匹配任意一段，如 pet:*:read 蕴含 pet:cat:read 、pet:dog:read
+ * <p>
+ * 2、最后一段的 * 匹配剩余的一段或者多段，如 pet:cat:* 蕴含 pet:cat:list 、pet:cat:list:export
+ * <p>
+ * 通配只作用于多段的权限标识: 不含 : 的标识(如 admin 、user)是角色名称，只能精确匹配，
+ * 单独的 * 也不是通配权限，只是一个普通的标识，已经保存的 * 不会因此变成超级权限。
+ * <p>
+ * 不含通配段的权限仍然按原来的方式精确匹配(由权限位图完成)，不会蕴含更长的权限，保持与之前的行为一致。
+ * 授权规则、角色继承、能力清单和注解授权都经过这里，规则一致。
+ * <p>
+ * 用户所有通配权限编译成一棵树，校验一个权限标识只需沿树按段走一遍，与授予的权限数量无关。
+ *
+ * @author Luter
+ * @see GrantedPermissions
+ */
+public final class PermissionTrie {
+    /**
+     * 分段分隔符
+     */
+    public static final char SEPARATOR = ':';
+    /**
+     * 通配段
+     */
+    public static final String WILDCARD = "*";
+    /**
+     * 空树
+     */
+    public static final PermissionTrie EMPTY = new PermissionTrie(new Node());
+    /**
+     * 根节点
+     */
+    private final Node root;
+
+    private PermissionTrie(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * 编译通配权限，不含通配段的权限被忽略
+     *
+     * @param grants 授予的权限标识
+     * @return the permission trie
+     */
+    public static PermissionTrie compile(Iterable<String> grants) {
+        Node root = null;
+        for (String grant : grants) {
+            if (!isWildcard(grant)) {
+                continue;
+            }
+            if (null == root) {
+                root = new Node();
+            }
+            Node node = root;
+            final String[] segments = split(grant);
+            for (int i = 0; i < segments.length; i++) {
+                final String segment = segments[i];
+                if (WILDCARD.equals(segment)) {
+                    if (i == segments.length - 1) {
+                        node.anyRemaining = true;
+                        break;
+                    }
+                    if (null == node.wildcard) {
+                        node.wildcard = new Node();
+                    }
+                    node = node.wildcard;
+                } else {
+                    node = node.children.computeIfAbsent(segment, k -> new Node());
+                }
+                if (i == segments.length - 1) {
+                    node.terminal = true;
+                }
+            }
+        }
+        return null == root ? EMPTY : new PermissionTrie(root);
+    }
+
+    /**
+     * 是否含有通配段，单独的 * 不算
+     *
+     * @param grant 权限标识
+     * @return the boolean
+     */
+    public static boolean isWildcard(String grant) {
+        if (null == grant || grant.indexOf('*') < 0 || grant.indexOf(SEPARATOR) < 0) {
+            return false;
+        }
+        int start = 0;
+        while (true) {
+            final int end = grant.indexOf(SEPARATOR, start);
+            final int segmentEnd = end < 0 ? grant.length() : end;
+            if (segmentEnd - start == 1 && grant.charAt(start) == '*') {
+                return true;
+            }
+            if (end < 0) {
+                return false;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * 单个授予的权限是否蕴含某个权限标识，用于不方便编译的场景
+     *
+     * @param grant      授予的权限标识
+     * @param permission 需要的权限标识
+     * @return the boolean
+     */
+    public static boolean implies(String grant, String permission) {
+        if (null == grant || null == permission) {
+            return false;
+        }
+        if (grant.equals(permission)) {
+            return true;
+        }
+        return isWildcard(grant) && compile(Collections.singletonList(grant)).implies(permission);
+    }
+
+    /**
+     * 是否蕴含某个权限标识，不含 : 的标识是角色名称，不被通配权限蕴含
+     *
+     * @param permission 需要的权限标识
+     * @return the boolean
+     */
+    public boolean implies(String permission) {
+        if (this == EMPTY || null == permission || permission.indexOf(SEPARATOR) < 0) {
+            return false;
+        }
+        return implies(root, split(permission), 0);
+    }
+
+    /**
+     * 是否蕴含任意一个权限标识
+     *
+     * @param permissions 需要的权限标识
+     * @return the boolean
+     */
+    public boolean impliesAny(Iterable<String> permissions) {
+        if (this == EMPTY) {
+            return false;
+        }
+        for (String permission : permissions) {
+            if (implies(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否为空树
+     *
+     * @return the boolean
+     */
+    public boolean isEmpty() {
+        return this == EMPTY;
+    }
+
+    private static boolean implies(Node node, String[] segments, int index) {
+        if (index == segments.length) {
+            return node.terminal;
+        }
+        if (node.anyRemaining) {
+            return true;
+        }
+        final Node child = node.children.get(segments[index]);
+        if (null != child && implies(child, segments, index + 1)) {
+            return true;
+        }
+        return null != node.wildcard && implies(node.wildcard, segments, index + 1);
+    }
+
+    /**
+     * 按 : 分段，不使用正则
+     *
+     * @param value the value
+     * @return the string [ ]
+     */
+    private static String[] split(String value) {
+        int count = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == SEPARATOR) {
+                count++;
+            }
+        }
+        final String[] segments = new String[count];
+        int start = 0;
+        for (int i = 0; i < count - 1; i++) {
+            final int end = value.indexOf(SEPARATOR, start);
+            segments[i] = value.substring(start, end);
+            start = end + 1;
+        }
+        segments[count - 1] = value.substring(start);
+        return segments;
+    }
+
+    /**
+     * 树节点
+     */
+    private static final class Node {
+        /**
+         * 字面量子节点
+         */
+        private final Map<String, Node> children = new HashMap<>(4);
+        /**
+         * 中间通配段子节点
+         */
+        private Node wildcard;
+        /**
+         * 是否有授予的权限在此结束
+         */
+        private boolean terminal;
+        /**
+         * 是否有授予的权限以 * 在此结束，匹配剩余的一段或多段
+         */
+        private boolean anyRemaining;
+    }
+}
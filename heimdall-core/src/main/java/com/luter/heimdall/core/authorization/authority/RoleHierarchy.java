@@ -0,0 +1,235 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.authority;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 角色继承关系,不可变
+ * <p>
+ * 配置形式为 角色 -> 直接包含的角色，如 admin -> [manager] , manager -> [user] ，
+ * 编译时预先计算出每个角色的传递闭包(admin 继承 manager 和 user)，并编译成权限位图。
+ * <p>
+ * 用户只需要保存直接授予的角色，编译用户权限时按闭包展开一次，之后 hasRole 仍然只是位图上的一次测试。
+ * <p>
+ * 角色和权限标识共用同一个标识空间，所以角色也可以直接包含权限标识(包括通配权限)。
+ * <p>
+ * 每次编译分配新的版本号，随用户权限缓存的编译结果据此判断是否失效。
+ *
+ * @author Luter
+ * @see GrantedPermissions
+ */
+@Slf4j
+public final class RoleHierarchy {
+    /**
+     * 版本号序列
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    /**
+     * 没有任何继承关系
+     */
+    public static final RoleHierarchy EMPTY = new RoleHierarchy(VERSIONS.incrementAndGet(), Collections.emptyMap(), Collections.emptyMap());
+    /**
+     * 版本号
+     */
+    private final long version;
+    /**
+     * 角色 -> 继承的全部角色
+     */
+    private final Map<String, Closure> closures;
+    /**
+     * 角色 -> 继承了它的全部角色
+     */
+    private final Map<String, Set<String>> inheritors;
+
+    private RoleHierarchy(long version, Map<String, Closure> closures, Map<String, Set<String>> inheritors) {
+        this.version = version;
+        this.closures = closures;
+        this.inheritors = inheritors;
+    }
+
+    /**
+     * 编译角色继承关系，计算传递闭包。存在循环继承时，环上的角色互相继承，不会死循环
+     *
+     * @param hierarchy 角色 -> 直接包含的角色
+     * @return the role hierarchy
+     */
+    public static RoleHierarchy compile(Map<String, ? extends Collection<String>> hierarchy) {
+        if (null == hierarchy || hierarchy.isEmpty()) {
+            return EMPTY;
+        }
+        final Map<String, Closure> closures = new HashMap<>(hierarchy.size() * 2);
+        final Map<String, Set<String>> inheritors = new HashMap<>();
+        for (String role : hierarchy.keySet()) {
+            if (null == role) {
+                continue;
+            }
+            final Set<String> inherited = new LinkedHashSet<>();
+            final Deque<String> pending = new ArrayDeque<>();
+            pending.push(role);
+            while (!pending.isEmpty()) {
+                final Collection<String> children = hierarchy.get(pending.pop());
+                if (null == children) {
+                    continue;
+                }
+                for (String child : children) {
+                    if (null != child && inherited.add(child)) {
+                        pending.push(child);
+                    }
+                }
+            }
+            if (inherited.remove(role)) {
+                log.warn("角色继承= 角色:[{}] 存在循环继承", role);
+            }
+            if (!inherited.isEmpty()) {
+                closures.put(role, new Closure(inherited.toArray(new String[0])));
+                for (String child : inherited) {
+                    inheritors.computeIfAbsent(child, k -> new LinkedHashSet<>()).add(role);
+                }
+            }
+        }
+        final RoleHierarchy roleHierarchy = new RoleHierarchy(VERSIONS.incrementAndGet(), closures, inheritors);
+        log.debug("角色继承= 编译完成，版本:{}，存在继承关系的角色总数:{}", roleHierarchy.version, closures.size());
+        return roleHierarchy;
+    }
+
+    /**
+     * 按继承关系展开权限标识，结果包含原有标识
+     *
+     * @param identifiers 直接授予的权限标识或者角色标识
+     * @return 展开后的标识 ，没有任何继承关系时直接返回 identifiers
+     */
+    public Collection<String> expand(Collection<String> identifiers) {
+        if (closures.isEmpty()) {
+            return identifiers;
+        }
+        Set<String> expanded = null;
+        for (String identifier : identifiers) {
+            final Closure closure = null == identifier ? null : closures.get(identifier);
+            if (null != closure) {
+                if (null == expanded) {
+                    expanded = new LinkedHashSet<>(identifiers);
+                }
+                Collections.addAll(expanded, closure.inherited);
+            }
+        }
+        return null == expanded ? identifiers : expanded;
+    }
+
+    /**
+     * 角色继承的角色(或权限标识)中是否包含需要的任意一个
+     *
+     * @param role     用户具有的角色
+     * @param required 需要的权限标识或者角色标识
+     * @return the boolean
+     */
+    public boolean impliesAny(String role, Collection<String> required) {
+        final Closure closure = null == role ? null : closures.get(role);
+        if (null == closure) {
+            return false;
+        }
+        final PermissionSymbolTable table = PermissionSymbolTable.getInstance();
+        for (String identifier : required) {
+            if (closure.mask.contains(table.idOf(identifier))) {
+                return true;
+            }
+        }
+        return closure.wildcards.impliesAny(required);
+    }
+
+    /**
+     * 获取角色继承的全部角色，不含自身
+     *
+     * @param role the role
+     * @return the inherited roles
+     */
+    public Set<String> getInheritedRoles(String role) {
+        final Closure closure = null == role ? null : closures.get(role);
+        if (null == closure) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(closure.inherited)));
+    }
+
+    /**
+     * 获取继承了某个角色的全部角色，不含自身
+     * <p>
+     * 角色的权限发生变化时，继承了它的角色同样受影响
+     *
+     * @param role the role
+     * @return the inheriting roles
+     */
+    public Set<String> getInheritingRoles(String role) {
+        final Set<String> roles = null == role ? null : inheritors.get(role);
+        return null == roles ? Collections.emptySet() : Collections.unmodifiableSet(roles);
+    }
+
+    /**
+     * 是否没有任何继承关系
+     *
+     * @return the boolean
+     */
+    public boolean isEmpty() {
+        return closures.isEmpty();
+    }
+
+    /**
+     * Gets version.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "RoleHierarchy{" +
+                "version=" + version +
+                ", roles=" + closures.size() +
+                '}';
+    }
+
+    /**
+     * 单个角色的传递闭包
+     */
+    private static final class Closure {
+        /**
+         * 继承的全部标识
+         */
+        private final String[] inherited;
+        /**
+         * 继承的全部标识编译成的位图
+         */
+        private final AuthorityBitSet mask;
+        /**
+         * 继承的通配权限
+         */
+        private final PermissionTrie wildcards;
+
+        private Closure(String[] inherited) {
+            this.inherited = inherited;
+            this.mask = AuthorityBitSet.ofIdentifiers(inherited);
+            this.wildcards = PermissionTrie.compile(Arrays.asList(inherited));
+        }
+    }
+}
@@ -18,6 +18,8 @@
 
 package com.luter.heimdall.core.authorization.handler;
 
+import com.luter.heimdall.core.authorization.requirement.AuthorizationRequirement;
+
 /**
  * 权限验证过滤器处理器接口
  *
@@ -79,4 +81,15 @@ public interface AuthorizationFilterHandler {
      * @return the boolean
      */
     boolean hasAllPermissions(String... perms);
+
+    /**
+     * 校验注解授权要求，不通过抛出 UnAuthticatedException 或者 UnAuthorizedException 异常
+     * <p>
+     * 默认逐项调用上面的方法进行校验，实现类可以覆盖此方法，一次获取用户权限完成全部校验
+     *
+     * @param requirement 编译后的注解授权要求
+     */
+    default void checkRequirement(AuthorizationRequirement requirement) {
+        requirement.check(this);
+    }
 }
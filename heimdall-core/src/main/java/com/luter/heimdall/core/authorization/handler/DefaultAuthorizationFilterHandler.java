@@ -18,16 +18,13 @@
 
 package com.luter.heimdall.core.authorization.handler;
 
-import com.luter.heimdall.core.authorization.authority.GrantedAuthority;
+import com.luter.heimdall.core.authorization.requirement.AuthorizationRequirement;
 import com.luter.heimdall.core.exception.UnAuthticatedException;
 import com.luter.heimdall.core.manager.AuthenticationManager;
 import com.luter.heimdall.core.manager.AuthorizationManager;
 import com.luter.heimdall.core.session.SimpleSession;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 
 /**
  * 默认注解权限过滤器
@@ -54,40 +51,55 @@ public class DefaultAuthorizationFilterHandler extends AbstractAuthorizationFilt
         return null != getCurrentUser();
     }
 
+    /**
+     * 角色与权限标识共用同一个位图，继承的角色在编译用户权限时已经展开，角色不按通配权限蕴含
+     *
+     * @param role 角色标识
+     * @return the boolean
+     */
     @Override
     public boolean hasRole(String role) {
-        return hasPermission(role);
+        return getAuthorizationManager().getUserPermissions().hasRole(role);
     }
 
     @Override
     public boolean hasAnyRoles(String... roles) {
-        return hasAnyPermissions(roles);
+        return getAuthorizationManager().getUserPermissions().hasAnyRoles(roles);
     }
 
     @Override
     public boolean hasAllRoles(String... roles) {
-        return hasAllPermissions(roles);
+        return getAuthorizationManager().getUserPermissions().hasAllRoles(roles);
     }
 
     @Override
     public boolean hasPermission(String perm) {
-        final List<? extends GrantedAuthority> permStrList = getAuthorizationManager().getUserAuthorities();
-        final List<String> collect = permStrList.stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList());
-        return hasIdentifier(collect, perm);
+        return getAuthorizationManager().getUserPermissions().contains(perm);
     }
 
     @Override
     public boolean hasAnyPermissions(String... perms) {
-        final List<? extends GrantedAuthority> permStrList = getAuthorizationManager().getUserAuthorities();
-        final List<String> collect = permStrList.stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList());
-        return hasAnyIdentifiers(collect, perms);
+        return getAuthorizationManager().getUserPermissions().containsAny(perms);
     }
 
     @Override
     public boolean hasAllPermissions(String... perms) {
-        final List<? extends GrantedAuthority> permStrList = getAuthorizationManager().getUserAuthorities();
-        final List<String> collect = permStrList.stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList());
-        return hasAllIdentifiers(collect, perms);
+        return getAuthorizationManager().getUserPermissions().containsAll(perms);
+    }
+
+    /**
+     * 用户权限只获取一次，所有角色和权限标识要求按位图掩码(以及通配权限)一次校验完毕
+     *
+     * @param requirement 编译后的注解授权要求
+     */
+    @Override
+    public void checkRequirement(AuthorizationRequirement requirement) {
+        if (requirement.isUserRequired() && !isAuthenticated()) {
+            throw new UnAuthticatedException();
+        }
+        if (requirement.isAuthorityRequired()) {
+            requirement.checkAuthorities(getAuthorizationManager().getUserPermissions());
+        }
     }
 
     /**
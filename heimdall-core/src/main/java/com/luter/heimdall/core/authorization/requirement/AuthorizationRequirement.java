@@ -0,0 +1,398 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.requirement;
+
+import com.luter.heimdall.core.annotation.*;
+import com.luter.heimdall.core.authorization.authority.AuthorityBitSet;
+import com.luter.heimdall.core.authorization.authority.GrantedPermissions;
+import com.luter.heimdall.core.authorization.handler.AuthorizationFilterHandler;
+import com.luter.heimdall.core.exception.UnAuthorizedException;
+import com.luter.heimdall.core.exception.UnAuthticatedException;
+import com.luter.heimdall.core.utils.StrUtils;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+
+/**
+ * 编译后的注解授权要求,不可变
+ * <p>
+ * 把方法上和类上的 RequiresUser、RequiresRole(s)、RequiresPermission(s) 注解合并成一个对象，
+ * <p>
+ * 方法注解优先，方法上没有的再取类上的。
+ * <p>
+ * 多个角色或者权限标识预先编译成权限位图掩码，校验时与用户权限位图按字运算。
+ *
+ * @author Luter
+ * @see AuthorizationRequirementResolver
+ */
+public final class AuthorizationRequirement {
+    /**
+     * 不需要任何授权
+     */
+    public static final AuthorizationRequirement NONE = new AuthorizationRequirement(false, null, null, Mod.ANY, null, null, Mod.ANY, null);
+    /**
+     * 方法上声明的授权注解名称，方法上没有授权注解则为空
+     * <p>
+     * 拦截器据此判断是否注解优先
+     */
+    private final String methodAnnotation;
+    /**
+     * 需要登录
+     */
+    private final boolean userRequired;
+    /**
+     * 需要的单个角色
+     */
+    private final String role;
+    /**
+     * 需要的多个角色
+     */
+    private final String[] roles;
+    /**
+     * 多个角色的匹配模式
+     */
+    private final Mod rolesMode;
+    /**
+     * 需要的单个权限标识
+     */
+    private final String permission;
+    /**
+     * 需要的多个权限标识
+     */
+    private final String[] permissions;
+    /**
+     * 多个权限标识的匹配模式
+     */
+    private final Mod permissionsMode;
+    /**
+     * 单个角色掩码
+     */
+    private final AuthorityBitSet roleMask;
+    /**
+     * 多个角色掩码
+     */
+    private final AuthorityBitSet rolesMask;
+    /**
+     * 单个权限标识掩码
+     */
+    private final AuthorityBitSet permissionMask;
+    /**
+     * 多个权限标识掩码
+     */
+    private final AuthorityBitSet permissionsMask;
+
+    /**
+     * 构造注解授权要求
+     *
+     * @param userRequired    是否需要登录
+     * @param role            单个角色，可为空
+     * @param roles           多个角色，可为空
+     * @param rolesMode       多个角色的匹配模式
+     * @param permission      单个权限标识，可为空
+     * @param permissions     多个权限标识，可为空
+     * @param permissionsMode 多个权限标识的匹配模式
+     */
+    public AuthorizationRequirement(boolean userRequired, String role, String[] roles, Mod rolesMode,
+                                    String permission, String[] permissions, Mod permissionsMode) {
+        this(userRequired, role, roles, rolesMode, permission, permissions, permissionsMode, null);
+    }
+
+    /**
+     * 构造注解授权要求
+     *
+     * @param userRequired     是否需要登录
+     * @param role             单个角色，可为空
+     * @param roles            多个角色，可为空
+     * @param rolesMode        多个角色的匹配模式
+     * @param permission       单个权限标识，可为空
+     * @param permissions      多个权限标识，可为空
+     * @param permissionsMode  多个权限标识的匹配模式
+     * @param methodAnnotation 方法上声明的授权注解名称，可为空
+     */
+    public AuthorizationRequirement(boolean userRequired, String role, String[] roles, Mod rolesMode,
+                                    String permission, String[] permissions, Mod permissionsMode,
+                                    String methodAnnotation) {
+        this.methodAnnotation = methodAnnotation;
+        this.userRequired = userRequired;
+        this.role = StrUtils.isNotBlank(role) ? role : null;
+        this.roles = null != roles && roles.length > 0 ? roles.clone() : null;
+        this.rolesMode = null == rolesMode ? Mod.ANY : rolesMode;
+        this.permission = StrUtils.isNotBlank(permission) ? permission : null;
+        this.permissions = null != permissions && permissions.length > 0 ? permissions.clone() : null;
+        this.permissionsMode = null == permissionsMode ? Mod.ANY : permissionsMode;
+        this.roleMask = null == this.role ? null : AuthorityBitSet.ofIdentifiers(this.role);
+        this.rolesMask = null == this.roles ? null : AuthorityBitSet.ofIdentifiers(this.roles);
+        this.permissionMask = null == this.permission ? null : AuthorityBitSet.ofIdentifiers(this.permission);
+        this.permissionsMask = null == this.permissions ? null : AuthorityBitSet.ofIdentifiers(this.permissions);
+    }
+
+    /**
+     * 合并方法和类上的注解，方法注解优先
+     *
+     * @param userOnMethod        方法上的 RequiresUser
+     * @param userOnClass         类上的 RequiresUser
+     * @param roleOnMethod        方法上的 RequiresRole
+     * @param roleOnClass         类上的 RequiresRole
+     * @param rolesOnMethod       方法上的 RequiresRoles
+     * @param rolesOnClass        类上的 RequiresRoles
+     * @param permissionOnMethod  方法上的 RequiresPermission
+     * @param permissionOnClass   类上的 RequiresPermission
+     * @param permissionsOnMethod 方法上的 RequiresPermissions
+     * @param permissionsOnClass  类上的 RequiresPermissions
+     * @return the authorization requirement
+     */
+    public static AuthorizationRequirement merge(RequiresUser userOnMethod, RequiresUser userOnClass,
+                                                 RequiresRole roleOnMethod, RequiresRole roleOnClass,
+                                                 RequiresRoles rolesOnMethod, RequiresRoles rolesOnClass,
+                                                 RequiresPermission permissionOnMethod, RequiresPermission permissionOnClass,
+                                                 RequiresPermissions permissionsOnMethod, RequiresPermissions permissionsOnClass) {
+        final RequiresUser user = null != userOnMethod ? userOnMethod : userOnClass;
+        final RequiresRole role = null != roleOnMethod ? roleOnMethod : roleOnClass;
+        final RequiresRoles roles = null != rolesOnMethod ? rolesOnMethod : rolesOnClass;
+        final RequiresPermission permission = null != permissionOnMethod ? permissionOnMethod : permissionOnClass;
+        final RequiresPermissions permissions = null != permissionsOnMethod ? permissionsOnMethod : permissionsOnClass;
+        if (null == user && null == role && null == roles && null == permission && null == permissions) {
+            return NONE;
+        }
+        return new AuthorizationRequirement(null != user,
+                null == role ? null : role.value(),
+                null == roles ? null : roles.value(),
+                null == roles ? null : roles.mode(),
+                null == permission ? null : permission.value(),
+                null == permissions ? null : permissions.value(),
+                null == permissions ? null : permissions.mode(),
+                methodAnnotation(userOnMethod, roleOnMethod, rolesOnMethod, permissionOnMethod, permissionsOnMethod));
+    }
+
+    /**
+     * 方法上声明的第一个授权注解名称
+     *
+     * @param annotations 方法上的授权注解
+     * @return the string
+     */
+    private static String methodAnnotation(Annotation... annotations) {
+        for (Annotation annotation : annotations) {
+            if (null != annotation) {
+                return annotation.annotationType().getSimpleName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 通过授权过滤器逐项校验
+     * <p>
+     * 适用于任意 AuthorizationFilterHandler 实现，每一项校验都可能会重新获取用户权限
+     *
+     * @param handler the handler
+     */
+    public void check(AuthorizationFilterHandler handler) {
+        if (userRequired && !handler.isAuthenticated()) {
+            throw new UnAuthticatedException();
+        }
+        if (null != role && !handler.hasRole(role)) {
+            throw roleDenied();
+        }
+        if (null != roles) {
+            final boolean passed = Mod.ALL.equals(rolesMode) ? handler.hasAllRoles(roles) : handler.hasAnyRoles(roles);
+            if (!passed) {
+                throw rolesDenied();
+            }
+        }
+        if (null != permission && !handler.hasPermission(permission)) {
+            throw permissionDenied();
+        }
+        if (null != permissions) {
+            final boolean passed = Mod.ALL.equals(permissionsMode) ? handler.hasAllPermissions(permissions) : handler.hasAnyPermissions(permissions);
+            if (!passed) {
+                throw permissionsDenied();
+            }
+        }
+    }
+
+    /**
+     * 一次性校验全部角色和权限标识要求
+     * <p>
+     * 登录要求需要调用方自行校验。先按掩码做位运算，权限标识要求在用户具有通配权限时再按前缀树校验，角色要求只按掩码校验
+     *
+     * @param granted 用户权限
+     */
+    public void checkAuthorities(GrantedPermissions granted) {
+        if (null != roleMask && !granted.hasAllRoles(roleMask)) {
+            throw roleDenied();
+        }
+        if (null != rolesMask && !(Mod.ALL.equals(rolesMode) ? granted.hasAllRoles(rolesMask) : granted.hasAnyRoles(rolesMask))) {
+            throw rolesDenied();
+        }
+        if (null != permissionMask && !granted.containsAll(permissionMask, permission)) {
+            throw permissionDenied();
+        }
+        if (null != permissionsMask && !matches(granted, permissionsMask, permissions, permissionsMode)) {
+            throw permissionsDenied();
+        }
+    }
+
+    /**
+     * 按匹配模式校验
+     *
+     * @param granted     用户权限
+     * @param mask        需要的权限掩码
+     * @param identifiers 需要的权限标识
+     * @param mode        匹配模式
+     * @return the boolean
+     */
+    private static boolean matches(GrantedPermissions granted, AuthorityBitSet mask, String[] identifiers, Mod mode) {
+        return Mod.ALL.equals(mode) ? granted.containsAll(mask, identifiers) : granted.containsAny(mask, identifiers);
+    }
+
+    private UnAuthorizedException roleDenied() {
+        return new UnAuthorizedException("You do not have the permission . Role:" + role + ". Access denied.");
+    }
+
+    private UnAuthorizedException rolesDenied() {
+        if (Mod.ALL.equals(rolesMode)) {
+            return new UnAuthorizedException("You do not have the permission. All Roles:" + Arrays.toString(roles) + ". Access denied.");
+        }
+        return new UnAuthorizedException("You do not have the permission. Any Roles:" + Arrays.toString(roles) + ". Access denied.");
+    }
+
+    private UnAuthorizedException permissionDenied() {
+        return new UnAuthorizedException("You do not have the permission : " + permission + ". Access denied.");
+    }
+
+    private UnAuthorizedException permissionsDenied() {
+        if (Mod.ALL.equals(permissionsMode)) {
+            return new UnAuthorizedException("You do not have all of the permissions  :" + Arrays.toString(permissions) + ". Access denied.");
+        }
+        return new UnAuthorizedException("You do not have any of the permission:" + Arrays.toString(permissions) + ". Access denied.");
+    }
+
+    /**
+     * 是否不需要任何授权
+     *
+     * @return the boolean
+     */
+    public boolean isEmpty() {
+        return !userRequired && !isAuthorityRequired();
+    }
+
+    /**
+     * 方法上是否声明了授权注解
+     *
+     * @return the boolean
+     */
+    public boolean isMethodAnnotated() {
+        return null != methodAnnotation;
+    }
+
+    /**
+     * Gets method annotation.
+     *
+     * @return the method annotation
+     */
+    public String getMethodAnnotation() {
+        return methodAnnotation;
+    }
+
+    /**
+     * 是否需要登录
+     *
+     * @return the boolean
+     */
+    public boolean isUserRequired() {
+        return userRequired;
+    }
+
+    /**
+     * 是否需要校验角色或者权限标识，需要的话要获取用户权限
+     *
+     * @return the boolean
+     */
+    public boolean isAuthorityRequired() {
+        return null != role || null != roles || null != permission || null != permissions;
+    }
+
+    /**
+     * Gets role.
+     *
+     * @return the role
+     */
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * Gets roles.
+     *
+     * @return the roles
+     */
+    public String[] getRoles() {
+        return null == roles ? null : roles.clone();
+    }
+
+    /**
+     * Gets roles mode.
+     *
+     * @return the roles mode
+     */
+    public Mod getRolesMode() {
+        return rolesMode;
+    }
+
+    /**
+     * Gets permission.
+     *
+     * @return the permission
+     */
+    public String getPermission() {
+        return permission;
+    }
+
+    /**
+     * Gets permissions.
+     *
+     * @return the permissions
+     */
+    public String[] getPermissions() {
+        return null == permissions ? null : permissions.clone();
+    }
+
+    /**
+     * Gets permissions mode.
+     *
+     * @return the permissions mode
+     */
+    public Mod getPermissionsMode() {
+        return permissionsMode;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthorizationRequirement{" +
+                "methodAnnotation='" + methodAnnotation + '\'' +
+                ", userRequired=" + userRequired +
+                ", role='" + role + '\'' +
+                ", roles=" + Arrays.toString(roles) +
+                ", rolesMode=" + rolesMode +
+                ", permission='" + permission + '\'' +
+                ", permissions=" + Arrays.toString(permissions) +
+                ", permissionsMode=" + permissionsMode +
+                '}';
+    }
+}
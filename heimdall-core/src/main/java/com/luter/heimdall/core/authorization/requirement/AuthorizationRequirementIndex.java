@@ -0,0 +1,86 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.requirement;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 编译期生成的注解授权要求索引
+ * <p>
+ * 由 heimdall-annotation-processor 在编译期扫描授权注解生成子类，并注册到
+ * META-INF/services/com.luter.heimdall.core.authorization.requirement.AuthorizationRequirementIndex
+ * <p>
+ * 系统启动时通过 ServiceLoader 加载，预先填充 AuthorizationRequirementResolver 的缓存，
+ * 运行期不再需要反射解析注解。
+ *
+ * @author Luter
+ * @see AuthorizationRequirementResolver
+ */
+@Slf4j
+public abstract class AuthorizationRequirementIndex {
+    /**
+     * 方法 -> 授权要求
+     */
+    private final Map<Method, AuthorizationRequirement> requirements = new LinkedHashMap<>();
+    /**
+     * 是否已经加载过，加载结果为空(比如方法都已经不存在)时也不再重复加载
+     */
+    private boolean loaded;
+
+    /**
+     * 加载索引数据，由生成的子类实现，通过 {@link #put} 登记
+     */
+    protected abstract void load();
+
+    /**
+     * 登记方法的授权要求
+     * <p>
+     * 找不到对应方法(比如类被重新编译过而索引没有更新)时忽略，运行期退回反射解析
+     *
+     * @param type           方法声明所在的类
+     * @param name           方法名
+     * @param parameterTypes 参数类型
+     * @param requirement    合并了方法和类注解后的授权要求
+     */
+    protected void put(Class<?> type, String name, Class<?>[] parameterTypes, AuthorizationRequirement requirement) {
+        try {
+            requirements.put(type.getDeclaredMethod(name, parameterTypes), requirement);
+        } catch (NoSuchMethodException e) {
+            log.warn("注解授权索引= 方法:{}#{}() 不存在，忽略", type.getName(), name);
+        }
+    }
+
+    /**
+     * 获取索引数据
+     *
+     * @return the requirements
+     */
+    public synchronized Map<Method, AuthorizationRequirement> getRequirements() {
+        if (!loaded) {
+            loaded = true;
+            load();
+        }
+        return Collections.unmodifiableMap(requirements);
+    }
+}
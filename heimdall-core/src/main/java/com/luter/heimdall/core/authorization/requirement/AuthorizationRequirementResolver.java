@@ -0,0 +1,149 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.requirement;
+
+import com.luter.heimdall.core.annotation.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 注解授权要求解析器,静态单例
+ * <p>
+ * 每个 (目标类, 方法) 只通过反射解析一次，结果缓存起来，
+ * <p>
+ * 以目标类为维度通过 ClassValue 缓存，类被卸载时缓存随之释放。
+ * <p>
+ * 如果引入了 heimdall-annotation-processor，启动时会加载编译期生成的索引预先填充缓存，
+ * 方法声明所在的类就是目标类时(绝大多数情况)，运行期完全不需要反射。
+ *
+ * @author Luter
+ */
+@Slf4j
+public final class AuthorizationRequirementResolver {
+    /**
+     * 单例
+     */
+    private static final AuthorizationRequirementResolver INSTANCE = new AuthorizationRequirementResolver();
+
+    /**
+     * 目标类 -> (方法 -> 授权要求)
+     */
+    private final ClassValue<Map<Method, AuthorizationRequirement>> requirements = new ClassValue<Map<Method, AuthorizationRequirement>>() {
+        @Override
+        protected Map<Method, AuthorizationRequirement> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private AuthorizationRequirementResolver() {
+        loadIndexes();
+    }
+
+    /**
+     * 加载编译期生成的授权要求索引，预先填充缓存
+     */
+    private void loadIndexes() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (null == classLoader) {
+            classLoader = AuthorizationRequirementResolver.class.getClassLoader();
+        }
+        int count = 0;
+        final Iterator<AuthorizationRequirementIndex> indexes = ServiceLoader.load(AuthorizationRequirementIndex.class, classLoader).iterator();
+        while (hasNext(indexes)) {
+            //单个索引类加载失败(比如类已经删除而配置文件中还有记录)只跳过这一个，对应的类退回反射解析
+            final AuthorizationRequirementIndex index;
+            try {
+                index = indexes.next();
+            } catch (ServiceConfigurationError e) {
+                log.warn("注解授权索引= 加载失败，忽略，退回反射解析:{}", e.getMessage());
+                continue;
+            }
+            for (Map.Entry<Method, AuthorizationRequirement> entry : index.getRequirements().entrySet()) {
+                final Method method = entry.getKey();
+                requirements.get(method.getDeclaringClass()).put(method, entry.getValue());
+                count++;
+            }
+        }
+        log.debug("注解授权索引= 加载方法授权要求总数:{}", count);
+    }
+
+    /**
+     * 是否还有索引，配置文件本身读取失败时不再继续
+     *
+     * @param indexes the indexes
+     * @return the boolean
+     */
+    private static boolean hasNext(Iterator<AuthorizationRequirementIndex> indexes) {
+        try {
+            return indexes.hasNext();
+        } catch (ServiceConfigurationError e) {
+            log.error("注解授权索引= 配置读取失败，其余索引退回反射解析:{}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static AuthorizationRequirementResolver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 获取方法的授权要求
+     *
+     * @param method      被调用的方法
+     * @param targetClass 目标对象的类，类上的注解从这里获取
+     * @return 授权要求 ，没有任何注解返回 {@link AuthorizationRequirement#NONE}
+     */
+    public AuthorizationRequirement resolve(Method method, Class<?> targetClass) {
+        final Map<Method, AuthorizationRequirement> cache = requirements.get(targetClass);
+        final AuthorizationRequirement requirement = cache.get(method);
+        if (null != requirement) {
+            return requirement;
+        }
+        return cache.computeIfAbsent(method, m -> doResolve(m, targetClass));
+    }
+
+    /**
+     * 通过反射合并方法和类上的注解
+     *
+     * @param method      the method
+     * @param targetClass the target class
+     * @return the authorization requirement
+     */
+    private AuthorizationRequirement doResolve(Method method, Class<?> targetClass) {
+        final AuthorizationRequirement requirement = AuthorizationRequirement.merge(
+                method.getAnnotation(RequiresUser.class), targetClass.getAnnotation(RequiresUser.class),
+                method.getAnnotation(RequiresRole.class), targetClass.getAnnotation(RequiresRole.class),
+                method.getAnnotation(RequiresRoles.class), targetClass.getAnnotation(RequiresRoles.class),
+                method.getAnnotation(RequiresPermission.class), targetClass.getAnnotation(RequiresPermission.class),
+                method.getAnnotation(RequiresPermissions.class), targetClass.getAnnotation(RequiresPermissions.class));
+        log.debug("注解权限拦截= 解析方法:{}#{}() 授权要求:{}", targetClass.getName(), method.getName(), requirement);
+        return requirement;
+    }
+}
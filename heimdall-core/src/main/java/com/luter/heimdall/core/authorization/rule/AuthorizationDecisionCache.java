@@ -0,0 +1,158 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.rule;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.luter.heimdall.core.authorization.authority.AuthorityFingerprint;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 有界的授权结果缓存
+ * <p>
+ * key: (用户权限指纹, 命中的规则, 请求 method, 请求 uri) ，value: 是否授权通过。
+ * <p>
+ * 先确定请求命中的规则，没有命中规则的请求不需要授权，也不进入缓存。
+ * 结果与 method 、uri 无关时(用户只有普通权限标识)，两者传 null ，同一条规则下不同的路径变量共享一条缓存。
+ * <p>
+ * 拥有相同权限集合的用户共享缓存，重复的授权判断只需要一次 hash 查找，与用户权限数量无关。
+ * <p>
+ * 按容量淘汰(近似 LRU)，规则集版本变化时整体失效。
+ * <p>
+ * uri 不做任何改写，与url匹配器看到的完全一致，保证缓存的结果与逐条匹配的结果相同。
+ *
+ * @author Luter
+ */
+@Slf4j
+public final class AuthorizationDecisionCache {
+    /**
+     * 缓存数据
+     */
+    private final Cache<DecisionKey, Boolean> decisions;
+    /**
+     * 缓存数据对应的规则集版本号
+     */
+    private volatile long version;
+
+    /**
+     * 有界的授权结果缓存
+     *
+     * @param maximumSize 最大缓存条数
+     */
+    public AuthorizationDecisionCache(long maximumSize) {
+        this.decisions = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        log.debug("初始化授权结果缓存，最大缓存条数:{}", maximumSize);
+    }
+
+    /**
+     * 获取缓存的授权结果
+     *
+     * @param ruleSet     当前的规则集
+     * @param fingerprint 用户权限指纹
+     * @param rule        请求命中的规则
+     * @param method      请求 method ，结果与之无关时为 null
+     * @param uri         请求 uri ，结果与之无关时为 null
+     * @return 是否授权通过 ，没有缓存返回 null
+     */
+    public Boolean get(AuthorizationRuleSet ruleSet, AuthorityFingerprint fingerprint, AuthorizationRule rule, String method, String uri) {
+        if (ruleSet.getVersion() != version) {
+            synchronized (this) {
+                if (ruleSet.getVersion() != version) {
+                    decisions.invalidateAll();
+                    version = ruleSet.getVersion();
+                    log.debug("规则集版本变化，清空授权结果缓存，当前版本:{}", version);
+                }
+            }
+            return null;
+        }
+        return decisions.getIfPresent(new DecisionKey(fingerprint, rule.getId(), method, uri));
+    }
+
+    /**
+     * 缓存授权结果
+     *
+     * @param ruleSet     计算授权结果时使用的规则集
+     * @param fingerprint 用户权限指纹
+     * @param rule        请求命中的规则
+     * @param method      请求 method ，结果与之无关时为 null
+     * @param uri         请求 uri ，结果与之无关时为 null
+     * @param allowed     是否授权通过
+     */
+    public void put(AuthorizationRuleSet ruleSet, AuthorityFingerprint fingerprint, AuthorizationRule rule, String method, String uri, boolean allowed) {
+        if (ruleSet.getVersion() == version && rule.getVersion() == version) {
+            decisions.put(new DecisionKey(fingerprint, rule.getId(), method, uri), allowed);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        decisions.invalidateAll();
+    }
+
+    /**
+     * 缓存条数
+     *
+     * @return the long
+     */
+    public long size() {
+        return decisions.size();
+    }
+
+    /**
+     * 缓存 key
+     */
+    private static final class DecisionKey {
+        private final AuthorityFingerprint fingerprint;
+        private final int ruleId;
+        private final String method;
+        private final String uri;
+        private final int hash;
+
+        private DecisionKey(AuthorityFingerprint fingerprint, int ruleId, String method, String uri) {
+            this.fingerprint = fingerprint;
+            this.ruleId = ruleId;
+            this.method = null == method ? null : method.toUpperCase(Locale.ROOT);
+            this.uri = uri;
+            this.hash = Objects.hash(fingerprint, ruleId, this.method, uri);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            DecisionKey that = (DecisionKey) o;
+            return hash == that.hash && ruleId == that.ruleId && fingerprint.equals(that.fingerprint)
+                    && Objects.equals(method, that.method) && Objects.equals(uri, that.uri);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.rule;
+
+import com.luter.heimdall.core.authorization.authority.AuthorityBitSet;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 编译后的系统权限拦截规则,不可变
+ * <p>
+ * 对应系统权限配置中的一条: 拦截url -> 需要的权限标识
+ *
+ * @author Luter
+ * @see AuthorizationRuleSet
+ */
+public final class AuthorizationRule {
+    /**
+     * 所属规则集的版本号
+     */
+    private final long version;
+    /**
+     * 规则编号，即规则在规则集中的下标
+     */
+    private final int id;
+    /**
+     * 要拦截的url
+     */
+    private final String pattern;
+    /**
+     * 需要的权限标识
+     */
+    private final Collection<String> permissions;
+    /**
+     * 需要的权限标识编译后的位图掩码
+     */
+    private final AuthorityBitSet permissionsMask;
+
+    AuthorizationRule(long version, int id, String pattern, Collection<String> permissions) {
+        this.version = version;
+        this.id = id;
+        this.pattern = pattern;
+        this.permissions = null == permissions ? Collections.emptyList() : permissions;
+        this.permissionsMask = AuthorityBitSet.ofIdentifiers(this.permissions.toArray(new String[0]));
+    }
+
+    /**
+     * Gets version.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets id.
+     *
+     * @return the id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets pattern.
+     *
+     * @return the pattern
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Gets permissions.
+     *
+     * @return the permissions
+     */
+    public Collection<String> getPermissions() {
+        return permissions;
+    }
+
+    /**
+     * Gets permissions mask.
+     *
+     * @return the permissions mask
+     */
+    public AuthorityBitSet getPermissionsMask() {
+        return permissionsMask;
+    }
+
+    @Override
+    public String toString() {
+        return "AuthorizationRule{" +
+                "id=" + id +
+                ", pattern='" + pattern + '\'' +
+                ", permissions=" + permissions +
+                '}';
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.rule;
+
+import com.luter.heimdall.core.authorization.authority.RoleHierarchy;
+import com.luter.heimdall.core.utils.PathUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 编译后的系统权限拦截规则集,不可变
+ * <p>
+ * 系统权限配置(拦截url -> 需要的权限标识)按原有顺序编译成带编号的规则列表，编号即下标。
+ * <p>
+ * 每次编译都会分配一个新的版本号，规则集之外的派生数据(如路由绑定)据此判断是否失效。
+ * <p>
+ * 角色继承关系随规则集一起编译，继承关系变化同样会产生新的版本。
+ *
+ * @author Luter
+ */
+@Slf4j
+public final class AuthorizationRuleSet {
+    /**
+     * 版本号序列
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+    /**
+     * 空规则集
+     */
+    public static final AuthorizationRuleSet EMPTY = new AuthorizationRuleSet(VERSIONS.incrementAndGet(), Collections.emptyMap(), Collections.emptyList(), RoleHierarchy.EMPTY);
+    /**
+     * 多层通配符
+     */
+    private static final String DOUBLE_ASTERISK = "**";
+    /**
+     * 单层通配符
+     */
+    private static final String ASTERISK = "*";
+    /**
+     * 版本号
+     */
+    private final long version;
+    /**
+     * 编译来源
+     */
+    private final Map<String, Collection<String>> source;
+    /**
+     * 规则列表
+     */
+    private final List<AuthorizationRule> rules;
+    /**
+     * 角色继承关系
+     */
+    private final RoleHierarchy roleHierarchy;
+
+    private AuthorizationRuleSet(long version, Map<String, Collection<String>> source, List<AuthorizationRule> rules, RoleHierarchy roleHierarchy) {
+        this.version = version;
+        this.source = source;
+        this.rules = rules;
+        this.roleHierarchy = roleHierarchy;
+    }
+
+    /**
+     * 编译系统权限拦截配置
+     *
+     * @param authorities 系统权限拦截配置
+     * @return the authorization rule set
+     */
+    public static AuthorizationRuleSet compile(Map<String, Collection<String>> authorities) {
+        return compile(authorities, RoleHierarchy.EMPTY);
+    }
+
+    /**
+     * 编译系统权限拦截配置和角色继承关系
+     *
+     * @param authorities   系统权限拦截配置
+     * @param roleHierarchy 编译好的角色继承关系
+     * @return the authorization rule set
+     */
+    public static AuthorizationRuleSet compile(Map<String, Collection<String>> authorities, RoleHierarchy roleHierarchy) {
+        final RoleHierarchy hierarchy = null == roleHierarchy ? RoleHierarchy.EMPTY : roleHierarchy;
+        if ((null == authorities || authorities.isEmpty()) && hierarchy.isEmpty()) {
+            return EMPTY;
+        }
+        final Map<String, Collection<String>> source = null == authorities ? Collections.emptyMap() : authorities;
+        final long version = VERSIONS.incrementAndGet();
+        final List<AuthorizationRule> rules = new ArrayList<>(source.size());
+        for (Map.Entry<String, Collection<String>> entry : source.entrySet()) {
+            rules.add(new AuthorizationRule(version, rules.size(), entry.getKey(), entry.getValue()));
+        }
+        final AuthorizationRuleSet ruleSet = new AuthorizationRuleSet(version, source, Collections.unmodifiableList(rules), hierarchy);
+        log.debug("系统权限规则编译完成，版本:{}，规则总数:{}，{}", ruleSet.version, rules.size(), hierarchy);
+        return ruleSet;
+    }
+
+    /**
+     * 是否由给定的系统权限拦截配置编译而来
+     *
+     * @param authorities 系统权限拦截配置
+     * @return the boolean
+     */
+    public boolean isCompiledFrom(Map<String, Collection<String>> authorities) {
+        if (null == authorities || authorities.isEmpty()) {
+            return rules.isEmpty();
+        }
+        return authorities == source || authorities.equals(source);
+    }
+
+    /**
+     * Gets role hierarchy.
+     *
+     * @return the role hierarchy
+     */
+    public RoleHierarchy getRoleHierarchy() {
+        return roleHierarchy;
+    }
+
+    /**
+     * 按规则顺序查找第一条与请求uri匹配的规则
+     *
+     * @param uri     请求uri
+     * @param matcher url匹配器
+     * @return 命中的规则 ，没有命中返回 null
+     */
+    public AuthorizationRule match(String uri, PathUtil matcher) {
+        for (AuthorizationRule rule : rules) {
+            final boolean match = matcher.match(rule.getPattern(), uri);
+            log.debug("授权= 请求资源:[{}],拦截url:[{}], {}", uri, rule.getPattern(), match ? "规则匹配" : "规则不匹配,忽略");
+            if (match) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把路由路径绑定到规则
+     *
+     * @param route   路由路径，需要包含 context path ，与请求uri保持一致
+     * @param matcher url匹配器
+     * @return the route rule binding
+     */
+    public RouteRuleBinding bind(String route, PathUtil matcher) {
+        if (isLiteral(route)) {
+            // 静态路由仍然保留候选规则，应对尾部斜杠等 uri 与路由路径不完全相同的情况
+            return new RouteRuleBinding(route, true, match(route, matcher), candidates(route));
+        }
+        return new RouteRuleBinding(route, false, null, candidates(route));
+    }
+
+    /**
+     * 找出不可能命中任何路由的规则
+     *
+     * @param bindings 全部路由的绑定结果
+     * @return the list
+     */
+    public List<AuthorizationRule> unboundRules(Collection<RouteRuleBinding> bindings) {
+        final BitSet bound = new BitSet(rules.size());
+        for (RouteRuleBinding binding : bindings) {
+            for (AuthorizationRule candidate : binding.getCandidates()) {
+                bound.set(candidate.getId());
+            }
+        }
+        final List<AuthorizationRule> unbound = new ArrayList<>();
+        for (AuthorizationRule rule : rules) {
+            if (!bound.get(rule.getId())) {
+                unbound.add(rule);
+            }
+        }
+        return unbound;
+    }
+
+    /**
+     * 可能命中路由的规则，保持规则原有顺序
+     *
+     * @param route the route
+     * @return the list
+     */
+    private List<AuthorizationRule> candidates(String route) {
+        final List<AuthorizationRule> candidates = new ArrayList<>(1);
+        final String[] routeTokens = tokenize(route);
+        for (AuthorizationRule rule : rules) {
+            if (mayMatch(tokenize(rule.getPattern()), routeTokens)) {
+                candidates.add(rule);
+            }
+        }
+        return candidates.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(candidates);
+    }
+
+    /**
+     * 规则是否可能匹配被路由到该路径的请求，只在能够确定不匹配时返回 false
+     * <p>
+     * 从头部和尾部分别逐段比较，遇到多层通配符停止，两边都是字面量且不相等即可确定不匹配，
+     * <p>
+     * 两边都没有多层通配符时，段数不同也可以确定不匹配，
+     * <p>
+     * 但是以单独的 * 结尾的规则比路由多一段时仍然可能匹配，如规则 /a/b/* 可以匹配以斜杠结尾的请求 /a/b/ 。
+     *
+     * @param pattern 规则路径
+     * @param route   路由路径
+     * @return the boolean
+     */
+    private static boolean mayMatch(String[] pattern, String[] route) {
+        final int n = Math.min(pattern.length, route.length);
+        int head = 0;
+        for (; head < n; head++) {
+            if (isMultiSegment(pattern[head]) || isMultiSegment(route[head])) {
+                break;
+            }
+            if (isLiteral(pattern[head]) && isLiteral(route[head]) && !pattern[head].equals(route[head])) {
+                return false;
+            }
+        }
+        if (head == n) {
+            // 较短的一边已经比较完，较长的一边剩余部分有多层通配符才可能匹配
+            return pattern.length == route.length || hasMultiSegment(pattern, n) || hasMultiSegment(route, n)
+                    || (pattern.length == route.length + 1 && ASTERISK.equals(pattern[n]));
+        }
+        for (int i = pattern.length - 1, j = route.length - 1; i >= 0 && j >= 0; i--, j--) {
+            if (isMultiSegment(pattern[i]) || isMultiSegment(route[j])) {
+                break;
+            }
+            if (isLiteral(pattern[i]) && isLiteral(route[j]) && !pattern[i].equals(route[j])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasMultiSegment(String[] tokens, int from) {
+        for (int i = from; i < tokens.length; i++) {
+            if (isMultiSegment(tokens[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] tokenize(String path) {
+        return PathUtil.tokenizeToStringArray(path, PathUtil.DEFAULT_PATH_SEPARATOR, false, true);
+    }
+
+    /**
+     * 是否是可以跨越多段的通配，如 ** 或者 {*path}
+     *
+     * @param segment the segment
+     * @return the boolean
+     */
+    private static boolean isMultiSegment(String segment) {
+        return DOUBLE_ASTERISK.equals(segment) || segment.startsWith("{*");
+    }
+
+    /**
+     * 是否不含变量和通配符
+     *
+     * @param segment the segment
+     * @return the boolean
+     */
+    private static boolean isLiteral(String segment) {
+        return segment.indexOf('*') < 0 && segment.indexOf('?') < 0 && segment.indexOf('{') < 0;
+    }
+
+    /**
+     * Gets version.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets rules.
+     *
+     * @return the rules
+     */
+    public List<AuthorizationRule> getRules() {
+        return rules;
+    }
+
+    /**
+     * 规则总数
+     *
+     * @return the int
+     */
+    public int size() {
+        return rules.size();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.rule;
+
+import java.util.BitSet;
+
+/**
+ * 批量授权结果,不可变
+ * <p>
+ * 结果按查询顺序以位向量保存，第 i 位对应第 i 个查询，可以直接以 "0101..." 字符串的形式返回给前端。
+ *
+ * @author Luter
+ * @see com.luter.heimdall.core.manager.AuthorizationManager#isAuthorized(java.util.List, java.util.List)
+ */
+public final class BatchAuthorizationResult {
+    /**
+     * 请求资源查询总数
+     */
+    private final int routeCount;
+    /**
+     * 授权通过的请求资源
+     */
+    private final BitSet routes;
+    /**
+     * 权限标识查询总数
+     */
+    private final int permissionCount;
+    /**
+     * 具备的权限标识
+     */
+    private final BitSet permissions;
+
+    /**
+     * 批量授权结果
+     *
+     * @param routeCount      请求资源查询总数
+     * @param routes          授权通过的请求资源
+     * @param permissionCount 权限标识查询总数
+     * @param permissions     具备的权限标识
+     */
+    public BatchAuthorizationResult(int routeCount, BitSet routes, int permissionCount, BitSet permissions) {
+        this.routeCount = routeCount;
+        this.routes = (BitSet) routes.clone();
+        this.permissionCount = permissionCount;
+        this.permissions = (BitSet) permissions.clone();
+    }
+
+    /**
+     * 第 index 个请求资源是否授权通过
+     *
+     * @param index 查询下标
+     * @return the boolean
+     */
+    public boolean isRouteAllowed(int index) {
+        return routes.get(index);
+    }
+
+    /**
+     * 是否具备第 index 个权限标识
+     *
+     * @param index 查询下标
+     * @return the boolean
+     */
+    public boolean hasPermission(int index) {
+        return permissions.get(index);
+    }
+
+    /**
+     * 请求资源授权结果，如: 1011 ，1 为通过
+     *
+     * @return the route bits
+     */
+    public String getRouteBits() {
+        return toBits(routes, routeCount);
+    }
+
+    /**
+     * 权限标识授权结果，如: 1011 ，1 为具备
+     *
+     * @return the permission bits
+     */
+    public String getPermissionBits() {
+        return toBits(permissions, permissionCount);
+    }
+
+    /**
+     * Gets route count.
+     *
+     * @return the route count
+     */
+    public int getRouteCount() {
+        return routeCount;
+    }
+
+    /**
+     * Gets permission count.
+     *
+     * @return the permission count
+     */
+    public int getPermissionCount() {
+        return permissionCount;
+    }
+
+    private static String toBits(BitSet bits, int count) {
+        final char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            chars[i] = bits.get(i) ? '1' : '0';
+        }
+        return new String(chars);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchAuthorizationResult{" +
+                "routes=" + getRouteBits() +
+                ", permissions=" + getPermissionBits() +
+                '}';
+    }
+}
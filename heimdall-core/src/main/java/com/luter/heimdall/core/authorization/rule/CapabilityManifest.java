@@ -0,0 +1,194 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.rule;
+
+import com.luter.heimdall.core.authorization.authority.GrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.MethodAndUrlGrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.SimpleGrantedAuthority;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * 用户能力清单,不可变
+ * <p>
+ * 包含用户具备的权限标识、restful 权限，以及用户可以通过、不能通过和无法预先判断的系统权限拦截规则，
+ * 前端一次获取即可完成菜单、按钮、路由的渲染判断。
+ * <p>
+ * 清单只与 (用户权限集合, 规则集) 有关，ETag 由清单内容计算，不同节点对相同内容得到相同的 ETag 。
+ * <p>
+ * 与拦截时的判断一致: 凭普通权限标识可以通过的规则在 allowedRules 中；
+ * 用户具有 restful 权限时，其余规则是否通过取决于请求的 method 和 url ，放在 undeterminedRules 中，
+ * 需要结合 restfulAuthorities 按具体请求判断(或者调用批量授权接口)，deniedRules 为空；
+ * 用户没有 restful 权限时，其余规则一定不能通过，放在 deniedRules 中。
+ *
+ * @author Luter
+ */
+public final class CapabilityManifest {
+    /**
+     * 权限标识，已排序
+     */
+    private final List<String> permissions;
+    /**
+     * restful 权限，格式 METHOD:url ，已排序
+     */
+    private final List<String> restfulAuthorities;
+    /**
+     * 凭权限标识可以通过的规则
+     */
+    private final List<String> allowedRules;
+    /**
+     * 不能通过的规则
+     */
+    private final List<String> deniedRules;
+    /**
+     * 是否通过取决于具体请求的规则，只在用户具有 restful 权限时出现
+     */
+    private final List<String> undeterminedRules;
+    /**
+     * 强 ETag ，含双引号
+     */
+    private final String etag;
+
+    private CapabilityManifest(List<String> permissions, List<String> restfulAuthorities,
+                               List<String> allowedRules, List<String> deniedRules, List<String> undeterminedRules) {
+        this.permissions = Collections.unmodifiableList(permissions);
+        this.restfulAuthorities = Collections.unmodifiableList(restfulAuthorities);
+        this.allowedRules = Collections.unmodifiableList(allowedRules);
+        this.deniedRules = Collections.unmodifiableList(deniedRules);
+        this.undeterminedRules = Collections.unmodifiableList(undeterminedRules);
+        this.etag = digest(permissions, restfulAuthorities, allowedRules, deniedRules, undeterminedRules);
+    }
+
+    /**
+     * 计算用户能力清单
+     *
+     * @param ruleSet     规则集
+     * @param authorities 用户权限
+     * @return the capability manifest
+     */
+    public static CapabilityManifest compute(AuthorizationRuleSet ruleSet, Collection<? extends GrantedAuthority> authorities) {
+        final List<String> identifiers = new ArrayList<>();
+        final Set<String> restful = new TreeSet<>();
+        for (GrantedAuthority authority : authorities) {
+            if (authority instanceof SimpleGrantedAuthority) {
+                identifiers.add(authority.getAuthority());
+            } else if (authority instanceof MethodAndUrlGrantedAuthority) {
+                restful.add(authority.getAuthority());
+            }
+        }
+        //清单中的权限标识包含继承的角色
+        final Set<String> permissions = new TreeSet<>(ruleSet.getRoleHierarchy().expand(identifiers));
+        final RuleDecisionBitmap decisions = RuleDecisionBitmap.compute(ruleSet, authorities);
+        final List<String> allowed = new ArrayList<>();
+        final List<String> denied = new ArrayList<>();
+        final List<String> undetermined = new ArrayList<>();
+        //凭普通权限标识不能通过时，restful 权限还要按请求的 method 和 url 判断，不能预先确定
+        final List<String> rest = decisions.isRestful() ? undetermined : denied;
+        for (AuthorizationRule rule : ruleSet.getRules()) {
+            (decisions.isAllowed(rule.getId()) ? allowed : rest).add(rule.getPattern());
+        }
+        return new CapabilityManifest(new ArrayList<>(permissions), new ArrayList<>(restful), allowed, denied, undetermined);
+    }
+
+    /**
+     * 按内容计算 ETag
+     *
+     * @param parts 清单内容
+     * @return the string
+     */
+    @SafeVarargs
+    private static String digest(List<String>... parts) {
+        try {
+            final MessageDigest md = MessageDigest.getInstance("SHA-256");
+            for (List<String> part : parts) {
+                for (String value : part) {
+                    md.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+                    md.update((byte) '\n');
+                }
+                // 分隔不同部分
+                md.update((byte) 0);
+            }
+            final byte[] hash = md.digest();
+            final StringBuilder sb = new StringBuilder(34).append('"');
+            for (int i = 0; i < 16; i++) {
+                sb.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+            }
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets permissions.
+     *
+     * @return the permissions
+     */
+    public List<String> getPermissions() {
+        return permissions;
+    }
+
+    /**
+     * Gets restful authorities.
+     *
+     * @return the restful authorities
+     */
+    public List<String> getRestfulAuthorities() {
+        return restfulAuthorities;
+    }
+
+    /**
+     * Gets allowed rules.
+     *
+     * @return the allowed rules
+     */
+    public List<String> getAllowedRules() {
+        return allowedRules;
+    }
+
+    /**
+     * Gets denied rules.
+     *
+     * @return the denied rules
+     */
+    public List<String> getDeniedRules() {
+        return deniedRules;
+    }
+
+    /**
+     * Gets undetermined rules.
+     *
+     * @return the undetermined rules
+     */
+    public List<String> getUndeterminedRules() {
+        return undeterminedRules;
+    }
+
+    /**
+     * Gets etag.
+     *
+     * @return the etag
+     */
+    public String getEtag() {
+        return etag;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.rule;
+
+/**
+ * 批量授权时要判断的一个请求资源: method + url ,不可变
+ *
+ * @author Luter
+ * @see BatchAuthorizationResult
+ */
+public final class RouteQuery {
+    /**
+     * 请求 method
+     */
+    private final String method;
+    /**
+     * 请求 url
+     */
+    private final String url;
+
+    private RouteQuery(String method, String url) {
+        this.method = method;
+        this.url = url;
+    }
+
+    /**
+     * 构造请求资源
+     *
+     * @param method 请求 method
+     * @param url    请求 url ，与 HttpServletRequest#getRequestURI() 一致，包含 context path
+     * @return the route query
+     */
+    public static RouteQuery of(String method, String url) {
+        return new RouteQuery(method, url);
+    }
+
+    /**
+     * Gets method.
+     *
+     * @return the method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets url.
+     *
+     * @return the url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public String toString() {
+        return method + ":" + url;
+    }
+}
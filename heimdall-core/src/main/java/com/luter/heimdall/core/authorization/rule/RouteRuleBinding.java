@@ -0,0 +1,144 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.rule;
+
+import com.luter.heimdall.core.utils.PathUtil;
+
+import java.util.List;
+
+/**
+ * 路由与系统权限拦截规则的绑定结果,不可变
+ * <p>
+ * 系统启动或者规则变化时，针对处理器(如 Spring MVC 的 HandlerMethod)的每一个路由路径预先计算:
+ * <p>
+ * 1、路由路径不含变量和通配符时，直接确定命中的规则，请求uri与之相同时不再做任何url匹配
+ * <p>
+ * 2、否则找出可能命中的候选规则(保持规则原有顺序)，请求时只在候选规则中匹配，通常只有 0~1 条
+ * <p>
+ * 候选规则只对能被路由路径本身匹配的请求uri成立，尾部斜杠、后缀等由处理器映射放宽匹配的请求uri
+ * 需要调用方先通过 {@link #covers(String, PathUtil)} 判断，不成立时回退到全部规则逐条匹配。
+ *
+ * @author Luter
+ * @see AuthorizationRuleSet#bind(String, PathUtil)
+ */
+public final class RouteRuleBinding {
+    /**
+     * 路由路径(含 context path)
+     */
+    private final String route;
+    /**
+     * 路由路径是否是静态的，即不含变量和通配符
+     */
+    private final boolean staticRoute;
+    /**
+     * 静态路由直接命中的规则，没有规则命中为 null
+     */
+    private final AuthorizationRule rule;
+    /**
+     * 可能命中的候选规则
+     */
+    private final List<AuthorizationRule> candidates;
+
+    RouteRuleBinding(String route, boolean staticRoute, AuthorizationRule rule, List<AuthorizationRule> candidates) {
+        this.route = route;
+        this.staticRoute = staticRoute;
+        this.rule = rule;
+        this.candidates = candidates;
+    }
+
+    /**
+     * 绑定结果是否适用于请求uri
+     * <p>
+     * 静态路由要求请求uri与路由路径完全相同，否则要求请求uri能被路由路径本身匹配。
+     *
+     * @param uri     请求uri
+     * @param matcher url匹配器
+     * @return the boolean
+     */
+    public boolean covers(String uri, PathUtil matcher) {
+        return staticRoute ? route.equals(uri) : matcher.match(route, uri);
+    }
+
+    /**
+     * 查找请求uri命中的规则
+     * <p>
+     * 调用方需保证绑定结果适用于请求uri(见 {@link #covers(String, PathUtil)})，否则结果没有意义
+     *
+     * @param uri     请求uri
+     * @param matcher url匹配器
+     * @return 命中的规则 ，没有命中返回 null
+     */
+    public AuthorizationRule match(String uri, PathUtil matcher) {
+        if (staticRoute && route.equals(uri)) {
+            return rule;
+        }
+        for (AuthorizationRule candidate : candidates) {
+            if (matcher.match(candidate.getPattern(), uri)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets route.
+     *
+     * @return the route
+     */
+    public String getRoute() {
+        return route;
+    }
+
+    /**
+     * Is static route boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isStaticRoute() {
+        return staticRoute;
+    }
+
+    /**
+     * Gets rule.
+     *
+     * @return the rule
+     */
+    public AuthorizationRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Gets candidates.
+     *
+     * @return the candidates
+     */
+    public List<AuthorizationRule> getCandidates() {
+        return candidates;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteRuleBinding{" +
+                "route='" + route + '\'' +
+                ", staticRoute=" + staticRoute +
+                ", rule=" + rule +
+                ", candidates=" + candidates.size() +
+                '}';
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.rule;
+
+import com.luter.heimdall.core.authorization.authority.AuthorityBitSet;
+import com.luter.heimdall.core.authorization.authority.GrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.MethodAndUrlGrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.PermissionTrie;
+import com.luter.heimdall.core.authorization.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 用户对规则集中每条规则的授权结果位图,不可变
+ * <p>
+ * 第 i 位为 1 表示用户凭普通权限标识(SimpleGrantedAuthority，含通配权限和继承的角色)即可通过第 i 条规则，
+ * 这个结果只与用户权限和规则集有关，用户权限或者规则集版本变化前不会改变，
+ * 所以随缓存的用户权限一起保存，拦截时就是: 找到命中的规则编号 -> 测试一位。
+ * <p>
+ * 位为 0 时，如果用户具有 MethodAndUrlGrantedAuthority 类型的权限，还需要按请求的 method 和 url 校验，
+ * 这部分与请求有关，不能预先计算。
+ *
+ * @author Luter
+ * @see com.luter.heimdall.core.authorization.authority.GrantedAuthorityList#getDecisions(AuthorizationRuleSet)
+ */
+public final class RuleDecisionBitmap {
+    /**
+     * 规则集版本号
+     */
+    private final long version;
+    /**
+     * 授权通过的规则
+     */
+    private final BitSet allowed;
+    /**
+     * 用户是否具有 MethodAndUrlGrantedAuthority 类型的权限
+     */
+    private final boolean restful;
+
+    private RuleDecisionBitmap(long version, BitSet allowed, boolean restful) {
+        this.version = version;
+        this.allowed = allowed;
+        this.restful = restful;
+    }
+
+    /**
+     * 计算用户对规则集中每条规则的授权结果
+     *
+     * @param ruleSet     规则集
+     * @param authorities 用户权限
+     * @return the rule decision bitmap
+     */
+    public static RuleDecisionBitmap compute(AuthorizationRuleSet ruleSet, Collection<? extends GrantedAuthority> authorities) {
+        final List<String> identifiers = new ArrayList<>(authorities.size());
+        boolean restful = false, unconditional = false;
+        for (GrantedAuthority authority : authorities) {
+            if (authority instanceof MethodAndUrlGrantedAuthority) {
+                restful = true;
+            } else if (authority instanceof SimpleGrantedAuthority) {
+                identifiers.add(authority.getAuthority());
+            } else {
+                //不支持的权限类型，与逐条校验时一样，默认通过
+                unconditional = true;
+            }
+        }
+        final List<AuthorizationRule> rules = ruleSet.getRules();
+        final BitSet allowed = new BitSet(rules.size());
+        if (unconditional) {
+            allowed.set(0, rules.size());
+        } else {
+            //按角色继承关系展开后再计算
+            final Collection<String> expanded = ruleSet.getRoleHierarchy().expand(identifiers);
+            final AuthorityBitSet granted = AuthorityBitSet.ofIdentifiers(expanded.toArray(new String[0]));
+            final PermissionTrie wildcards = PermissionTrie.compile(expanded);
+            for (AuthorizationRule rule : rules) {
+                if (granted.intersects(rule.getPermissionsMask()) || wildcards.impliesAny(rule.getPermissions())) {
+                    allowed.set(rule.getId());
+                }
+            }
+        }
+        return new RuleDecisionBitmap(ruleSet.getVersion(), allowed, restful);
+    }
+
+    /**
+     * 凭普通权限标识是否可以通过规则
+     *
+     * @param ruleId 规则编号
+     * @return the boolean
+     */
+    public boolean isAllowed(int ruleId) {
+        return allowed.get(ruleId);
+    }
+
+    /**
+     * 用户是否具有 MethodAndUrlGrantedAuthority 类型的权限，位为 0 时需要继续按 method 和 url 校验
+     *
+     * @return the boolean
+     */
+    public boolean isRestful() {
+        return restful;
+    }
+
+    /**
+     * Gets version.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "RuleDecisionBitmap{" +
+                "version=" + version +
+                ", allowed=" + allowed.cardinality() +
+                ", restful=" + restful +
+                '}';
+    }
+}
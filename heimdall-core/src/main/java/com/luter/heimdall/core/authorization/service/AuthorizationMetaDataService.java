@@ -25,6 +25,7 @@ import com.luter.heimdall.core.session.SimpleSession;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -78,4 +79,21 @@ public interface AuthorizationMetaDataService {
      * @since 1.0.2
      */
     List<? extends GrantedAuthority> loadUserAuthorities(SimpleSession session);
+
+    /**
+     * 加载 角色继承关系
+     * <p>
+     * Map.key = 角色标识, Map.value = 直接包含的角色标识(也可以是权限标识)集合，如 admin -> [manager] , manager -> [user]
+     * <p>
+     * 只需要配置直接包含关系，传递闭包在系统权限规则编译时一并计算，
+     * 用户权限中只保存直接授予的角色即可，继承的角色在校验时自动具备。
+     * <p>
+     * 默认没有任何继承关系
+     *
+     * @return the map
+     * @see AuthorizationManager#refreshRoleHierarchy() AuthorizationManager#refreshRoleHierarchy()
+     */
+    default Map<String, ? extends Collection<String>> loadRoleHierarchy() {
+        return Collections.emptyMap();
+    }
 }
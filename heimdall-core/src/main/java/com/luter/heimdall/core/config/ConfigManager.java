@@ -106,6 +106,13 @@ public final class ConfigManager {
         if (StrUtils.isEmpty(config.getActiveSessionCacheKey())) {
             log.warn("请注意 Session配置参数 activeSessionCacheKey 为空，将采用系统默认配置 ");
         }
+        if (StrUtils.isNotBlank(config.getSessionIdPrefix()) && StrUtils.isNotBlank(config.getSessionAttributePrefix())
+                && config.getSessionAttributePrefix().startsWith(config.getSessionIdPrefix())) {
+            throw new IllegalArgumentException("Session配置参数: sessionAttributePrefix 不能以 sessionIdPrefix 开头");
+        }
+        if (config.getActiveIndexShards() < 1) {
+            throw new IllegalArgumentException("Session配置参数: activeIndexShards 不能小于1");
+        }
     }
 
     /**
@@ -54,6 +54,9 @@ public class AuthorityProperty {
     private boolean userCachedEnabled = true;
     /**
      * 用户权限在缓存中的key
+     * <p>
+     * Redis 缓存下作为 key 前缀: 每个会话的权限引用为 {key}:session:{SessionId} ，随会话过期,
+     * 内容相同的权限集合共享一份 {key}:sets:{内容摘要}
      */
     private String userCachedKey = "heimdall:userAuthorities";
     /**
@@ -62,4 +65,37 @@ public class AuthorityProperty {
      * 超过这个时长将会被清理，默认 :24小时
      */
     private long userExpire = 24;
+    /**
+     * 是否把系统权限拦截规则预先绑定到 Spring MVC 的处理器方法，默认：false，关闭
+     * <p>
+     * 开启后规则加载时为每个处理器方法的路由预先计算命中的规则，拦截器不再对全部规则逐条做url匹配，
+     * <p>
+     * 同时会报告不可能命中任何处理器的规则
+     */
+    private boolean handlerBindingEnabled = false;
+    /**
+     * 是否开启授权结果缓存，默认：false，关闭
+     * <p>
+     * 按 (用户权限指纹, 命中的规则) 缓存授权结果，用户具有 restful 权限时再加上请求 method 和 uri ，
+     * 拥有相同权限的用户共享，系统权限规则变化时自动失效
+     */
+    private boolean decisionCacheEnabled = false;
+    /**
+     * 授权结果缓存最大条数，超过后淘汰最近最少使用的，默认：10000
+     */
+    private long decisionCacheSize = 10000;
+    /**
+     * 是否在登录成功后异步预加载用户权限，默认：false，关闭
+     * <p>
+     * 开启用户权限缓存时有效。登录请求只提交任务，不等待结果，用户的第一个受保护请求不再承担加载用户权限的延迟
+     */
+    private boolean prefetchEnabled = false;
+    /**
+     * 预加载用户权限的线程数，默认：2
+     */
+    private int prefetchThreads = 2;
+    /**
+     * 预加载用户权限的任务队列长度，队列满时放弃预加载，由第一次授权时加载，默认：1000
+     */
+    private int prefetchQueueSize = 1000;
 }
@@ -35,6 +35,18 @@ public class SessionProperty {
      * Session前缀
      */
     private String sessionIdPrefix = "heimdall:sessions:";
+    /**
+     * SessionId 中的节点(分片)标识，默认为空，不加
+     * <p>
+     * 设置后 SessionId 形如: 标识.随机部分 ，便于按 SessionId 路由，只能包含字母、数字、- 和 _
+     */
+    private String sessionIdNodeTag = "";
+    /**
+     * Session 属性缓存前缀，仅限redis缓存，每个 Session 的属性以 Hash 形式存储，一个属性一个字段
+     * <p>
+     * 不能以 sessionIdPrefix 开头
+     */
+    private String sessionAttributePrefix = "heimdall:session-attributes:";
     /**
      * 活动Session缓存key，仅限redis缓存， 用以分页获取在线用户
      * <p>
@@ -56,6 +68,75 @@ public class SessionProperty {
      * value = SimpleSession.id
      */
     private String activeUserCacheKey = "heimdall:active-users:";
+    /**
+     * Session 摘要缓存key，仅限redis缓存，用以分页获取在线用户列表而不加载完整的 Session
+     * <p>
+     * 数据以Hash表形式存储，与活动Session ZSet 一样分片
+     * <p>
+     * key  = SimpleSession.id
+     * value = SessionSummary
+     */
+    private String sessionSummaryCacheKey = "heimdall:session-summaries:";
+    /**
+     * 活动Session ZSet 和活动用户 Hash 的分片数量，仅限redis缓存，默认:1，不分片
+     * <p>
+     * 大于 1 时按 SessionId(ZSet) 、principal(Hash) 的哈希分散到 N 个 key ，key 后追加分片序号，如: heimdall:active-sessions:3
+     * <p>
+     * 避免在线用户很多时形成大 key 、热 key ，计数、分页和清理在各个分片上分别执行后合并
+     * <p>
+     * 修改分片数量后，原有的在线用户索引不再被读取，需要用户重新登录
+     */
+    private int activeIndexShards = 1;
+    /**
+     * 是否运行在 Redis Cluster 上，仅限redis缓存，默认:false
+     * <p>
+     * 开启后 Session 及其权限缓存的 key 以 {SessionId} 作为 hash tag ，不再使用跨 slot 的脚本，需要使用 Lettuce 连接
+     * <p>
+     * Redis Cluster 的 Session 过期、删除事件只由 key 所在的节点发出，事件监听只订阅一个节点，
+     * 其他节点上过期的 Session 由过期 Session 定期清理任务(scheduler.period)清理在线用户索引
+     * <p>
+     * 修改后原有的 Session 不再被读取，需要用户重新登录
+     */
+    private boolean clusterMode = false;
+    /**
+     * 是否开启按代失效 Session ，默认:false
+     * <p>
+     * 开启后 Session 创建时记录全局代数和用户代数，读取时与当前代数比较，
+     * 增加代数即可使全部(或某个用户的) Session 失效，不需要逐个删除
+     * <p>
+     * redis 缓存下读取 Session 时比较本地缓存的代数，缓存过期后多一次 HMGET
+     */
+    private boolean generationEnabled = false;
+    /**
+     * 按代失效时本地缓存代数的时长，单位:毫秒，默认:1000 ，仅限redis缓存
+     * <p>
+     * 其他节点增加的代数最迟在这个时长之后生效，小于等于 0 时不缓存，每次读取 Session 都从 Redis 读取代数
+     */
+    private long generationCacheMillis = 1000;
+    /**
+     * 只读副本的主机，仅限redis缓存，默认为空，不使用副本
+     * <p>
+     * 设置后 Session 数据、Session 属性和权限集合从副本读取，副本连接沿用主节点 Lettuce 连接的密码、库和客户端配置。
+     * Session 是否存在和会话的权限引用仍然在主节点确认，副本的复制延迟不会让已经删除的 Session 或者清除的权限继续生效
+     */
+    private String readReplicaHost = "";
+    /**
+     * 只读副本的端口，默认:6379
+     */
+    private int readReplicaPort = 6379;
+    /**
+     * 使用只读副本时的读己之写窗口时长，单位:毫秒，不小于副本的复制延迟，默认:2000
+     * <p>
+     * 本节点刚写过的 Session 在窗口内仍然从主节点读取
+     */
+    private long readYourWritesMillis = 2000;
+    /**
+     * 在线用户查询是否统计范围内的总数，仅限内存缓存(caffeine 等)，默认:true
+     * <p>
+     * 内存中的查询索引是跳表，统计总数需要遍历整个查询范围，O(范围内的会话数)。
+     * 关闭后只遍历到当前页，总数为已经遍历的数量，后面还有数据时再加 1 ，只能用来判断是否还有下一页
+     */
+    private boolean searchCountEnabled = true;
     /**
      * 前端请求传过来的token或者sessionId 的参数名称
      * 尽量与cookie的name一致，也可不同
@@ -18,11 +18,13 @@
 
 package com.luter.heimdall.core.manager;
 
+import com.google.common.util.concurrent.Striped;
 import com.luter.heimdall.core.config.ConfigManager;
 import com.luter.heimdall.core.details.UserDetails;
 import com.luter.heimdall.core.exception.*;
 import com.luter.heimdall.core.manager.listener.AbstractAuthenticationEvent;
 import com.luter.heimdall.core.session.Page;
+import com.luter.heimdall.core.session.SessionSummary;
 import com.luter.heimdall.core.session.SimpleSession;
 import com.luter.heimdall.core.session.dao.SessionDAO;
 import com.luter.heimdall.core.utils.StrUtils;
@@ -30,17 +32,37 @@ import lombok.extern.slf4j.Slf4j;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * 认证管理器
+ * <p>
+ * 同一个 principal 的登录按 principal 哈希分段加锁串行执行，不同 principal 的登录互不影响;
+ * 多个节点之间由 SessionDAO 对 principal -> SessionId 映射的比较并设置保证，冲突时重新判断后重试。
  *
  * @author Luter
  */
 @Slf4j
 public class AuthenticationManager extends AbstractAuthenticationEvent {
+    /**
+     * 按条件查找要踢出的会话时，每次分页读取的数量
+     */
+    private static final int KICK_OUT_PAGE_SIZE = 1000;
+    /**
+     * 登录锁分段数量
+     */
+    private static final int LOGIN_LOCK_STRIPES = 256;
+    /**
+     * 并发登录冲突时最多尝试的次数
+     */
+    private static final int MAX_LOGIN_ATTEMPTS = 3;
+    /**
+     * 按 principal 分段的登录锁
+     */
+    private final Striped<Lock> loginLocks = Striped.lock(LOGIN_LOCK_STRIPES);
 
     /**
      * The Session dao.
@@ -56,6 +78,10 @@ public class AuthenticationManager extends AbstractAuthenticationEvent {
      * true: 允许，拒绝后来的
      */
     private boolean concurrentLogin;
+    /**
+     * 登录成功后异步预加载用户权限，未开启时为 null
+     */
+    private UserAuthoritiesPrefetcher authoritiesPrefetcher;
 
     /**
      * 认证管理器
@@ -83,6 +109,38 @@ public class AuthenticationManager extends AbstractAuthenticationEvent {
         if (StrUtils.isBlank(userDetails.getPrincipal())) {
             throw new AccountException("principal 为空，请检查UserDetails实现是否正确?");
         }
+        //同一个 principal 的登录串行执行，不同 principal 分散在不同的锁上
+        final Lock lock = loginLocks.get(userDetails.getPrincipal());
+        lock.lock();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                final SimpleSession simpleSession = tryLogin(userDetails);
+                if (null != simpleSession) {
+                    //异步预加载用户权限，不等待结果
+                    if (null != authoritiesPrefetcher) {
+                        authoritiesPrefetcher.prefetch(simpleSession);
+                    }
+                    //发布事件
+                    onLogin(2, simpleSession);
+                    return simpleSession;
+                }
+                if (attempt >= MAX_LOGIN_ATTEMPTS) {
+                    throw new AccountException("并发登录冲突，登录失败.请稍后再试");
+                }
+                log.warn("Principal:{} 在其他节点同时登录，第 {} 次重试", userDetails.getPrincipal(), attempt);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 处理已有的登录状态后比较并创建 Session
+     *
+     * @param userDetails the user details
+     * @return the simple session ，principal -> SessionId 映射已经被其他登录修改时返回 null
+     */
+    private SimpleSession tryLogin(UserDetails userDetails) {
         //看看这个principal是不是登录了
         final SimpleSession session = sessionDAO.getByPrincipal(userDetails.getPrincipal());
         //登录了,并且没有过期
@@ -111,11 +169,10 @@ public class AuthenticationManager extends AbstractAuthenticationEvent {
 //                sessionDAO.delete(session);
 //            }
         }
+        //映射的当前值，可能指向已经失效的 Session ，以此作为比较的期望值
+        final String expectedSessionId = sessionDAO.getSessionIdByPrincipal(userDetails.getPrincipal());
         log.debug("开始进行登录，userDetails:{}", userDetails);
-        final SimpleSession simpleSession = sessionDAO.create(userDetails);
-        //发布事件
-        onLogin(2, simpleSession);
-        return simpleSession;
+        return sessionDAO.create(userDetails, expectedSessionId);
     }
 
     /**
@@ -208,6 +265,48 @@ public class AuthenticationManager extends AbstractAuthenticationEvent {
         return null;
     }
 
+    /**
+     * 获取当前 Session 的属性，只读取这一个属性，不读取、不续签 Session
+     *
+     * @param name 属性名称
+     * @return 属性值 ，不存在返回 null
+     */
+    public Object getSessionAttribute(String name) {
+        return sessionDAO.getAttribute(resolveCurrentSessionId(), name);
+    }
+
+    /**
+     * 设置当前 Session 的属性，只写入这一个属性
+     *
+     * @param name  属性名称
+     * @param value 属性值 ，为 null 时删除属性
+     */
+    public void setSessionAttribute(String name, Object value) {
+        sessionDAO.setAttribute(resolveCurrentSessionId(), name, value);
+    }
+
+    /**
+     * 删除当前 Session 的属性
+     *
+     * @param name 属性名称
+     */
+    public void removeSessionAttribute(String name) {
+        sessionDAO.removeAttribute(resolveCurrentSessionId(), name);
+    }
+
+    /**
+     * 解析当前请求的 SessionId ，没有则抛出未登录异常
+     *
+     * @return the string
+     */
+    private String resolveCurrentSessionId() {
+        final String sessionId = resolveSessionId(sessionDAO.getServletHolder().getRequest());
+        if (StrUtils.isBlank(sessionId)) {
+            throw new UnAuthticatedException();
+        }
+        return sessionId;
+    }
+
     /**
      * 解析请求中的SessionId
      * <p>
@@ -249,6 +348,55 @@ public class AuthenticationManager extends AbstractAuthenticationEvent {
         return sessionDAO.getActiveSessions();
     }
 
+    /**
+     * 分页获取在线用户的 Session 摘要，只包含在线用户列表展示需要的字段
+     *
+     * @param pageNo   the page no
+     * @param pageSize the page size
+     * @return the active session summaries
+     */
+    public Page<SessionSummary> getActiveSessionSummaries(int pageNo, int pageSize) {
+        return sessionDAO.getActiveSessionSummaries(pageNo, pageSize);
+    }
+
+    /**
+     * 按 principal 前缀分页查找在线用户
+     *
+     * @param prefix   the prefix
+     * @param pageNo   the page no
+     * @param pageSize the page size
+     * @return the page
+     */
+    public Page<SessionSummary> findSessionsByPrincipalPrefix(String prefix, int pageNo, int pageSize) {
+        return sessionDAO.findSessionsByPrincipalPrefix(prefix, pageNo, pageSize);
+    }
+
+    /**
+     * 按客户端地址(或地址前缀)分页查找在线用户
+     *
+     * @param host     the host
+     * @param prefix   是否按前缀匹配
+     * @param pageNo   the page no
+     * @param pageSize the page size
+     * @return the page
+     */
+    public Page<SessionSummary> findSessionsByHost(String host, boolean prefix, int pageNo, int pageSize) {
+        return sessionDAO.findSessionsByHost(host, prefix, pageNo, pageSize);
+    }
+
+    /**
+     * 按登录时间分页查找在线用户
+     *
+     * @param from     起始时间(包含)
+     * @param to       结束时间(包含)
+     * @param pageNo   the page no
+     * @param pageSize the page size
+     * @return the page
+     */
+    public Page<SessionSummary> findSessionsByStartTime(Date from, Date to, int pageNo, int pageSize) {
+        return sessionDAO.findSessionsByStartTime(from, to, pageNo, pageSize);
+    }
+
     /**
      * 分页获取在线用户(仅redis缓存支持)
      *
@@ -310,6 +458,133 @@ public class AuthenticationManager extends AbstractAuthenticationEvent {
         return true;
     }
 
+    /**
+     * 批量踢出 Session
+     * <p>
+     * 一次读取、一次删除(Redis 按批管道执行)，踢出事件按批发布一次，已经失效的 SessionId 跳过
+     *
+     * @param sessionIds the session ids
+     * @return 被踢出的 Session 数量
+     */
+    public int kickOutSessions(Collection<String> sessionIds) {
+        if (null == sessionIds || sessionIds.isEmpty()) {
+            return 0;
+        }
+        return kickOut(sessionDAO.readSessions(new LinkedHashSet<>(sessionIds)));
+    }
+
+    /**
+     * 批量踢出用户，同一个用户的所有会话都被踢出
+     *
+     * @param principals the principals
+     * @return 被踢出的 Session 数量
+     */
+    public int kickOutPrincipals(Collection<String> principals) {
+        if (null == principals || principals.isEmpty()) {
+            return 0;
+        }
+        return kickOutSessions(sessionDAO.getSessionIdsByPrincipals(principals));
+    }
+
+    /**
+     * 踢出具有指定角色(或权限标识)的用户
+     * <p>
+     * 按 角色 -> SessionId 反向索引查找，只包含已经缓存了用户权限的会话
+     *
+     * @param roles 角色标识或者权限标识
+     * @return 被踢出的 Session 数量
+     */
+    public int kickOutByRoles(Collection<String> roles) {
+        if (null == roles || roles.isEmpty()) {
+            return 0;
+        }
+        return kickOutSessions(sessionDAO.getSessionIdsByRoles(roles));
+    }
+
+    /**
+     * 踢出来自指定客户端地址(或网段)的用户
+     * <p>
+     * 先按 host 索引分页找出全部会话，再批量踢出
+     *
+     * @param host   客户端地址或者地址前缀
+     * @param prefix 是否按前缀匹配
+     * @return 被踢出的 Session 数量
+     */
+    public int kickOutByHost(String host, boolean prefix) {
+        if (StrUtils.isBlank(host)) {
+            throw new HeimdallException("host 不能为空");
+        }
+        final Set<String> sessionIds = new LinkedHashSet<>();
+        for (int pageNo = 1; ; pageNo++) {
+            final Page<SessionSummary> page = sessionDAO.findSessionsByHost(host, prefix, pageNo, KICK_OUT_PAGE_SIZE);
+            if (null == page || null == page.getRecords() || page.getRecords().isEmpty()) {
+                break;
+            }
+            page.getRecords().forEach(d -> sessionIds.add(d.getId()));
+            if ((long) pageNo * KICK_OUT_PAGE_SIZE >= page.getTotalCount()) {
+                break;
+            }
+        }
+        return kickOutSessions(sessionIds);
+    }
+
+    /**
+     * 踢出满足条件的用户，条件对全部活动 Session 逐个判断
+     *
+     * @param predicate 条件
+     * @return 被踢出的 Session 数量
+     */
+    public int kickOutIf(Predicate<SimpleSession> predicate) {
+        final Collection<SimpleSession> activeSessions = sessionDAO.getActiveSessions();
+        if (null == activeSessions || activeSessions.isEmpty()) {
+            return 0;
+        }
+        return kickOut(activeSessions.stream().filter(Objects::nonNull).filter(predicate).collect(Collectors.toList()));
+    }
+
+    /**
+     * 使全部 Session 失效(如发生安全事件后)，O(1) ，失效的 Session 由缓存过期自然清除
+     *
+     * @return 新的全局代数
+     */
+    public long invalidateAllSessions() {
+        final long generation = sessionDAO.invalidateAllSessions();
+        log.warn("全部 Session 已失效，全局代数:{}", generation);
+        return generation;
+    }
+
+    /**
+     * 使用户的全部 Session 失效(如修改密码后)，O(1)
+     *
+     * @param principal the principal
+     * @return 新的用户代数
+     */
+    public long invalidatePrincipalSessions(String principal) {
+        if (StrUtils.isBlank(principal)) {
+            throw new HeimdallException("principal 不能为空");
+        }
+        final long generation = sessionDAO.invalidatePrincipalSessions(principal);
+        log.info("用户的全部 Session 已失效，principal:{}，用户代数:{}", principal, generation);
+        return generation;
+    }
+
+    /**
+     * 批量删除 Session 并发布一次批量踢出事件
+     *
+     * @param sessions the sessions
+     * @return the int
+     */
+    private int kickOut(List<SimpleSession> sessions) {
+        if (null == sessions || sessions.isEmpty()) {
+            return 0;
+        }
+        final int count = sessionDAO.deleteSessions(sessions);
+        log.info("批量踢出 Session ，总数:{}", count);
+        //发布事件
+        onSessionsKickOut(sessions);
+        return count;
+    }
+
 
     /**
      * Gets session dao.
@@ -327,4 +602,22 @@ public class AuthenticationManager extends AbstractAuthenticationEvent {
     public void setConcurrentLogin(boolean concurrentLogin) {
         this.concurrentLogin = concurrentLogin;
     }
+
+    /**
+     * Gets authorities prefetcher.
+     *
+     * @return the authorities prefetcher
+     */
+    public UserAuthoritiesPrefetcher getAuthoritiesPrefetcher() {
+        return authoritiesPrefetcher;
+    }
+
+    /**
+     * 设置用户权限预加载器，为 null 时不预加载
+     *
+     * @param authoritiesPrefetcher the authorities prefetcher
+     */
+    public void setAuthoritiesPrefetcher(UserAuthoritiesPrefetcher authoritiesPrefetcher) {
+        this.authoritiesPrefetcher = authoritiesPrefetcher;
+    }
 }
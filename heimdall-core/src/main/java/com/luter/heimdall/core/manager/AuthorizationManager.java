@@ -18,12 +18,29 @@
 
 package com.luter.heimdall.core.manager;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.luter.heimdall.core.authorization.authority.AuthorityBitSet;
+import com.luter.heimdall.core.authorization.authority.AuthorityFingerprint;
 import com.luter.heimdall.core.authorization.authority.GrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.GrantedAuthorityList;
+import com.luter.heimdall.core.authorization.authority.GrantedPermissions;
 import com.luter.heimdall.core.authorization.authority.MethodAndUrlGrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.PermissionTrie;
+import com.luter.heimdall.core.authorization.authority.RoleHierarchy;
 import com.luter.heimdall.core.authorization.authority.SimpleGrantedAuthority;
 import com.luter.heimdall.core.authorization.dao.AuthorizationMetaDataCacheDao;
+import com.luter.heimdall.core.authorization.rule.AuthorizationDecisionCache;
+import com.luter.heimdall.core.authorization.rule.AuthorizationRule;
+import com.luter.heimdall.core.authorization.rule.AuthorizationRuleSet;
+import com.luter.heimdall.core.authorization.rule.BatchAuthorizationResult;
+import com.luter.heimdall.core.authorization.rule.CapabilityManifest;
+import com.luter.heimdall.core.authorization.rule.RouteQuery;
+import com.luter.heimdall.core.authorization.rule.RouteRuleBinding;
+import com.luter.heimdall.core.authorization.rule.RuleDecisionBitmap;
 import com.luter.heimdall.core.authorization.service.AuthorizationMetaDataService;
 import com.luter.heimdall.core.config.ConfigManager;
+import com.luter.heimdall.core.config.property.AuthorityProperty;
 import com.luter.heimdall.core.exception.UnAuthorizedException;
 import com.luter.heimdall.core.exception.UnAuthticatedException;
 import com.luter.heimdall.core.session.SimpleSession;
@@ -33,9 +50,13 @@ import com.luter.heimdall.core.utils.StrUtils;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * 授权管理器
@@ -50,6 +71,10 @@ public class AuthorizationManager {
      * 拥有所有method的权限
      */
     public static final String ALL_METHOD_NAME = "ALL";
+    /**
+     * 能力清单缓存最大条数，即不同权限集合的数量
+     */
+    private static final long MANIFEST_CACHE_SIZE = 1024;
 
     /**
      * 系统权限源数据提供服务
@@ -63,6 +88,31 @@ public class AuthorizationManager {
      * 认证管理器
      */
     private final AuthenticationManager authenticationManager;
+    /**
+     * url匹配器，内部缓存了分段后的规则路径
+     */
+    private final PathUtil pathMatcher = new PathUtil();
+    /**
+     * 当前编译好的系统权限拦截规则集，第一次使用时编译，
+     * 即使没有任何拦截规则，也要带上加载到的角色继承关系，不能直接使用 AuthorizationRuleSet.EMPTY
+     */
+    private volatile AuthorizationRuleSet ruleSet;
+    /**
+     * 当前编译好的角色继承关系，第一次使用或者规则集重新编译时加载
+     */
+    private volatile RoleHierarchy roleHierarchy;
+    /**
+     * 授权结果缓存，未开启时为 null
+     */
+    private final AuthorizationDecisionCache decisionCache;
+    /**
+     * 用户权限指纹 -> 能力清单
+     */
+    private final Cache<AuthorityFingerprint, CapabilityManifest> manifests = CacheBuilder.newBuilder().maximumSize(MANIFEST_CACHE_SIZE).build();
+    /**
+     * 能力清单缓存对应的规则集版本号
+     */
+    private volatile long manifestVersion;
 
     /**
      * 授权管理器
@@ -75,7 +125,26 @@ public class AuthorizationManager {
         this.authorizationMetaDataService = authorizationMetaDataService;
         this.authorizationDao = authorizationDao;
         this.authenticationManager = authenticationManager;
+        final AuthorityProperty authority = ConfigManager.getConfig().getAuthority();
+        this.decisionCache = authority.isDecisionCacheEnabled() ? new AuthorizationDecisionCache(authority.getDecisionCacheSize()) : null;
+        //登录成功后异步预加载用户权限，只有开启了用户权限缓存才有意义
+        if (authority.isPrefetchEnabled() && authority.isUserCachedEnabled()) {
+            authenticationManager.setAuthoritiesPrefetcher(new UserAuthoritiesPrefetcher(this, authority.getPrefetchThreads(), authority.getPrefetchQueueSize()));
+        }
+    }
 
+    /**
+     * 关闭授权管理器创建的后台资源(用户权限预加载线程池)，可以重复调用
+     * <p>
+     * Spring 中以 @Bean 声明时会被推断为销毁方法自动调用，其他环境在应用关闭时手动调用
+     */
+    public void shutdown() {
+        final UserAuthoritiesPrefetcher prefetcher = authenticationManager.getAuthoritiesPrefetcher();
+        if (null != prefetcher) {
+            authenticationManager.setAuthoritiesPrefetcher(null);
+            prefetcher.shutdown();
+            log.info("预加载用户权限= 线程池已关闭");
+        }
     }
 
     /**
@@ -124,70 +193,267 @@ public class AuthorizationManager {
         String url = request.getRequestURI(), method = request.getMethod();
         //url不空
         if (StrUtils.isNotBlank(url) && StrUtils.isNotBlank(method)) {
-            Map<String, Collection<String>> authorities = getSysAuthorities();
-            //系统权限拦截规则不为空，开始授权
-            if (null != authorities && !authorities.isEmpty()) {
-                log.debug("系统权限 : {}", authorities);
-                PathUtil antPathMatcherUtil = new PathUtil();
-                //遍历判断
-                for (Map.Entry<String, Collection<String>> entry : authorities.entrySet()) {
-                    //要拦截的url
-                    final String filterUrl = entry.getKey();
-                    //需要的perm授权标识，MethodAndUrlGrantedAuthority模式下无效
-                    final Collection<String> filterPerm = entry.getValue();
-                    //当前请求url是否需要被拦截
-                    final boolean match = antPathMatcherUtil.match(filterUrl, url);
-                    log.debug("授权= 请求资源:[{}:{}],拦截url:[{}], {}", method, url, filterUrl, match ? "规则匹配,开始授权" : "规则不匹配,忽略");
-                    //这个Url需要授权拦截
-                    if (match) {
-                        log.info("授权= 请求资源:[{}:{}],拦截url:[{}], {}", method, url, filterUrl, "规则匹配,开始授权");
-                        //拿到用户自身的权限
-                        final List<? extends GrantedAuthority> userAuthorities = getUserAuthorities();
-                        //遍历用户具有的系统权限
-                        for (GrantedAuthority userAuthority : userAuthorities) {
-                            //如果是对MethodAndUrlGrantedAuthority类型权限，则通过 method 和 url 进行授权
-                            if (userAuthority instanceof MethodAndUrlGrantedAuthority) {
-                                MethodAndUrlGrantedAuthority mga = (MethodAndUrlGrantedAuthority) userAuthority;
-                                //当前访问的url与当前用户权限里的的url匹配
-                                if (antPathMatcherUtil.match(mga.getUrl(), url)) {
-                                    //再看看方法是否匹配
-                                    //如果请求method也匹配或者是ALL，则放行。(不区分大小写)
-                                    if (method.equalsIgnoreCase(mga.getMethod()) || ALL_METHOD_NAME.equalsIgnoreCase(mga.getMethod())) {
-                                        log.info("Restful授权=  授权通过. 请求资源: [{}:{}],用户权限:[{}]", method, url, mga);
-                                        return true;
-                                    }
-                                }
-                                log.debug("Restful授权= 权限不匹配,请求资源: [{}:{}],用户权限:[{}]", method, url, mga);
-                            }
-                            //普通的精确url权限类型: SimpleGrantedAuthority，则对Perm标识符进行授权
-                            else if (userAuthority instanceof SimpleGrantedAuthority) {
-                                SimpleGrantedAuthority mga = (SimpleGrantedAuthority) userAuthority;
-                                //如果系统权限需要的Perm标识与用户具有的某个权限标识匹配，则授权通过(不区分大小写)
-                                if (filterPerm.contains(mga.getAuthority())) {
-                                    log.info("普通权限标识符授权= 权限匹配成功. 请求资源: [{}:{}],需要权限标识:[{}],匹配到权限:[{}]", method, url, filterPerm, mga);
-                                    return true;
-                                }
-                                log.debug("普通权限标识符授权=权限不匹配. 请求资源: [{}:{}],需要权限标识:[{}],匹配到权限:[{}]", method, url, filterPerm, mga);
-                            } else {
-                                //传进来的不是GrantedAuthority的实现类，没法处理，就当不需要权限，默认通过
-                                log.error("授权= 权限类型不支持,不是GrantedAuthority的实现类. 默认授权通过");
-                                return true;
-                            }
-                        }
-                        log.warn("授权=  请求资源:[{}:{}],需要权限:[{}], 用户所有权限:[{}] ,授权不通过", method, url, filterPerm, userAuthorities);
-                        if (isThrowEx) {
-                            throw new UnAuthorizedException("The current user is not permitted to access resource [" +
-                                    method + StrUtils.COLON + url + "] , Access denied.");
-                        } else {
-                            return false;
-                        }
+            //按顺序找到第一条匹配的系统权限拦截规则
+            final AuthorizationRule rule = getRuleSet().match(url, pathMatcher);
+            return isAuthorized(rule, method, url, isThrowEx);
+        }
+        //不需要的拦截的url，全部放行
+        return true;
+    }
+
+    /**
+     * 按已经确定的系统权限拦截规则授权
+     * <p>
+     * 规则可以来自 {@link AuthorizationRuleSet#match} ，也可以来自预先计算好的路由绑定 {@link RouteRuleBinding}
+     *
+     * @param rule      请求命中的规则，为 null 表示不需要拦截，直接放行
+     * @param method    请求 method
+     * @param url       请求 url
+     * @param isThrowEx 如果授权不通过，是否抛出异常
+     * @return the boolean
+     */
+    public boolean isAuthorized(AuthorizationRule rule, String method, String url, boolean isThrowEx) {
+        //不需要的拦截的url，全部放行
+        if (null == rule) {
+            return true;
+        }
+        log.info("授权= 请求资源:[{}:{}],拦截url:[{}], {}", method, url, rule.getPattern(), "规则匹配,开始授权");
+        //拿到用户自身的权限，只有命中规则的请求才需要
+        final List<? extends GrantedAuthority> userAuthorities = getUserAuthorities();
+        if (null == decisionCache ? decide(rule, method, url, userAuthorities) : decideCached(rule, method, url, userAuthorities)) {
+            return true;
+        }
+        return deny(method, url, rule.getPermissions(), userAuthorities, isThrowEx);
+    }
+
+    /**
+     * 批量授权，用于前端渲染菜单、按钮等一次性判断大量资源和权限标识的场景
+     * <p>
+     * 会话和用户权限只获取一次，每个请求资源的判断规则与 {@link #isAuthorized(HttpServletRequest, boolean)} 一致，
+     * 每个权限标识的判断规则与 AuthorizationFilterHandler#hasPermission 一致，
+     * <p>
+     * 授权不通过不抛出异常，只记录在结果中。只有在需要用户权限时才获取，未登录抛出 UnAuthticatedException 异常，
+     * 用户没有任何权限时，所有受保护的请求资源和权限标识都判定为未授权。
+     *
+     * @param routes      要判断的请求资源
+     * @param permissions 要判断的权限标识
+     * @return 按查询顺序排列的结果
+     */
+    public BatchAuthorizationResult isAuthorized(List<RouteQuery> routes, List<String> permissions) {
+        final int routeCount = null == routes ? 0 : routes.size();
+        final int permissionCount = null == permissions ? 0 : permissions.size();
+        final BitSet allowedRoutes = new BitSet(routeCount);
+        final BitSet grantedPermissions = new BitSet(permissionCount);
+        List<? extends GrantedAuthority> userAuthorities = null;
+        if (routeCount > 0) {
+            final AuthorizationRuleSet rules = getRuleSet();
+            for (int i = 0; i < routeCount; i++) {
+                final RouteQuery route = routes.get(i);
+                final String method = route.getMethod(), url = route.getUrl();
+                final AuthorizationRule rule = StrUtils.isNotBlank(url) && StrUtils.isNotBlank(method) ? rules.match(url, pathMatcher) : null;
+                if (null == rule) {
+                    allowedRoutes.set(i);
+                    continue;
+                }
+                if (null == userAuthorities) {
+                    userAuthorities = getBatchUserAuthorities();
+                }
+                if (decide(rule, method, url, userAuthorities)) {
+                    allowedRoutes.set(i);
+                }
+            }
+        }
+        if (permissionCount > 0) {
+            if (null == userAuthorities) {
+                userAuthorities = getBatchUserAuthorities();
+            }
+            final GrantedPermissions granted = GrantedPermissions.of(userAuthorities, getRoleHierarchy());
+            for (int i = 0; i < permissionCount; i++) {
+                if (granted.contains(permissions.get(i))) {
+                    grantedPermissions.set(i);
+                }
+            }
+        }
+        final BatchAuthorizationResult result = new BatchAuthorizationResult(routeCount, allowedRoutes, permissionCount, grantedPermissions);
+        log.debug("批量授权= 请求资源总数:{},权限标识总数:{},结果:{}", routeCount, permissionCount, result);
+        return result;
+    }
+
+    /**
+     * 获取当前登录用户的能力清单
+     * <p>
+     * 每个 (用户权限指纹, 规则集版本) 只计算一次，拥有相同权限的用户共享，规则集版本变化时全部失效
+     *
+     * @return the capability manifest
+     */
+    public CapabilityManifest getCapabilityManifest() {
+        final List<? extends GrantedAuthority> userAuthorities = getUserAuthorities();
+        final AuthorizationRuleSet rules = getRuleSet();
+        if (rules.getVersion() != manifestVersion) {
+            synchronized (manifests) {
+                if (rules.getVersion() != manifestVersion) {
+                    manifests.invalidateAll();
+                    manifestVersion = rules.getVersion();
+                }
+            }
+        }
+        final AuthorityFingerprint fingerprint = AuthorityFingerprint.of(userAuthorities);
+        CapabilityManifest manifest = manifests.getIfPresent(fingerprint);
+        if (null == manifest) {
+            manifest = CapabilityManifest.compute(rules, userAuthorities);
+            if (rules.getVersion() == manifestVersion) {
+                manifests.put(fingerprint, manifest);
+            }
+            log.debug("能力清单= 计算完成，规则集版本:{}，ETag:{}", rules.getVersion(), manifest.getEtag());
+        }
+        return manifest;
+    }
+
+    /**
+     * 判断用户权限是否满足规则
+     *
+     * @param rule            请求命中的规则
+     * @param method          请求 method
+     * @param url             请求 url
+     * @param userAuthorities 用户权限
+     * @return the boolean
+     */
+    private boolean decide(AuthorizationRule rule, String method, String url, List<? extends GrantedAuthority> userAuthorities) {
+        //需要的perm授权标识，MethodAndUrlGrantedAuthority模式下无效
+        final Collection<String> filterPerm = rule.getPermissions();
+        //缓存的用户权限带有对规则集的授权结果位图，直接测试规则对应的位
+        final AuthorizationRuleSet current = ruleSet;
+        if (null != current && userAuthorities instanceof GrantedAuthorityList && rule.getVersion() == current.getVersion()) {
+            final RuleDecisionBitmap decisions = ((GrantedAuthorityList) userAuthorities).getDecisions(current);
+            if (decisions.isAllowed(rule.getId())) {
+                log.info("普通权限标识符授权= 权限匹配成功. 请求资源: [{}:{}],需要权限标识:[{}]", method, url, filterPerm);
+                return true;
+            }
+            //没有 MethodAndUrlGrantedAuthority 类型的权限，不可能再通过
+            if (!decisions.isRestful()) {
+                return false;
+            }
+        }
+        final RoleHierarchy hierarchy = null == current ? getRoleHierarchy() : current.getRoleHierarchy();
+        boolean wildcard = false;
+        //遍历用户具有的系统权限
+        for (GrantedAuthority userAuthority : userAuthorities) {
+            //如果是对MethodAndUrlGrantedAuthority类型权限，则通过 method 和 url 进行授权
+            if (userAuthority instanceof MethodAndUrlGrantedAuthority) {
+                MethodAndUrlGrantedAuthority mga = (MethodAndUrlGrantedAuthority) userAuthority;
+                //当前访问的url与当前用户权限里的的url匹配
+                if (pathMatcher.match(mga.getUrl(), url)) {
+                    //再看看方法是否匹配
+                    //如果请求method也匹配或者是ALL，则放行。(不区分大小写)
+                    if (method.equalsIgnoreCase(mga.getMethod()) || ALL_METHOD_NAME.equalsIgnoreCase(mga.getMethod())) {
+                        log.info("Restful授权=  授权通过. 请求资源: [{}:{}],用户权限:[{}]", method, url, mga);
+                        return true;
                     }
                 }
+                log.debug("Restful授权= 权限不匹配,请求资源: [{}:{}],用户权限:[{}]", method, url, mga);
+            }
+            //普通的精确url权限类型: SimpleGrantedAuthority，则对Perm标识符进行授权
+            else if (userAuthority instanceof SimpleGrantedAuthority) {
+                SimpleGrantedAuthority mga = (SimpleGrantedAuthority) userAuthority;
+                //如果系统权限需要的Perm标识与用户具有的某个权限标识匹配，或者被继承的角色蕴含，则授权通过
+                if (filterPerm.contains(mga.getAuthority()) || hierarchy.impliesAny(mga.getAuthority(), filterPerm)) {
+                    log.info("普通权限标识符授权= 权限匹配成功. 请求资源: [{}:{}],需要权限标识:[{}],匹配到权限:[{}]", method, url, filterPerm, mga);
+                    return true;
+                }
+                wildcard = wildcard || PermissionTrie.isWildcard(mga.getAuthority());
+                log.debug("普通权限标识符授权=权限不匹配. 请求资源: [{}:{}],需要权限标识:[{}],匹配到权限:[{}]", method, url, filterPerm, mga);
+            } else {
+                //传进来的不是GrantedAuthority的实现类，没法处理，就当不需要权限，默认通过
+                log.error("授权= 权限类型不支持,不是GrantedAuthority的实现类. 默认授权通过");
+                return true;
             }
+        }
+        //用户直接具有通配权限时，按编译好的前缀树校验一次，继承得到的通配权限已经由角色继承关系校验过
+        if (wildcard) {
+            final GrantedPermissions granted = GrantedPermissions.of(userAuthorities, hierarchy);
+            if (granted.impliesAny(filterPerm)) {
+                log.info("普通权限标识符授权= 通配权限匹配成功. 请求资源: [{}:{}],需要权限标识:[{}]", method, url, filterPerm);
+                return true;
+            }
+        }
+        return false;
+    }
 
+    /**
+     * 通过授权结果缓存判断用户权限是否满足规则
+     * <p>
+     * 用户只有普通权限标识时，结果只与规则有关，按 (用户权限指纹, 规则) 缓存，不同的路径变量共享同一条缓存;
+     * 用户具有 restful 权限时，结果还与请求的 method 和 url 有关，按 (用户权限指纹, 规则, method, url) 缓存
+     *
+     * @param rule            请求命中的规则
+     * @param method          请求 method
+     * @param url             请求 url
+     * @param userAuthorities 用户权限
+     * @return the boolean
+     */
+    private boolean decideCached(AuthorizationRule rule, String method, String url, List<? extends GrantedAuthority> userAuthorities) {
+        final AuthorizationRuleSet current = ruleSet;
+        if (null == current || rule.getVersion() != current.getVersion()) {
+            return decide(rule, method, url, userAuthorities);
         }
-        //不需要的拦截的url，全部放行
-        return true;
+        final AuthorityFingerprint fingerprint = AuthorityFingerprint.of(userAuthorities);
+        final boolean restful = isRestful(userAuthorities);
+        final String keyMethod = restful ? method : null, keyUrl = restful ? url : null;
+        Boolean allowed = decisionCache.get(current, fingerprint, rule, keyMethod, keyUrl);
+        if (null == allowed) {
+            allowed = decide(rule, method, url, userAuthorities);
+            decisionCache.put(current, fingerprint, rule, keyMethod, keyUrl, allowed);
+        } else {
+            log.debug("授权= 请求资源:[{}:{}],拦截url:[{}],命中授权结果缓存,{}", method, url, rule.getPattern(), allowed ? "授权通过" : "授权不通过");
+        }
+        return allowed;
+    }
+
+    /**
+     * 授权结果是否与请求的 method 和 url 有关: 用户具有 MethodAndUrlGrantedAuthority 或者不支持的权限类型
+     *
+     * @param userAuthorities 用户权限
+     * @return the boolean
+     */
+    private static boolean isRestful(List<? extends GrantedAuthority> userAuthorities) {
+        for (GrantedAuthority authority : userAuthorities) {
+            if (!(authority instanceof SimpleGrantedAuthority)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 授权不通过
+     *
+     * @param method          请求 method
+     * @param url             请求 url
+     * @param filterPerm      需要的权限标识
+     * @param userAuthorities 用户所有权限
+     * @param isThrowEx       是否抛出异常
+     * @return false
+     */
+    private boolean deny(String method, String url, Collection<String> filterPerm,
+                         List<? extends GrantedAuthority> userAuthorities, boolean isThrowEx) {
+        log.warn("授权=  请求资源:[{}:{}],需要权限:[{}], 用户所有权限:[{}] ,授权不通过", method, url, filterPerm, userAuthorities);
+        return reject(method, url, isThrowEx);
+    }
+
+    /**
+     * 授权不通过，抛出异常或者返回 false
+     *
+     * @param method    请求 method
+     * @param url       请求 url
+     * @param isThrowEx 是否抛出异常
+     * @return false
+     */
+    private boolean reject(String method, String url, boolean isThrowEx) {
+        if (isThrowEx) {
+            throw new UnAuthorizedException("The current user is not permitted to access resource [" +
+                    method + StrUtils.COLON + url + "] , Access denied.");
+        }
+        return false;
     }
 
     /**
@@ -204,6 +470,49 @@ public class AuthorizationManager {
         if (null == currentUser) {
             throw new UnAuthticatedException();
         }
+        return loadUserAuthorities(currentUser, true);
+    }
+
+    /**
+     * 批量授权使用的用户权限
+     * <p>
+     * 没登录，UnAuthticatedException ；权限为空时不抛出异常，返回空集合，所有受保护的路由和权限标识都按未授权处理
+     *
+     * @return the user authorities
+     */
+    private List<? extends GrantedAuthority> getBatchUserAuthorities() {
+        final SimpleSession currentUser = authenticationManager.getCurrentUser();
+        if (null == currentUser) {
+            throw new UnAuthticatedException();
+        }
+        final List<? extends GrantedAuthority> userAuthorities = loadUserAuthorities(currentUser, false);
+        return null == userAuthorities ? Collections.<GrantedAuthority>emptyList() : userAuthorities;
+    }
+
+    /**
+     * 预加载指定用户的权限到缓存，不依赖当前请求，可以在其他线程执行
+     * <p>
+     * 已经缓存的不重复加载
+     *
+     * @param session 已经创建的 Session
+     * @see UserAuthoritiesPrefetcher
+     */
+    public void prefetchUserAuthorities(SimpleSession session) {
+        if (!ConfigManager.getConfig().getAuthority().isUserCachedEnabled()) {
+            return;
+        }
+        final List<? extends GrantedAuthority> userAuthorities = loadUserAuthorities(session, false);
+        log.debug("预加载用户权限= SessionId:[{}]，权限总数:{}", session.getId(), null == userAuthorities ? 0 : userAuthorities.size());
+    }
+
+    /**
+     * 获取指定用户的权限，开启了用户权限缓存时优先从缓存获取
+     *
+     * @param currentUser 当前登录用户
+     * @param isThrowEx   开启了用户权限缓存并且数据库也没有用户权限时，是否抛出 UnAuthorizedException 异常
+     * @return 用户权限 ，isThrowEx 为 false 时可能为空
+     */
+    private List<? extends GrantedAuthority> loadUserAuthorities(SimpleSession currentUser, boolean isThrowEx) {
         if (ConfigManager.getConfig().getAuthority().isUserCachedEnabled()) {
             //从缓存获取用户权限
             log.debug("用户权限缓存开启,从缓存获取用户权限");
@@ -216,7 +525,9 @@ public class AuthorizationManager {
                 //数据库也没有，抛出无权限异常
                 if (null == userAuthorities || userAuthorities.isEmpty()) {
                     log.warn("用户权限缓存开启,从数据库未获取到任何用户权限，访问拒绝");
-                    throw new UnAuthorizedException();
+                    if (isThrowEx) {
+                        throw new UnAuthorizedException();
+                    }
                 } else {
                     //把数据库获取到的权限进行缓存
                     sessionDAO.setUserAuthorities(currentUser.getId(), userAuthorities);
@@ -228,7 +539,60 @@ public class AuthorizationManager {
             log.warn("用户权限缓存未启用，直接从数据库获取");
             return authorizationMetaDataService.loadUserAuthorities(currentUser);
         }
+    }
+
+    /**
+     * 角色(或权限标识)的权限发生变化后，清除受影响用户的缓存权限
+     * <p>
+     * 按角色继承关系找出继承了该角色的角色，一起通过反向索引清除，未受影响的用户缓存不变
+     *
+     * @param role 角色标识或者权限标识
+     * @return 被清除的会话数量 ，SessionDAO 不支持反向索引时返回 -1
+     * @see SessionDAO#clearUserAuthoritiesByRoles(Collection)
+     */
+    public int clearUserAuthoritiesByRole(String role) {
+        final Set<String> roles = new LinkedHashSet<>();
+        roles.add(role);
+        roles.addAll(getRoleHierarchy().getInheritingRoles(role));
+        final int count = authenticationManager.getSessionDAO().clearUserAuthoritiesByRoles(roles);
+        log.info("按角色清除用户权限缓存= 角色:{},受影响会话总数:{}", roles, count);
+        return count;
+    }
+
+    /**
+     * 用户的权限发生变化后，清除该用户所有会话的缓存权限
+     *
+     * @param principal the principal
+     * @return 被清除的会话数量 ，SessionDAO 不支持反向索引时返回 -1
+     */
+    public int clearUserAuthoritiesByPrincipal(String principal) {
+        final int count = authenticationManager.getSessionDAO().clearUserAuthoritiesByPrincipal(principal);
+        log.info("按用户清除用户权限缓存= principal:{},受影响会话总数:{}", principal, count);
+        return count;
+    }
+
+    /**
+     * 获取用户权限编译后的权限位图
+     * <p>
+     * 内存缓存中的用户权限会缓存其位图，其他情况下每次按用户权限编译
+     *
+     * @return the user authority bit set
+     * @see #getUserAuthorities()
+     */
+    public AuthorityBitSet getUserAuthorityBitSet() {
+        return AuthorityBitSet.of(getUserAuthorities());
+    }
 
+    /**
+     * 获取用户具备的权限标识，精确匹配按位图运算，同时支持通配权限(如 pet:*、pet:*:read)和角色继承
+     * <p>
+     * 内存缓存中的用户权限会缓存编译结果，其他情况下每次按用户权限编译
+     *
+     * @return the user permissions
+     * @see GrantedPermissions
+     */
+    public GrantedPermissions getUserPermissions() {
+        return GrantedPermissions.of(getUserAuthorities(), getRoleHierarchy());
     }
 
     /**
@@ -261,6 +625,87 @@ public class AuthorizationManager {
 
     }
 
+    /**
+     * 获取编译后的系统权限拦截规则集
+     * <p>
+     * 系统权限拦截配置发生变化(缓存被重置、从数据库重新加载到不同的数据)时重新编译，版本号随之变化
+     *
+     * @return the rule set
+     */
+    public AuthorizationRuleSet getRuleSet() {
+        final Map<String, Collection<String>> authorities = getSysAuthorities();
+        AuthorizationRuleSet current = ruleSet;
+        if (null == current || !current.isCompiledFrom(authorities)) {
+            synchronized (this) {
+                current = ruleSet;
+                if (null == current || !current.isCompiledFrom(authorities)) {
+                    //规则重新加载时，角色继承关系一起重新加载
+                    final RoleHierarchy hierarchy = loadRoleHierarchy();
+                    roleHierarchy = hierarchy;
+                    current = AuthorizationRuleSet.compile(authorities, hierarchy);
+                    ruleSet = current;
+                    log.debug("系统权限 : {}", authorities);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 获取编译好的角色继承关系
+     *
+     * @return the role hierarchy
+     */
+    public RoleHierarchy getRoleHierarchy() {
+        RoleHierarchy current = roleHierarchy;
+        if (null == current) {
+            synchronized (this) {
+                current = roleHierarchy;
+                if (null == current) {
+                    current = loadRoleHierarchy();
+                    roleHierarchy = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 重新加载角色继承关系
+     * <p>
+     * 规则集随之重新编译，版本号变化，用户权限的编译结果、授权结果缓存、能力清单等随之失效
+     *
+     * @return 新的角色继承关系
+     */
+    public RoleHierarchy refreshRoleHierarchy() {
+        final Map<String, Collection<String>> authorities = getSysAuthorities();
+        synchronized (this) {
+            final RoleHierarchy hierarchy = loadRoleHierarchy();
+            roleHierarchy = hierarchy;
+            ruleSet = AuthorizationRuleSet.compile(authorities, hierarchy);
+            log.info("角色继承= 重新加载完成:{}", hierarchy);
+            return hierarchy;
+        }
+    }
+
+    /**
+     * 通过数据提供服务加载并编译角色继承关系
+     *
+     * @return the role hierarchy
+     */
+    private RoleHierarchy loadRoleHierarchy() {
+        return RoleHierarchy.compile(authorizationMetaDataService.loadRoleHierarchy());
+    }
+
+    /**
+     * 获取url匹配器
+     *
+     * @return the path matcher
+     */
+    public PathUtil getPathMatcher() {
+        return pathMatcher;
+    }
+
     /**
      * Gets authorization service.
      *
@@ -0,0 +1,98 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.manager;
+
+import com.luter.heimdall.core.session.SimpleSession;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 登录成功后异步预加载用户权限
+ * <p>
+ * 使用有界线程池，登录请求只提交任务，不等待结果，所以登录延迟不会增加，
+ * <p>
+ * 队列满了直接放弃，用户权限仍然在第一次授权时按原来的方式加载。
+ *
+ * @author Luter
+ * @see AuthorizationManager#prefetchUserAuthorities(SimpleSession)
+ */
+@Slf4j
+public class UserAuthoritiesPrefetcher {
+    /**
+     * 授权管理器
+     */
+    private final AuthorizationManager authorizationManager;
+    /**
+     * 预加载线程池
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 构造预加载器
+     *
+     * @param authorizationManager 授权管理器
+     * @param threads              线程数
+     * @param queueSize            任务队列长度
+     */
+    public UserAuthoritiesPrefetcher(AuthorizationManager authorizationManager, int threads, int queueSize) {
+        this.authorizationManager = authorizationManager;
+        final int poolSize = Math.max(threads, 1);
+        final AtomicInteger sequence = new AtomicInteger();
+        final ThreadFactory threadFactory = r -> {
+            final Thread thread = new Thread(r, "heimdall-authority-prefetch-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueSize, 1)), threadFactory,
+                (r, e) -> log.debug("预加载用户权限= 队列已满，放弃预加载，由第一次授权时加载"));
+        this.executor.allowCoreThreadTimeOut(true);
+        log.info("预加载用户权限= 初始化完成，线程数:{}，队列长度:{}", poolSize, queueSize);
+    }
+
+    /**
+     * 提交预加载任务，立即返回
+     *
+     * @param session 刚刚创建的 Session
+     */
+    public void prefetch(SimpleSession session) {
+        if (null == session || null == session.getId()) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                authorizationManager.prefetchUserAuthorities(session);
+            } catch (Exception e) {
+                log.warn("预加载用户权限= 失败，SessionId:[{}]，由第一次授权时加载:{}", session.getId(), e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 关闭线程池，未执行的任务被放弃
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
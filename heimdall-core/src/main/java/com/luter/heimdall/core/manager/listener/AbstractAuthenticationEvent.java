@@ -106,6 +106,24 @@ public abstract class AbstractAuthenticationEvent {
         }
     }
 
+    /**
+     * 批量踢出 Session 成功，每个监听器调用一次
+     *
+     * @param sessions 被踢出的 Session
+     */
+    public void onSessionsKickOut(Collection<SimpleSession> sessions) {
+        if (null == sessions || sessions.isEmpty()) {
+            return;
+        }
+        for (AuthenticationEventListener listener : this.listeners) {
+            try {
+                listener.onSessionsKickOut(sessions);
+            } catch (Exception e) {
+                log.error(" Authentication 事件监听 onSessionsKickOut 出现错误:{}", e.getMessage(), e);
+            }
+        }
+    }
+
     /**
      * Gets listeners.
      *
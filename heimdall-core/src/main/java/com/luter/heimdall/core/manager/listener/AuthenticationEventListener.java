@@ -20,6 +20,8 @@ package com.luter.heimdall.core.manager.listener;
 
 import com.luter.heimdall.core.session.SimpleSession;
 
+import java.util.Collection;
+
 /**
  * 认证事件监听
  * <p>
@@ -63,4 +65,17 @@ public interface AuthenticationEventListener {
      */
     default void onPrincipalKickOut(String principal, SimpleSession session) {
     }
+
+    /**
+     * 批量踢出 Session 成功
+     * <p>
+     * 默认逐个调用 {@link #onSessionKickOut(SimpleSession)} ，需要批量处理的监听器可以覆盖此方法
+     *
+     * @param sessions 被踢出的 Session
+     */
+    default void onSessionsKickOut(Collection<SimpleSession> sessions) {
+        for (SimpleSession session : sessions) {
+            onSessionKickOut(session);
+        }
+    }
 }
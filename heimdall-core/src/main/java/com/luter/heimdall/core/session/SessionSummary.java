@@ -0,0 +1,93 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Session 摘要
+ * <p>
+ * 只包含在线用户列表需要展示的字段，不包含 UserDetails ，
+ * <p>
+ * 单独保存一份，分页获取在线用户列表时不需要加载完整的 Session
+ *
+ * @author Luter
+ */
+@Data
+@Accessors(chain = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public class SessionSummary implements Serializable {
+    /**
+     * SessionId
+     */
+    private String id;
+    /**
+     * 用户 principal
+     */
+    private String principal;
+    /**
+     * 访问客户端主机IP地址
+     */
+    private String host;
+    /**
+     * Session创建时间
+     */
+    private Date startTimestamp;
+    /**
+     * 最近一次的访问时间
+     */
+    private Date lastAccessTime;
+    /**
+     * 预计过期时间，没有过期时间为 null
+     */
+    private Date expireTime;
+
+    /**
+     * 从 Session 生成摘要，过期时间按最近一次访问时间 + Session 时长计算
+     *
+     * @param session the session
+     * @return the session summary
+     */
+    public static SessionSummary of(SimpleSession session) {
+        final Date lastAccessTime = session.getLastAccessTime();
+        final Date expireTime = null == lastAccessTime || session.getTimeout() < 0 ? null
+                : new Date(lastAccessTime.getTime() + session.getTimeout() * 1000);
+        return of(session, expireTime);
+    }
+
+    /**
+     * 从 Session 生成摘要
+     *
+     * @param session    the session
+     * @param expireTime 过期时间
+     * @return the session summary
+     */
+    public static SessionSummary of(SimpleSession session, Date expireTime) {
+        return new SessionSummary(session.getId(),
+                null == session.getDetails() ? null : session.getDetails().getPrincipal(),
+                session.getHost(), session.getStartTimestamp(), session.getLastAccessTime(), expireTime);
+    }
+}
@@ -22,7 +22,6 @@ import com.luter.heimdall.core.config.ConfigManager;
 import com.luter.heimdall.core.details.UserDetails;
 import com.luter.heimdall.core.exception.InvalidSessionException;
 import com.luter.heimdall.core.exception.SessionException;
-import com.luter.heimdall.core.session.generator.UUIDSessionIdGeneratorImpl;
 import lombok.extern.slf4j.Slf4j;
 
 import java.text.SimpleDateFormat;
@@ -84,14 +83,21 @@ public class SimpleSession {
      * Session携带的用户相关数据
      */
     private UserDetails details;
+    /**
+     * 创建时的全局代数，全局代数增加后，之前创建的 Session 全部失效
+     */
+    private long globalGeneration;
+    /**
+     * 创建时用户(principal)的代数，用户代数增加后，该用户之前创建的 Session 全部失效
+     */
+    private long principalGeneration;
 
     /**
      * 构造默认Session
      * <p>
-     * SessionID采用去掉横线的UUID
+     * 不生成 SessionID ，由 SessionDAO 创建时通过 SessionIdGenerator 设置，反序列化时也不再白白生成一次
      */
     public SimpleSession() {
-        this.id = new UUIDSessionIdGeneratorImpl().generate();
         this.timeout = ConfigManager.getConfig().getSession().getGlobalSessionTimeout();
         this.startTimestamp = new Date();
         this.lastAccessTime = this.startTimestamp;
@@ -302,6 +308,53 @@ public class SimpleSession {
         return expired;
     }
 
+    /**
+     * Gets global generation.
+     *
+     * @return the global generation
+     */
+    public long getGlobalGeneration() {
+        return globalGeneration;
+    }
+
+    /**
+     * Sets global generation.
+     *
+     * @param globalGeneration the global generation
+     */
+    public void setGlobalGeneration(long globalGeneration) {
+        this.globalGeneration = globalGeneration;
+    }
+
+    /**
+     * Gets principal generation.
+     *
+     * @return the principal generation
+     */
+    public long getPrincipalGeneration() {
+        return principalGeneration;
+    }
+
+    /**
+     * Sets principal generation.
+     *
+     * @param principalGeneration the principal generation
+     */
+    public void setPrincipalGeneration(long principalGeneration) {
+        this.principalGeneration = principalGeneration;
+    }
+
+    /**
+     * 是否已经被按代失效: 当前的全局代数或者用户代数大于 Session 创建时记录的代数
+     *
+     * @param globalGeneration    当前全局代数
+     * @param principalGeneration 当前用户代数
+     * @return the boolean
+     */
+    public boolean isSuperseded(long globalGeneration, long principalGeneration) {
+        return globalGeneration > this.globalGeneration || principalGeneration > this.principalGeneration;
+    }
+
 
     @Override
     public boolean equals(Object o) {
@@ -312,7 +365,7 @@ public class SimpleSession {
             return false;
         }
         SimpleSession that = (SimpleSession) o;
-        return id.equals(that.id);
+        return Objects.equals(id, that.id);
     }
 
     @Override
@@ -329,6 +382,8 @@ public class SimpleSession {
                 ", timeout=" + timeout +
                 ", expired=" + expired +
                 ", host='" + host + '\'' +
+                ", globalGeneration=" + globalGeneration +
+                ", principalGeneration=" + principalGeneration +
                 ", userDetail=" + details +
                 '}';
     }
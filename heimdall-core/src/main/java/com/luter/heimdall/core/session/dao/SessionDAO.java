@@ -22,12 +22,20 @@ import com.luter.heimdall.core.authorization.authority.GrantedAuthority;
 import com.luter.heimdall.core.cookie.CookieService;
 import com.luter.heimdall.core.details.UserDetails;
 import com.luter.heimdall.core.exception.InvalidSessionException;
+import com.luter.heimdall.core.exception.SessionException;
 import com.luter.heimdall.core.servlet.ServletHolder;
 import com.luter.heimdall.core.session.Page;
+import com.luter.heimdall.core.session.SessionSummary;
 import com.luter.heimdall.core.session.SimpleSession;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * SessionDao 接口定义
@@ -52,6 +60,14 @@ public interface SessionDAO {
      * 默认活动 用户 缓存 Key (for redis)
      */
     String DEFAULT_ACTIVE_USER_CACHE_KEY = "heimdall:active-users:";
+    /**
+     * 默认 Session 属性缓存前缀 (for redis)
+     */
+    String DEFAULT_SESSION_ATTRIBUTE_PREFIX = "heimdall:session-attributes:";
+    /**
+     * 默认 Session 摘要缓存 Key (for redis)
+     */
+    String DEFAULT_SESSION_SUMMARY_CACHE_KEY = "heimdall:session-summaries:";
 
     /**
      * 创建session，也可以理解为登录认证
@@ -63,6 +79,34 @@ public interface SessionDAO {
      */
     SimpleSession create(UserDetails userDetails);
 
+    /**
+     * 比较并创建 Session: 只有 principal -> SessionId 映射的当前值仍然是 expectedSessionId 时才创建，
+     * 创建的同时把映射设置为新的 SessionId
+     * <p>
+     * 多个节点同时为同一个 principal 登录时，只有一个能成功设置映射，其余返回 null ，什么也不写入
+     * <p>
+     * 默认直接创建，不做比较，单个节点内由 AuthenticationManager 按 principal 加锁保证
+     *
+     * @param userDetails       the user details
+     * @param expectedSessionId 期望的映射当前值 ，null 表示当前没有映射
+     * @return the simple session ，映射已经被其他登录修改时返回 null
+     */
+    default SimpleSession create(UserDetails userDetails, String expectedSessionId) {
+        return create(userDetails);
+    }
+
+    /**
+     * 获取 principal -> SessionId 映射的当前值，映射指向的 Session 可能已经失效
+     * <p>
+     * 用作 {@link #create(UserDetails, String)} 的期望值
+     *
+     * @param principal the principal
+     * @return the session id ，没有映射返回 null
+     */
+    default String getSessionIdByPrincipal(String principal) {
+        final SimpleSession session = getByPrincipal(principal);
+        return null == session ? null : session.getId();
+    }
 
     /**
      * 通过principal获取Session
@@ -110,6 +154,66 @@ public interface SessionDAO {
      */
     Collection<SimpleSession> getActiveSessions();
 
+    /////批量操作
+
+    /**
+     * 批量读取 Session ，不存在或者已经按代失效的跳过，不发布读取事件
+     * <p>
+     * 默认逐个读取，Redis 实现一次管道读取一批
+     *
+     * @param sessionIds the session ids
+     * @return the list
+     */
+    default List<SimpleSession> readSessions(Collection<String> sessionIds) {
+        return sessionIds.stream().map(this::readSession).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * 批量删除 Session ，同时清理在线用户索引和用户权限缓存，用于批量踢出
+     * <p>
+     * 不删除当前请求的 Cookie 。删除完成后按批发布一次 {@code afterDeleted(Collection)} 事件
+     * <p>
+     * 默认逐个调用 {@link #delete(SimpleSession)}
+     *
+     * @param sessions the sessions
+     * @return 删除的 Session 数量
+     */
+    default int deleteSessions(Collection<SimpleSession> sessions) {
+        for (SimpleSession session : sessions) {
+            delete(session);
+        }
+        return sessions.size();
+    }
+
+    /**
+     * 获取一批用户的全部 SessionId
+     * <p>
+     * 默认遍历全部活动 Session ，维护了 principal -> SessionId 反向索引的实现直接读取索引
+     *
+     * @param principals the principals
+     * @return the session ids
+     */
+    default Set<String> getSessionIdsByPrincipals(Collection<String> principals) {
+        final Collection<SimpleSession> sessions = getActiveSessions();
+        if (null == sessions) {
+            return Collections.emptySet();
+        }
+        return sessions.stream().filter(d -> null != d && null != d.getDetails() && principals.contains(d.getDetails().getPrincipal()))
+                .map(SimpleSession::getId).collect(Collectors.toSet());
+    }
+
+    /**
+     * 获取具有指定角色(或权限标识)的会话的 SessionId
+     * <p>
+     * 依赖缓存用户权限时维护的 角色 -> SessionId 反向索引，只包含已经缓存了用户权限的会话
+     *
+     * @param roles 角色标识或者权限标识，只匹配用户直接具有的标识
+     * @return the session ids
+     */
+    default Set<String> getSessionIdsByRoles(Collection<String> roles) {
+        throw new SessionException("当前 SessionDAO 不支持按角色查找会话");
+    }
+
     /**
      * 分页获取所有活动Session,也即是在线用户
      * <p>
@@ -130,6 +234,104 @@ public interface SessionDAO {
         return null;
     }
 
+    /**
+     * 分页获取在线用户的 Session 摘要，不加载 UserDetails
+     * <p>
+     * 默认由 {@link #getActiveSessions(int, int)} 转换，单独维护了摘要的实现只读取摘要
+     *
+     * @param pageNo   页码
+     * @param pageSize 每页数量
+     * @return the active session summaries
+     */
+    default Page<SessionSummary> getActiveSessionSummaries(int pageNo, int pageSize) {
+        final Page<SimpleSession> sessions = getActiveSessions(pageNo, pageSize);
+        if (null == sessions) {
+            return null;
+        }
+        final List<SessionSummary> records = null == sessions.getRecords() ? null
+                : sessions.getRecords().stream().filter(Objects::nonNull).map(SessionSummary::of).collect(Collectors.toList());
+        return new Page<>(pageNo, pageSize, sessions.getTotalCount(), records);
+    }
+
+    /////按代失效
+
+    /**
+     * 使全部 Session 失效
+     * <p>
+     * 只增加全局代数，O(1)。之前创建的 Session 读取时视为不存在，由缓存过期或者清理任务自然清除
+     * <p>
+     * 需要开启 session.generationEnabled
+     *
+     * @return 新的全局代数
+     */
+    default long invalidateAllSessions() {
+        throw new SessionException("当前 SessionDAO 不支持按代失效 Session");
+    }
+
+    /**
+     * 使用户的全部 Session 失效，如: 修改密码后
+     * <p>
+     * 只增加用户代数，O(1)。需要开启 session.generationEnabled
+     *
+     * @param principal the principal
+     * @return 新的用户代数
+     */
+    default long invalidatePrincipalSessions(String principal) {
+        throw new SessionException("当前 SessionDAO 不支持按代失效 Session");
+    }
+
+    /////在线用户查询
+
+    /**
+     * 按 principal 前缀分页查找在线用户
+     * <p>
+     * 创建、删除 Session 时维护按字典序排列的 principal 索引，按前缀定位后顺序读取，不需要遍历全部 Session
+     * <p>
+     * 定位起点为 O(log N) ，前面的页仍然要逐项跳过，读取一页为 O(log N + offset + pageSize) ，页码越大越慢。
+     * 总数: redis 缓存使用 ZLEXCOUNT/ZCOUNT ，O(log N) ；内存缓存需要遍历整个查询范围，O(范围内的会话数) ，
+     * 可以设置 session.searchCountEnabled = false 不统计，此时总数只能用来判断是否还有下一页
+     *
+     * @param prefix   principal 前缀 ，为空时返回全部，按 principal 排序
+     * @param pageNo   页码
+     * @param pageSize 每页数量
+     * @return the page
+     */
+    default Page<SessionSummary> findSessionsByPrincipalPrefix(String prefix, int pageNo, int pageSize) {
+        throw new SessionException("当前 SessionDAO 不支持在线用户查询");
+    }
+
+    /**
+     * 按客户端地址(host)分页查找在线用户
+     * <p>
+     * host 索引按字典序排列，前缀匹配可以用来查找一个网段，如: 10.1.2.
+     * <p>
+     * 查询代价与总数的统计方式同 {@link #findSessionsByPrincipalPrefix(String, int, int)}
+     *
+     * @param host     客户端地址或者地址前缀
+     * @param prefix   true: 按前缀匹配 ; false: 完全匹配
+     * @param pageNo   页码
+     * @param pageSize 每页数量
+     * @return the page
+     */
+    default Page<SessionSummary> findSessionsByHost(String host, boolean prefix, int pageNo, int pageSize) {
+        throw new SessionException("当前 SessionDAO 不支持在线用户查询");
+    }
+
+    /**
+     * 按登录时间(Session 创建时间)分页查找在线用户，按登录时间排序
+     * <p>
+     * 查询代价与总数的统计方式同 {@link #findSessionsByPrincipalPrefix(String, int, int)}
+     *
+     * @param from     起始时间(包含) ，为 null 时不限
+     * @param to       结束时间(包含) ，为 null 时不限
+     * @param pageNo   页码
+     * @param pageSize 每页数量
+     * @return the page
+     */
+    default Page<SessionSummary> findSessionsByStartTime(Date from, Date to, int pageNo, int pageSize) {
+        throw new SessionException("当前 SessionDAO 不支持在线用户查询");
+    }
+
     /**
      * 清理无效Session缓存
      */
@@ -178,6 +380,84 @@ public interface SessionDAO {
      */
     void clearAllUserAuthorities();
 
+    /**
+     * 清除具有指定角色(或权限标识)的用户的缓存权限
+     * <p>
+     * 缓存用户权限时同时维护 角色 -> SessionId 反向索引，角色的权限发生变化时只清除受影响的会话，
+     * 避免清除所有用户的缓存权限后大量请求同时回源数据库
+     * <p>
+     * 不支持反向索引的实现，退回到清除所有用户的缓存权限
+     *
+     * @param roles 角色标识或者权限标识，只匹配用户直接具有的标识
+     * @return 被清除的会话数量 ，不支持反向索引时返回 -1
+     */
+    default int clearUserAuthoritiesByRoles(Collection<String> roles) {
+        clearAllUserAuthorities();
+        return -1;
+    }
+
+    /**
+     * 清除指定用户所有会话的缓存权限
+     * <p>
+     * 依赖 principal -> SessionId 反向索引，不支持反向索引的实现，退回到清除所有用户的缓存权限
+     *
+     * @param principal the principal
+     * @return 被清除的会话数量 ，不支持反向索引时返回 -1
+     */
+    default int clearUserAuthoritiesByPrincipal(String principal) {
+        clearAllUserAuthorities();
+        return -1;
+    }
+
+    /////Session 属性
+
+    /**
+     * 获取 Session 属性
+     * <p>
+     * 属性与 Session 分开存储，按名称单独读写，读取 Session 时不加载属性
+     *
+     * @param sessionId the session id
+     * @param name      属性名称
+     * @return 属性值 ，不存在返回 null
+     */
+    default Object getAttribute(String sessionId, String name) {
+        throw new SessionException("当前 SessionDAO 不支持 Session 属性");
+    }
+
+    /**
+     * 获取 Session 的全部属性
+     *
+     * @param sessionId the session id
+     * @return 属性名称 -> 属性值 ，没有属性返回空 Map
+     */
+    default Map<String, Object> getAttributes(String sessionId) {
+        throw new SessionException("当前 SessionDAO 不支持 Session 属性");
+    }
+
+    /**
+     * 设置 Session 属性，只写入这一个属性，不改写 Session 数据
+     * <p>
+     * 属性随 Session 一起过期、删除
+     *
+     * @param sessionId the session id
+     * @param name      属性名称
+     * @param value     属性值 ，为 null 时删除属性
+     * @throws InvalidSessionException Session 不存在
+     */
+    default void setAttribute(String sessionId, String name, Object value) throws InvalidSessionException {
+        throw new SessionException("当前 SessionDAO 不支持 Session 属性");
+    }
+
+    /**
+     * 删除 Session 属性
+     *
+     * @param sessionId the session id
+     * @param name      属性名称
+     */
+    default void removeAttribute(String sessionId, String name) {
+        throw new SessionException("当前 SessionDAO 不支持 Session 属性");
+    }
+
     /**
      * Gets servlet holder.
      *
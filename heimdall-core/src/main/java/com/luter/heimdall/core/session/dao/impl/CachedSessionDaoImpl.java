@@ -19,6 +19,8 @@
 package com.luter.heimdall.core.session.dao.impl;
 
 import com.luter.heimdall.core.authorization.authority.GrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.GrantedAuthorityList;
+import com.luter.heimdall.core.authorization.authority.SimpleGrantedAuthority;
 import com.luter.heimdall.core.cache.SimpleCache;
 import com.luter.heimdall.core.config.Config;
 import com.luter.heimdall.core.config.ConfigManager;
@@ -27,21 +29,31 @@ import com.luter.heimdall.core.details.UserDetails;
 import com.luter.heimdall.core.exception.*;
 import com.luter.heimdall.core.servlet.ServletHolder;
 import com.luter.heimdall.core.session.Page;
+import com.luter.heimdall.core.session.SessionSummary;
 import com.luter.heimdall.core.session.SimpleSession;
 import com.luter.heimdall.core.session.dao.SessionDAO;
 import com.luter.heimdall.core.session.generator.SessionIdGenerator;
-import com.luter.heimdall.core.session.generator.UUIDSessionIdGeneratorImpl;
+import com.luter.heimdall.core.session.generator.SecureRandomSessionIdGeneratorImpl;
 import com.luter.heimdall.core.session.listener.AbstractSessionEvent;
 import com.luter.heimdall.core.utils.StrUtils;
 import com.luter.heimdall.core.utils.WebUtils;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.Collection;
-import java.util.Date;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 /**
  * 基于内存缓存(如：map、ehcache 、caffeine)的SessionDao
+ * <p>
+ * 同时在内存中维护 角色 -> SessionId 、principal -> SessionId 反向索引，用于按角色、按用户清除缓存的用户权限
+ * <p>
+ * 在线用户查询使用按字典序排列的 principal 、host 、登录时间索引(跳表)，查找为 O(log N) ，再顺序读取一页，
+ * 索引项为 值 + \u0000 + SessionId ，同一个值的所有会话排列在一起
+ * <p>
+ * 开启按代失效后，全局代数和用户代数保存在内存中，失效的 Session 读取时视为不存在，由清理任务清除
  *
  * @author Luter
  */
@@ -56,6 +68,42 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
      * 用户权限缓存
      */
     private SimpleCache<String, List<? extends GrantedAuthority>> userAuthCache;
+    /**
+     * 角色(权限标识) -> 缓存了用户权限的 SessionId
+     */
+    private final Map<String, Set<String>> roleIndex = new ConcurrentHashMap<>();
+    /**
+     * SessionId -> 建立了索引的角色(权限标识)，清除反向索引时使用
+     */
+    private final Map<String, String[]> sessionRoles = new ConcurrentHashMap<>();
+    /**
+     * principal -> SessionId
+     */
+    private final Map<String, Set<String>> principalIndex = new ConcurrentHashMap<>();
+    /**
+     * SessionId -> Session 属性
+     */
+    private final Map<String, Map<String, Object>> sessionAttributes = new ConcurrentHashMap<>();
+    /**
+     * principal 索引: principal + \u0000 + SessionId
+     */
+    private final NavigableSet<String> principalSearchIndex = new ConcurrentSkipListSet<>();
+    /**
+     * host 索引: host + \u0000 + SessionId
+     */
+    private final NavigableSet<String> hostSearchIndex = new ConcurrentSkipListSet<>();
+    /**
+     * 登录时间索引: 定长的毫秒时间戳 + \u0000 + SessionId
+     */
+    private final NavigableSet<String> startTimeSearchIndex = new ConcurrentSkipListSet<>();
+    /**
+     * 全局代数
+     */
+    private final AtomicLong globalGeneration = new AtomicLong();
+    /**
+     * principal -> 用户代数，只保存增加过代数、还有 Session 的用户
+     */
+    private final Map<String, Long> principalGenerations = new ConcurrentHashMap<>();
 
     /**
      * The Session id generator.
@@ -93,7 +141,7 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
         this.sessionCache = sessionCache;
         this.userAuthCache = userAuthCache;
         this.servletHolder = servletHolder;
-        this.sessionIdGenerator = new UUIDSessionIdGeneratorImpl();
+        this.sessionIdGenerator = new SecureRandomSessionIdGeneratorImpl(config.getSession().getSessionIdNodeTag());
     }
 
     @Override
@@ -113,11 +161,18 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
             }
             session.setId(sessionId);
             session.setDetails(userDetails);
+            //先加入用户索引再读取用户代数，用户代数不会在读取之后被当作无人使用删除
+            addToIndex(principalIndex, userDetails.getPrincipal(), sessionId);
+            if (isGenerationEnabled()) {
+                session.setGlobalGeneration(globalGeneration.get());
+                session.setPrincipalGeneration(principalGenerations.getOrDefault(userDetails.getPrincipal(), 0L));
+            }
             //拿远端IP
             if (null != servletHolder) {
                 session.setHost(WebUtils.getRemoteIp(servletHolder.getRequest()));
             }
             sessionCache.put(getSessionIdPrefix() + sessionId, session);
+            indexSearch(session);
             //写入cookie
             if (config.getCookie().getEnabled()) {
                 if (null != cookieService) {
@@ -139,7 +194,11 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
 
     @Override
     public SimpleSession readSession(String sessionId) throws InvalidSessionException {
-        final SimpleSession session = sessionCache.get(getSessionIdPrefix() + sessionId);
+        SimpleSession session = sessionCache.get(getSessionIdPrefix() + sessionId);
+        if (null != session && isSuperseded(session)) {
+            log.debug("Session 已经按代失效,SessionId:[{}]", sessionId);
+            session = null;
+        }
         afterRead(session);
         return session;
     }
@@ -156,11 +215,7 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
     @Override
     public void delete(SimpleSession session) {
         final Config config = ConfigManager.getConfig();
-        //清理用户权限缓存
-        clearUserAuthorities(session.getId());
-        //清理 Session 缓存
-        sessionCache.remove(getSessionIdPrefix() + session.getId());
-        log.debug("remove session from cache ,key ;{}", getSessionIdPrefix() + session.getId());
+        removeSession(session);
         //删除cookie
         if (config.getCookie().getEnabled()) {
             if (null != cookieService) {
@@ -180,11 +235,80 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
         return sessionCache.values();
     }
 
+    @Override
+    public List<SimpleSession> readSessions(Collection<String> sessionIds) {
+        final List<SimpleSession> sessions = new ArrayList<>(sessionIds.size());
+        for (String sessionId : sessionIds) {
+            final SimpleSession session = sessionCache.get(getSessionIdPrefix() + sessionId);
+            if (null != session && !isSuperseded(session)) {
+                sessions.add(session);
+            }
+        }
+        return sessions;
+    }
+
+    @Override
+    public int deleteSessions(Collection<SimpleSession> sessions) {
+        if (null == sessions || sessions.isEmpty()) {
+            return 0;
+        }
+        for (SimpleSession session : sessions) {
+            removeSession(session);
+        }
+        log.debug("批量删除 Session ，总数:{}", sessions.size());
+        //发布事件
+        afterDeleted(sessions);
+        return sessions.size();
+    }
+
+    @Override
+    public Set<String> getSessionIdsByPrincipals(Collection<String> principals) {
+        final Set<String> sessionIds = new HashSet<>();
+        for (String principal : principals) {
+            final Set<String> indexed = null == principal ? null : principalIndex.get(principal);
+            if (null != indexed) {
+                sessionIds.addAll(indexed);
+            }
+        }
+        return sessionIds;
+    }
+
+    @Override
+    public Set<String> getSessionIdsByRoles(Collection<String> roles) {
+        final Set<String> sessionIds = new HashSet<>();
+        for (String role : roles) {
+            final Set<String> indexed = null == role ? null : roleIndex.get(role);
+            if (null != indexed) {
+                sessionIds.addAll(indexed);
+            }
+        }
+        return sessionIds;
+    }
+
+    /**
+     * 删除 Session 缓存、Session 属性、用户权限缓存和各个索引，不处理 Cookie 和事件
+     *
+     * @param session the session
+     */
+    private void removeSession(SimpleSession session) {
+        //清理用户权限缓存
+        clearUserAuthorities(session.getId());
+        //清理 Session 缓存
+        sessionCache.remove(getSessionIdPrefix() + session.getId());
+        sessionAttributes.remove(session.getId());
+        if (null != session.getDetails()) {
+            removeFromIndex(principalIndex, session.getDetails().getPrincipal(), session.getId());
+            releaseGeneration(session.getDetails().getPrincipal());
+        }
+        unindexSearch(session);
+        log.debug("remove session from cache ,key ;{}", getSessionIdPrefix() + session.getId());
+    }
+
     @Override
     public SimpleSession getByPrincipal(String principal) {
         final Collection<SimpleSession> activeSessions = getActiveSessions();
         for (SimpleSession activeSession : activeSessions) {
-            if (principal.equals(activeSession.getDetails().getPrincipal())) {
+            if (principal.equals(activeSession.getDetails().getPrincipal()) && !isSuperseded(activeSession)) {
                 return activeSession;
             }
         }
@@ -196,6 +320,95 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
         throw new HeimdallException(" 当前缓存模式不支持分页获取在线用户列表,请切换为其他缓存或者使用非分页方式获取");
     }
 
+    /**
+     * 内存中直接由 Session 生成摘要，按创建时间排序后分页
+     */
+    @Override
+    public Page<SessionSummary> getActiveSessionSummaries(int pageNo, int pageSize) {
+        final List<SessionSummary> summaries = getActiveSessions().stream().filter(Objects::nonNull).map(SessionSummary::of)
+                .sorted(Comparator.comparing(SessionSummary::getStartTimestamp, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+        final int from = Math.min(Math.max(pageNo - 1, 0) * pageSize, summaries.size());
+        final int to = Math.min(from + pageSize, summaries.size());
+        return new Page<>(pageNo, pageSize, summaries.size(), new ArrayList<>(summaries.subList(from, to)));
+    }
+
+    @Override
+    public long invalidateAllSessions() {
+        checkGenerationEnabled();
+        return globalGeneration.incrementAndGet();
+    }
+
+    @Override
+    public long invalidatePrincipalSessions(String principal) {
+        checkGenerationEnabled();
+        return principalGenerations.merge(principal, 1L, Long::sum);
+    }
+
+    /**
+     * Session 是否已经按代失效，未开启按代失效时总是 false
+     *
+     * @param session the session
+     * @return the boolean
+     */
+    private boolean isSuperseded(SimpleSession session) {
+        if (!isGenerationEnabled()) {
+            return false;
+        }
+        final long principalGeneration = null == session.getDetails() || null == session.getDetails().getPrincipal() ? 0L
+                : principalGenerations.getOrDefault(session.getDetails().getPrincipal(), 0L);
+        return session.isSuperseded(globalGeneration.get(), principalGeneration);
+    }
+
+    /**
+     * 用户已经没有 Session 时删除用户代数，之后登录的 Session 从 0 代开始
+     * <p>
+     * 按代失效的 Session 在被清除之前仍然在用户索引中，用户代数不会提前删除
+     *
+     * @param principal the principal
+     */
+    private void releaseGeneration(String principal) {
+        if (null != principal) {
+            principalGenerations.computeIfPresent(principal, (k, generation) -> principalIndex.containsKey(k) ? generation : null);
+        }
+    }
+
+    /**
+     * 是否开启了按代失效
+     *
+     * @return the boolean
+     */
+    private boolean isGenerationEnabled() {
+        return ConfigManager.getConfig().getSession().isGenerationEnabled();
+    }
+
+    /**
+     * 未开启按代失效时抛出异常
+     */
+    private void checkGenerationEnabled() {
+        if (!isGenerationEnabled()) {
+            throw new SessionException("按代失效 Session 未开启，请设置 session.generationEnabled = true");
+        }
+    }
+
+    @Override
+    public Page<SessionSummary> findSessionsByPrincipalPrefix(String prefix, int pageNo, int pageSize) {
+        final String from = null == prefix ? "" : prefix;
+        return searchIndex(principalSearchIndex, from, from + Character.MAX_VALUE, pageNo, pageSize);
+    }
+
+    @Override
+    public Page<SessionSummary> findSessionsByHost(String host, boolean prefix, int pageNo, int pageSize) {
+        final String from = null == host ? "" : (prefix ? host : searchKey(host, ""));
+        return searchIndex(hostSearchIndex, from, from + Character.MAX_VALUE, pageNo, pageSize);
+    }
+
+    @Override
+    public Page<SessionSummary> findSessionsByStartTime(Date from, Date to, int pageNo, int pageSize) {
+        return searchIndex(startTimeSearchIndex, timeKey(null == from ? 0L : from.getTime()),
+                timeKey(null == to ? Long.MAX_VALUE : to.getTime()) + Character.MAX_VALUE, pageNo, pageSize);
+    }
+
     @Override
     public void validateExpiredSessions() {
         final Collection<SimpleSession> activeSessions = getActiveSessions();
@@ -204,7 +417,7 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
             log.info("暂无活动Session");
         } else {
             for (SimpleSession activeSession : activeSessions) {
-                if (activeSession.isTimedOut()) {
+                if (activeSession.isTimedOut() || isSuperseded(activeSession)) {
                     //过期了，直接删除用户权限缓存
                     clearUserAuthorities(activeSession.getId());
                     //直接删除Session 缓存
@@ -218,6 +431,7 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
                 }
             }
         }
+        pruneIndexes();
         //发布事件
         afterSessionValidScheduled();
         log.info("过期Session清理任务结束");
@@ -229,7 +443,10 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
     public void setUserAuthorities(String sessionId, List<? extends GrantedAuthority> authorities) {
         if (null != authorities && !authorities.isEmpty()) {
             log.debug("缓存 用户权限，SessionId : [{}], 权限总数:{}", sessionId, authorities.size());
-            userAuthCache.put(sessionId, authorities);
+            //以不可变列表缓存，权限位图随列表一起缓存。内容相同的权限列表共享同一个实例
+            final GrantedAuthorityList list = GrantedAuthorityList.intern(authorities);
+            userAuthCache.put(sessionId, list);
+            indexRoles(sessionId, list);
         } else {
             log.warn("缓存用户权限失败，用户权限为空");
         }
@@ -245,12 +462,255 @@ public class CachedSessionDaoImpl extends AbstractSessionEvent implements Sessio
     public void clearUserAuthorities(String sessionId) {
         log.debug("清除缓存 用户权限，SessionId : [{}]", sessionId);
         userAuthCache.remove(sessionId);
+        unindexRoles(sessionId);
     }
 
     @Override
     public void clearAllUserAuthorities() {
         log.debug("清除所有缓存的用户权限");
         userAuthCache.clear();
+        roleIndex.clear();
+        sessionRoles.clear();
+    }
+
+    @Override
+    public int clearUserAuthoritiesByRoles(Collection<String> roles) {
+        final Set<String> sessionIds = getSessionIdsByRoles(roles);
+        for (String sessionId : sessionIds) {
+            clearUserAuthorities(sessionId);
+        }
+        log.debug("按角色清除缓存 用户权限，角色:{}，会话总数:{}", roles, sessionIds.size());
+        return sessionIds.size();
+    }
+
+    @Override
+    public int clearUserAuthoritiesByPrincipal(String principal) {
+        final Set<String> indexed = null == principal ? null : principalIndex.get(principal);
+        if (null == indexed) {
+            return 0;
+        }
+        final List<String> sessionIds = new ArrayList<>(indexed);
+        for (String sessionId : sessionIds) {
+            clearUserAuthorities(sessionId);
+        }
+        log.debug("按用户清除缓存 用户权限，principal:{}，会话总数:{}", principal, sessionIds.size());
+        return sessionIds.size();
+    }
+
+    //////Session 属性
+
+    @Override
+    public Object getAttribute(String sessionId, String name) {
+        final Map<String, Object> attributes = sessionAttributes.get(sessionId);
+        return null == attributes ? null : attributes.get(name);
+    }
+
+    @Override
+    public Map<String, Object> getAttributes(String sessionId) {
+        final Map<String, Object> attributes = sessionAttributes.get(sessionId);
+        return null == attributes ? Collections.emptyMap() : new HashMap<>(attributes);
+    }
+
+    @Override
+    public void setAttribute(String sessionId, String name, Object value) throws InvalidSessionException {
+        if (null == value) {
+            removeAttribute(sessionId, name);
+            return;
+        }
+        if (null == sessionCache.get(getSessionIdPrefix() + sessionId)) {
+            throw new InvalidSessionException();
+        }
+        sessionAttributes.computeIfAbsent(sessionId, k -> new ConcurrentHashMap<>()).put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String sessionId, String name) {
+        sessionAttributes.computeIfPresent(sessionId, (k, attributes) -> {
+            attributes.remove(name);
+            return attributes.isEmpty() ? null : attributes;
+        });
+    }
+
+    /**
+     * 为缓存的用户权限建立 角色 -> SessionId 反向索引，只索引 SimpleGrantedAuthority
+     *
+     * @param sessionId   the session id
+     * @param authorities the authorities
+     */
+    private void indexRoles(String sessionId, List<? extends GrantedAuthority> authorities) {
+        unindexRoles(sessionId);
+        final List<String> roles = new ArrayList<>(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            if (authority instanceof SimpleGrantedAuthority && null != authority.getAuthority()) {
+                roles.add(authority.getAuthority());
+                addToIndex(roleIndex, authority.getAuthority(), sessionId);
+            }
+        }
+        if (!roles.isEmpty()) {
+            sessionRoles.put(sessionId, roles.toArray(new String[0]));
+        }
+    }
+
+    /**
+     * 清除会话的角色反向索引
+     *
+     * @param sessionId the session id
+     */
+    private void unindexRoles(String sessionId) {
+        final String[] roles = sessionRoles.remove(sessionId);
+        if (null != roles) {
+            for (String role : roles) {
+                removeFromIndex(roleIndex, role, sessionId);
+            }
+        }
+    }
+
+    /**
+     * 按索引范围 [from, to) 分页读取 Session 摘要
+     * <p>
+     * 跳表定位起点为 O(log N) ，跳过前面的页需要逐项遍历，读取一页为 O(log N + offset + pageSize)。
+     * 统计总数(session.searchCountEnabled)时在同一次遍历中继续数完整个范围，为 O(log N + 范围内的索引项数)；
+     * 不统计时只多看一项，判断后面是否还有数据。已经被缓存淘汰、索引还没有清理的会话跳过
+     *
+     * @param index    the index
+     * @param from     the from
+     * @param to       the to
+     * @param pageNo   the page no
+     * @param pageSize the page size
+     * @return the page
+     */
+    private Page<SessionSummary> searchIndex(NavigableSet<String> index, String from, String to, int pageNo, int pageSize) {
+        final boolean counting = ConfigManager.getConfig().getSession().isSearchCountEnabled();
+        final long offset = (long) Math.max(pageNo - 1, 0) * pageSize;
+        final List<SessionSummary> records = new ArrayList<>();
+        long position = 0;
+        for (String entry : index.subSet(from, true, to, false)) {
+            if (position >= offset + pageSize && !counting) {
+                //不统计总数，后面还有数据
+                position++;
+                break;
+            }
+            if (position++ < offset || position > offset + pageSize) {
+                continue;
+            }
+            final SimpleSession session = sessionCache.get(getSessionIdPrefix() + entry.substring(entry.lastIndexOf('\u0000') + 1));
+            if (null != session) {
+                records.add(SessionSummary.of(session));
+            }
+        }
+        return new Page<>(pageNo, pageSize, position, records);
+    }
+
+    /**
+     * 加入在线用户查询索引
+     *
+     * @param session the session
+     */
+    private void indexSearch(SimpleSession session) {
+        if (null != session.getDetails() && null != session.getDetails().getPrincipal()) {
+            principalSearchIndex.add(searchKey(session.getDetails().getPrincipal(), session.getId()));
+        }
+        if (null != session.getHost()) {
+            hostSearchIndex.add(searchKey(session.getHost(), session.getId()));
+        }
+        if (null != session.getStartTimestamp()) {
+            startTimeSearchIndex.add(searchKey(timeKey(session.getStartTimestamp().getTime()), session.getId()));
+        }
+    }
+
+    /**
+     * 移出在线用户查询索引
+     *
+     * @param session the session
+     */
+    private void unindexSearch(SimpleSession session) {
+        if (null != session.getDetails() && null != session.getDetails().getPrincipal()) {
+            principalSearchIndex.remove(searchKey(session.getDetails().getPrincipal(), session.getId()));
+        }
+        if (null != session.getHost()) {
+            hostSearchIndex.remove(searchKey(session.getHost(), session.getId()));
+        }
+        if (null != session.getStartTimestamp()) {
+            startTimeSearchIndex.remove(searchKey(timeKey(session.getStartTimestamp().getTime()), session.getId()));
+        }
+    }
+
+    /**
+     * 查询索引项: 值 + \u0000 + SessionId
+     *
+     * @param value     the value
+     * @param sessionId the session id
+     * @return the string
+     */
+    private static String searchKey(String value, String sessionId) {
+        return value + '\u0000' + sessionId;
+    }
+
+    /**
+     * 定长(19 位)的毫秒时间戳，字典序与数值顺序一致
+     *
+     * @param millis the millis
+     * @return the string
+     */
+    private static String timeKey(long millis) {
+        return String.format("%019d", Math.max(millis, 0L));
+    }
+
+    /**
+     * 清除已经被缓存淘汰的会话的反向索引
+     * <p>
+     * 缓存过期淘汰时没有回调，由过期Session清理任务定期处理
+     */
+    private void pruneIndexes() {
+        final Set<String> cachedAuthorities = userAuthCache.keys();
+        for (String sessionId : new ArrayList<>(sessionRoles.keySet())) {
+            if (!cachedAuthorities.contains(sessionId)) {
+                unindexRoles(sessionId);
+            }
+        }
+        final Set<String> sessionKeys = sessionCache.keys();
+        sessionAttributes.keySet().removeIf(sessionId -> !sessionKeys.contains(getSessionIdPrefix() + sessionId));
+        for (NavigableSet<String> index : Arrays.asList(principalSearchIndex, hostSearchIndex, startTimeSearchIndex)) {
+            index.removeIf(entry -> !sessionKeys.contains(getSessionIdPrefix() + entry.substring(entry.lastIndexOf('\u0000') + 1)));
+        }
+        for (Map.Entry<String, Set<String>> entry : principalIndex.entrySet()) {
+            for (String sessionId : new ArrayList<>(entry.getValue())) {
+                if (!sessionKeys.contains(getSessionIdPrefix() + sessionId)) {
+                    removeFromIndex(principalIndex, entry.getKey(), sessionId);
+                }
+            }
+        }
+        principalGenerations.keySet().forEach(this::releaseGeneration);
+        log.debug("清理反向索引完成，角色索引总数:{}，用户索引总数:{}", roleIndex.size(), principalIndex.size());
+    }
+
+    /**
+     * 加入反向索引
+     *
+     * @param index     the index
+     * @param key       the key
+     * @param sessionId the session id
+     */
+    private static void addToIndex(Map<String, Set<String>> index, String key, String sessionId) {
+        if (null != key) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(sessionId);
+        }
+    }
+
+    /**
+     * 移出反向索引，集合为空时删除整个索引项
+     *
+     * @param index     the index
+     * @param key       the key
+     * @param sessionId the session id
+     */
+    private static void removeFromIndex(Map<String, Set<String>> index, String key, String sessionId) {
+        if (null != key) {
+            index.computeIfPresent(key, (k, sessionIds) -> {
+                sessionIds.remove(sessionId);
+                return sessionIds.isEmpty() ? null : sessionIds;
+            });
+        }
     }
 
     //////用户权限部分
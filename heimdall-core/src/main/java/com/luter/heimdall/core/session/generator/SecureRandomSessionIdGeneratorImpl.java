@@ -0,0 +1,198 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.session.generator;
+
+import com.luter.heimdall.core.exception.HeimdallException;
+import com.luter.heimdall.core.utils.StrUtils;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * 高吞吐 SessionID 生成器
+ * <p>
+ * 每个线程一个独立播种的 SecureRandom(SHA1PRNG) ，不再争用同一个 SecureRandom ，
+ * 随机字节用完即弃，不预先生成、不在内存中缓存尚未发出的 SessionId 。
+ * 默认 128 位随机数，以 base64url(无填充)编码，22 个字符。
+ * <p>
+ * 可以在前面加上节点(分片)标识，以 . 分隔，如: node1.xxxxx ，便于按 SessionId 路由，
+ * 标识只能包含 base64url 字符，可以通过 {@link #getNodeTag(String)} 取出。
+ *
+ * @author Luter
+ */
+public class SecureRandomSessionIdGeneratorImpl implements SessionIdGenerator {
+    /**
+     * 默认随机字节数，128 位
+     */
+    public static final int DEFAULT_ENTROPY_BYTES = 16;
+    /**
+     * 节点标识与随机部分的分隔符，不在 base64url 字符集中
+     */
+    public static final char NODE_TAG_SEPARATOR = '.';
+    /**
+     * base64url 字符集
+     */
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    /**
+     * 为每个线程的 SecureRandom 提供种子，每个线程只使用一次
+     */
+    private static final SecureRandom SEED_SOURCE = new SecureRandom();
+    /**
+     * 随机字节数
+     */
+    private final int entropyBytes;
+    /**
+     * 节点标识，没有时为空
+     */
+    private final String nodeTag;
+    /**
+     * 每个线程的 SecureRandom
+     */
+    private final ThreadLocal<SecureRandom> randoms = ThreadLocal.withInitial(SecureRandomSessionIdGeneratorImpl::newSecureRandom);
+
+    /**
+     * 128 位随机数，没有节点标识
+     */
+    public SecureRandomSessionIdGeneratorImpl() {
+        this(null, DEFAULT_ENTROPY_BYTES);
+    }
+
+    /**
+     * 128 位随机数
+     *
+     * @param nodeTag 节点标识 ，为空时不加
+     */
+    public SecureRandomSessionIdGeneratorImpl(String nodeTag) {
+        this(nodeTag, DEFAULT_ENTROPY_BYTES);
+    }
+
+    /**
+     * Instantiates a new Secure random session id generator.
+     *
+     * @param nodeTag      节点标识 ，为空时不加
+     * @param entropyBytes 随机字节数，不少于 16
+     */
+    public SecureRandomSessionIdGeneratorImpl(String nodeTag, int entropyBytes) {
+        if (entropyBytes < DEFAULT_ENTROPY_BYTES) {
+            throw new HeimdallException("SessionId 随机部分不能少于 " + DEFAULT_ENTROPY_BYTES + " 字节(128 位)");
+        }
+        if (StrUtils.isNotBlank(nodeTag)) {
+            for (int i = 0; i < nodeTag.length(); i++) {
+                if (!isUrlSafe(nodeTag.charAt(i))) {
+                    throw new HeimdallException("SessionId 节点标识只能包含字母、数字、- 和 _ :" + nodeTag);
+                }
+            }
+        }
+        this.entropyBytes = entropyBytes;
+        this.nodeTag = StrUtils.isBlank(nodeTag) ? "" : nodeTag;
+    }
+
+    @Override
+    public String generate() {
+        final byte[] bytes = new byte[entropyBytes];
+        randoms.get().nextBytes(bytes);
+        final int tagLength = nodeTag.isEmpty() ? 0 : nodeTag.length() + 1;
+        final char[] chars = new char[tagLength + (entropyBytes * 4 + 2) / 3];
+        if (tagLength > 0) {
+            nodeTag.getChars(0, nodeTag.length(), chars, 0);
+            chars[tagLength - 1] = NODE_TAG_SEPARATOR;
+        }
+        encode(bytes, 0, entropyBytes, chars, tagLength);
+        return new String(chars);
+    }
+
+    /**
+     * 取出 SessionId 中的节点标识
+     *
+     * @param sessionId the session id
+     * @return 节点标识 ，没有时返回 null
+     */
+    public static String getNodeTag(String sessionId) {
+        final int index = null == sessionId ? -1 : sessionId.indexOf(NODE_TAG_SEPARATOR);
+        return index <= 0 ? null : sessionId.substring(0, index);
+    }
+
+    /**
+     * Gets node tag.
+     *
+     * @return the node tag
+     */
+    public String getNodeTag() {
+        return nodeTag;
+    }
+
+    /**
+     * base64url 编码(无填充)，直接写入目标数组
+     *
+     * @param src    the src
+     * @param offset the offset
+     * @param length the length
+     * @param dst    the dst
+     * @param pos    the pos
+     */
+    private static void encode(byte[] src, int offset, int length, char[] dst, int pos) {
+        int i = offset;
+        final int end = offset + length;
+        while (end - i >= 3) {
+            final int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8 | (src[i + 2] & 0xFF);
+            dst[pos++] = ALPHABET[bits >>> 18];
+            dst[pos++] = ALPHABET[(bits >>> 12) & 0x3F];
+            dst[pos++] = ALPHABET[(bits >>> 6) & 0x3F];
+            dst[pos++] = ALPHABET[bits & 0x3F];
+            i += 3;
+        }
+        if (end - i == 1) {
+            final int bits = (src[i] & 0xFF) << 16;
+            dst[pos++] = ALPHABET[bits >>> 18];
+            dst[pos] = ALPHABET[(bits >>> 12) & 0x3F];
+        } else if (end - i == 2) {
+            final int bits = (src[i] & 0xFF) << 16 | (src[i + 1] & 0xFF) << 8;
+            dst[pos++] = ALPHABET[bits >>> 18];
+            dst[pos++] = ALPHABET[(bits >>> 12) & 0x3F];
+            dst[pos] = ALPHABET[(bits >>> 6) & 0x3F];
+        }
+    }
+
+    /**
+     * 是否 base64url 字符
+     *
+     * @param c the c
+     * @return the boolean
+     */
+    private static boolean isUrlSafe(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+    }
+
+    /**
+     * SHA1PRNG 没有全局锁，以系统 SecureRandom 产生的种子播种，不可用时使用默认实现
+     *
+     * @return the secure random
+     */
+    private static SecureRandom newSecureRandom() {
+        final byte[] seed = new byte[32];
+        SEED_SOURCE.nextBytes(seed);
+        try {
+            final SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+            random.setSeed(seed);
+            return random;
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom(seed);
+        }
+    }
+}
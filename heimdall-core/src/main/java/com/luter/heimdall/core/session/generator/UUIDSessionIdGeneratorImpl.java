@@ -18,21 +18,42 @@
 
 package com.luter.heimdall.core.session.generator;
 
-import lombok.extern.slf4j.Slf4j;
-
 import java.util.UUID;
 
 /**
  * UUID SessionID生成器，去掉横线
+ * <p>
+ * 直接按十六进制输出 UUID 的 128 位，不再先格式化再用正则去掉横线。
+ * UUID.randomUUID() 共用一个 SecureRandom ，并发登录多时建议使用 {@link SecureRandomSessionIdGeneratorImpl}
  *
  * @author Luter
  */
-@Slf4j
 public class UUIDSessionIdGeneratorImpl implements SessionIdGenerator {
+    /**
+     * 十六进制字符
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
     @Override
     public String generate() {
-        final String s = UUID.randomUUID().toString().replaceAll("-", "");
-        log.debug("generate session id : {}", s);
-        return s;
+        final UUID uuid = UUID.randomUUID();
+        final char[] chars = new char[32];
+        toHex(uuid.getMostSignificantBits(), chars, 0);
+        toHex(uuid.getLeastSignificantBits(), chars, 16);
+        return new String(chars);
+    }
+
+    /**
+     * 64 位按十六进制写入，高位在前，固定 16 个字符
+     *
+     * @param value  the value
+     * @param chars  the chars
+     * @param offset the offset
+     */
+    private static void toHex(long value, char[] chars, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            chars[offset + i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
     }
 }
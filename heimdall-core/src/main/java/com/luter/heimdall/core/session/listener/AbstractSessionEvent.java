@@ -100,6 +100,24 @@ public abstract class AbstractSessionEvent {
         }
     }
 
+    /**
+     * Session 批量删除，每个监听器调用一次
+     *
+     * @param sessions the sessions
+     */
+    public void afterDeleted(Collection<SimpleSession> sessions) {
+        if (null == sessions || sessions.isEmpty()) {
+            return;
+        }
+        for (SessionEventListener listener : this.listeners) {
+            try {
+                listener.afterDeleted(sessions);
+            } catch (Exception e) {
+                log.error("Session事件监听 afterDeleted(批量) 出现错误:{}", e.getMessage(), e);
+            }
+        }
+    }
+
     /**
      * 过期 Session 清理
      */
@@ -20,6 +20,8 @@ package com.luter.heimdall.core.session.listener;
 
 import com.luter.heimdall.core.session.SimpleSession;
 
+import java.util.Collection;
+
 /**
  * Session事件监听
  *
@@ -58,6 +60,19 @@ public interface SessionEventListener {
     default void afterDeleted(SimpleSession session) {
     }
 
+    /**
+     * Session 批量删除
+     * <p>
+     * 默认逐个调用 {@link #afterDeleted(SimpleSession)} ，需要批量处理(如批量写日志)的监听器可以覆盖此方法
+     *
+     * @param sessions the sessions
+     */
+    default void afterDeleted(Collection<SimpleSession> sessions) {
+        for (SimpleSession session : sessions) {
+            afterDeleted(session);
+        }
+    }
+
     /**
      * 过期 Session 清理
      */
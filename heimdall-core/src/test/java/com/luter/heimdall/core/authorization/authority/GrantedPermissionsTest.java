@@ -0,0 +1,108 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.authority;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * 通配权限蕴含测试
+ *
+ * @author Luter
+ */
+public class GrantedPermissionsTest {
+
+    private static GrantedPermissions granted(String... identifiers) {
+        final GrantedAuthority[] authorities = new GrantedAuthority[identifiers.length];
+        for (int i = 0; i < identifiers.length; i++) {
+            authorities[i] = new SimpleGrantedAuthority(identifiers[i]);
+        }
+        return GrantedPermissions.of(Arrays.asList(authorities));
+    }
+
+    @Test
+    public void trailingWildcardImpliesOneOrMoreSegments() {
+        final PermissionTrie trie = PermissionTrie.compile(Arrays.asList("pet:cat:*"));
+        assertTrue(trie.implies("pet:cat:list"));
+        assertTrue(trie.implies("pet:cat:list:export"));
+        assertFalse(trie.implies("pet:cat"));
+        assertFalse(trie.implies("pet:dog:list"));
+    }
+
+    @Test
+    public void middleWildcardImpliesExactlyOneSegment() {
+        final PermissionTrie trie = PermissionTrie.compile(Arrays.asList("pet:*:read"));
+        assertTrue(trie.implies("pet:cat:read"));
+        assertFalse(trie.implies("pet:cat:write"));
+        assertFalse(trie.implies("pet:cat:kitten:read"));
+    }
+
+    @Test
+    public void literalGrantDoesNotImplyLongerPermission() {
+        final GrantedPermissions permissions = granted("pet:cat");
+        assertTrue(permissions.contains("pet:cat"));
+        assertFalse(permissions.contains("pet:cat:list"));
+        assertFalse(permissions.hasWildcard());
+    }
+
+    @Test
+    public void wildcardGrantImpliesPermissions() {
+        final GrantedPermissions permissions = granted("user", "pet:*");
+        assertTrue(permissions.contains("pet:cat:list"));
+        assertTrue(permissions.containsAll("pet:cat:list", "user"));
+        assertTrue(permissions.containsAny("order:list", "pet:dog"));
+        assertFalse(permissions.containsAll("pet:cat:list", "order:list"));
+        assertTrue(permissions.impliesAny(Arrays.asList("order:list", "pet:dog")));
+    }
+
+    @Test
+    public void wildcardGrantDoesNotImplyRoles() {
+        final GrantedPermissions permissions = granted("pet:*", "user");
+        assertFalse(permissions.contains("admin"));
+        assertFalse(permissions.hasRole("admin"));
+        assertTrue(permissions.hasRole("user"));
+        assertFalse(permissions.hasAllRoles("admin", "user"));
+        assertTrue(permissions.hasAnyRoles("admin", "user"));
+        assertFalse(permissions.hasAnyRoles(AuthorityBitSet.ofIdentifiers("admin", "manager")));
+        assertTrue(permissions.hasAllRoles(AuthorityBitSet.ofIdentifiers("user")));
+    }
+
+    @Test
+    public void bareAsteriskIsLiteral() {
+        final GrantedPermissions permissions = granted("*");
+        assertFalse(permissions.hasWildcard());
+        assertTrue(permissions.contains("*"));
+        assertFalse(permissions.contains("pet:cat:list"));
+        assertFalse(permissions.contains("admin"));
+        assertFalse(PermissionTrie.implies("*", "pet:cat:list"));
+    }
+
+    @Test
+    public void wildcardDoesNotImplySingleSegmentIdentifiers() {
+        final PermissionTrie trie = PermissionTrie.compile(Arrays.asList("x:*", "*:read"));
+        assertFalse(trie.implies("x"));
+        assertFalse(trie.implies("read"));
+        assertFalse(trie.implies("admin"));
+        assertTrue(trie.implies("x:list"));
+        assertTrue(trie.implies("pet:read"));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.authority;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 角色继承关系测试
+ *
+ * @author Luter
+ */
+public class RoleHierarchyTest {
+    private static RoleHierarchy compile(String... pairs) {
+        final Map<String, Collection<String>> hierarchy = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            hierarchy.computeIfAbsent(pairs[i], k -> new ArrayList<>()).add(pairs[i + 1]);
+        }
+        return RoleHierarchy.compile(hierarchy);
+    }
+
+    @Test
+    public void emptyHierarchy() {
+        assertSame(RoleHierarchy.EMPTY, RoleHierarchy.compile(Collections.emptyMap()));
+        assertTrue(RoleHierarchy.EMPTY.isEmpty());
+        final List<String> identifiers = Collections.singletonList("admin");
+        assertSame(identifiers, RoleHierarchy.EMPTY.expand(identifiers));
+    }
+
+    @Test
+    public void closureIsTransitive() {
+        final RoleHierarchy hierarchy = compile("admin", "manager", "manager", "user");
+        assertFalse(hierarchy.isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList("manager", "user")), hierarchy.getInheritedRoles("admin"));
+        assertEquals(Collections.singleton("user"), hierarchy.getInheritedRoles("manager"));
+        assertTrue(hierarchy.getInheritedRoles("user").isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList("admin", "manager")), hierarchy.getInheritingRoles("user"));
+        assertEquals(new HashSet<>(Arrays.asList("admin", "manager", "user")),
+                new HashSet<>(hierarchy.expand(Collections.singletonList("admin"))));
+    }
+
+    @Test
+    public void cycleDoesNotIncludeSelf() {
+        final RoleHierarchy hierarchy = compile("a", "b", "b", "a");
+        assertEquals(Collections.singleton("b"), hierarchy.getInheritedRoles("a"));
+        assertEquals(Collections.singleton("a"), hierarchy.getInheritedRoles("b"));
+    }
+
+    @Test
+    public void impliesInheritedRolesAndWildcardPermissions() {
+        final RoleHierarchy hierarchy = compile("admin", "manager", "manager", "user:*");
+        assertTrue(hierarchy.impliesAny("admin", Collections.singletonList("manager")));
+        assertTrue(hierarchy.impliesAny("admin", Collections.singletonList("user:view")));
+        assertFalse(hierarchy.impliesAny("admin", Collections.singletonList("order:view")));
+        assertFalse(hierarchy.impliesAny("user", Collections.singletonList("manager")));
+    }
+
+    @Test
+    public void inheritedWildcardDoesNotImplyRoleNames() {
+        final RoleHierarchy hierarchy = compile("admin", "x:*", "admin", "*");
+        assertTrue(hierarchy.impliesAny("admin", Collections.singletonList("x:list")));
+        assertFalse(hierarchy.impliesAny("admin", Arrays.asList("user", "guest")));
+        assertFalse(hierarchy.impliesAny("admin", Collections.singletonList("pet:cat:list")));
+    }
+
+    @Test
+    public void compiledPermissionsUseHierarchy() {
+        final RoleHierarchy hierarchy = compile("admin", "manager");
+        final GrantedPermissions granted = GrantedPermissions.of(
+                Collections.singletonList(new SimpleGrantedAuthority("admin")), hierarchy);
+        assertTrue(granted.hasRole("manager"));
+        assertFalse(GrantedPermissions.of(Collections.singletonList(new SimpleGrantedAuthority("admin")),
+                RoleHierarchy.EMPTY).hasRole("manager"));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.requirement;
+
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 编译期注解授权要求索引测试
+ *
+ * @author Luter
+ */
+public class AuthorizationRequirementIndexTest {
+
+    public void list() {
+    }
+
+    @Test
+    public void loadsOnce() throws Exception {
+        final AtomicInteger loads = new AtomicInteger();
+        final AuthorizationRequirementIndex index = new AuthorizationRequirementIndex() {
+            @Override
+            protected void load() {
+                loads.incrementAndGet();
+                put(AuthorizationRequirementIndexTest.class, "list", new Class<?>[0],
+                        new AuthorizationRequirement(true, null, null, null, null, null, null, "RequiresUser"));
+            }
+        };
+        final Map<Method, AuthorizationRequirement> requirements = index.getRequirements();
+        assertEquals(1, requirements.size());
+        assertTrue(requirements.get(AuthorizationRequirementIndexTest.class.getMethod("list")).isUserRequired());
+        index.getRequirements();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void emptyResultIsNotReloaded() {
+        final AtomicInteger loads = new AtomicInteger();
+        final AuthorizationRequirementIndex index = new AuthorizationRequirementIndex() {
+            @Override
+            protected void load() {
+                loads.incrementAndGet();
+                //方法已经不存在
+                put(AuthorizationRequirementIndexTest.class, "removed", new Class<?>[0],
+                        new AuthorizationRequirement(true, null, null, null, null, null, null, "RequiresUser"));
+            }
+        };
+        assertTrue(index.getRequirements().isEmpty());
+        assertTrue(index.getRequirements().isEmpty());
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.requirement;
+
+import com.luter.heimdall.core.annotation.Mod;
+import com.luter.heimdall.core.authorization.authority.GrantedPermissions;
+import com.luter.heimdall.core.authorization.authority.SimpleGrantedAuthority;
+import com.luter.heimdall.core.exception.UnAuthorizedException;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * 注解授权要求校验测试
+ *
+ * @author Luter
+ */
+public class AuthorizationRequirementTest {
+    private final GrantedPermissions superUser = GrantedPermissions.of(Arrays.asList(
+            new SimpleGrantedAuthority("pet:*"), new SimpleGrantedAuthority("order:*"), new SimpleGrantedAuthority("user")));
+
+    @Test
+    public void wildcardSatisfiesPermissionRequirement() {
+        new AuthorizationRequirement(true, null, null, Mod.ANY, "pet:cat:list", new String[]{"order:list", "order:edit"}, Mod.ALL)
+                .checkAuthorities(superUser);
+    }
+
+    @Test(expected = UnAuthorizedException.class)
+    public void wildcardDoesNotSatisfyRoleRequirement() {
+        new AuthorizationRequirement(true, "admin", null, Mod.ANY, null, null, Mod.ANY).checkAuthorities(superUser);
+    }
+
+    @Test(expected = UnAuthorizedException.class)
+    public void wildcardDoesNotSatisfyAllRolesRequirement() {
+        new AuthorizationRequirement(true, null, new String[]{"user", "admin"}, Mod.ALL, null, null, Mod.ANY).checkAuthorities(superUser);
+    }
+
+    @Test(expected = UnAuthorizedException.class)
+    public void bareAsteriskDoesNotSatisfyPermissionRequirement() {
+        final GrantedPermissions asterisk = GrantedPermissions.of(Arrays.asList(new SimpleGrantedAuthority("*")));
+        new AuthorizationRequirement(true, null, null, Mod.ANY, "pet:cat:list", null, Mod.ANY).checkAuthorities(asterisk);
+    }
+
+    @Test
+    public void grantedRoleSatisfiesAnyRolesRequirement() {
+        new AuthorizationRequirement(true, null, new String[]{"admin", "user"}, Mod.ANY, null, null, Mod.ANY).checkAuthorities(superUser);
+    }
+}
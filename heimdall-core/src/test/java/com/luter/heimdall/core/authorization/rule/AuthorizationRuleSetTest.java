@@ -0,0 +1,116 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.rule;
+
+import com.luter.heimdall.core.utils.PathUtil;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 系统权限规则集与路由绑定测试
+ *
+ * @author Luter
+ */
+public class AuthorizationRuleSetTest {
+    private final PathUtil matcher = new PathUtil();
+
+    private static AuthorizationRuleSet compile(String... patterns) {
+        final Map<String, Collection<String>> authorities = new LinkedHashMap<>();
+        for (String pattern : patterns) {
+            authorities.put(pattern, Collections.singletonList("perm:" + pattern));
+        }
+        return AuthorizationRuleSet.compile(authorities);
+    }
+
+    private static List<String> patterns(Collection<AuthorizationRule> rules) {
+        final List<String> patterns = new ArrayList<>();
+        for (AuthorizationRule rule : rules) {
+            patterns.add(rule.getPattern());
+        }
+        return patterns;
+    }
+
+    @Test
+    public void staticRouteMatchesBoundRuleWithoutScan() {
+        final AuthorizationRuleSet ruleSet = compile("/order/**", "/a/b", "/a/c");
+        final RouteRuleBinding binding = ruleSet.bind("/a/b", matcher);
+        assertTrue(binding.isStaticRoute());
+        assertTrue(binding.covers("/a/b", matcher));
+        assertEquals("/a/b", binding.match("/a/b", matcher).getPattern());
+        assertEquals(Collections.singletonList("/a/b"), patterns(binding.getCandidates()));
+    }
+
+    @Test
+    public void trailingSlashRequestIsNotCoveredByStaticBinding() {
+        final AuthorizationRuleSet ruleSet = compile("/a/b/*");
+        final RouteRuleBinding binding = ruleSet.bind("/a/b", matcher);
+        // 处理器 /a/b 也会处理 /a/b/ ，此时规则 /a/b/* 命中，绑定结果不能使用
+        assertTrue(matcher.match("/a/b/*", "/a/b/"));
+        assertFalse(binding.covers("/a/b/", matcher));
+        assertEquals("/a/b/*", ruleSet.match("/a/b/", matcher).getPattern());
+    }
+
+    @Test
+    public void trailingAsteriskRuleStaysCandidate() {
+        final AuthorizationRuleSet ruleSet = compile("/a/b/*", "/a/b/*/c");
+        final RouteRuleBinding binding = ruleSet.bind("/a/b", matcher);
+        assertEquals(Collections.singletonList("/a/b/*"), patterns(binding.getCandidates()));
+        assertEquals(Collections.singletonList("/a/b/*/c"),
+                patterns(ruleSet.unboundRules(Collections.singletonList(binding))));
+    }
+
+    @Test
+    public void variableRouteKeepsOnlyPossibleCandidates() {
+        final AuthorizationRuleSet ruleSet = compile("/order/**", "/user/*/edit", "/user/*", "/**");
+        final RouteRuleBinding binding = ruleSet.bind("/user/{id}", matcher);
+        assertFalse(binding.isStaticRoute());
+        assertEquals(Arrays.asList("/user/*", "/**"), patterns(binding.getCandidates()));
+        assertTrue(binding.covers("/user/5", matcher));
+        assertFalse(binding.covers("/user/5/", matcher));
+        assertEquals("/user/*", binding.match("/user/5", matcher).getPattern());
+    }
+
+    @Test
+    public void bindingAgreesWithFullScanForCoveredUris() {
+        final AuthorizationRuleSet ruleSet = compile("/api/*/list", "/api/user/{id}", "/api/**/export", "/api/user/*/*");
+        final String[][] cases = {
+                {"/api/user/list", "/api/user/list"},
+                {"/api/{module}/list", "/api/order/list"},
+                {"/api/user/{id}", "/api/user/7"},
+                {"/api/user/{id}/{action}", "/api/user/7/export"},
+                {"/api/user/{id}/{action}", "/api/user/7/delete"},
+        };
+        for (String[] c : cases) {
+            final RouteRuleBinding binding = ruleSet.bind(c[0], matcher);
+            assertTrue(c[1], binding.covers(c[1], matcher));
+            assertEquals(c[0] + " -> " + c[1], ruleSet.match(c[1], matcher), binding.match(c[1], matcher));
+        }
+    }
+
+    @Test
+    public void unprotectedRouteHasNoCandidates() {
+        final AuthorizationRuleSet ruleSet = compile("/admin/**");
+        final RouteRuleBinding binding = ruleSet.bind("/public/info", matcher);
+        assertNull(binding.match("/public/info", matcher));
+        assertTrue(binding.getCandidates().isEmpty());
+    }
+}
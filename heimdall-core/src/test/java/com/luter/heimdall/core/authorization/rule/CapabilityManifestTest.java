@@ -0,0 +1,83 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.authorization.rule;
+
+import com.luter.heimdall.core.authorization.authority.GrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.MethodAndUrlGrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.SimpleGrantedAuthority;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 用户能力清单测试
+ *
+ * @author Luter
+ */
+public class CapabilityManifestTest {
+    private static AuthorizationRuleSet rules() {
+        final Map<String, Collection<String>> authorities = new LinkedHashMap<>();
+        authorities.put("/user/**", Collections.singletonList("user:view"));
+        authorities.put("/order/**", Collections.singletonList("order:view"));
+        return AuthorizationRuleSet.compile(authorities);
+    }
+
+    @Test
+    public void rulesNotGrantedByIdentifiersAreDenied() {
+        final List<GrantedAuthority> authorities = Collections.singletonList(new SimpleGrantedAuthority("user:view"));
+        final CapabilityManifest manifest = CapabilityManifest.compute(rules(), authorities);
+        assertEquals(Collections.singletonList("/user/**"), manifest.getAllowedRules());
+        assertEquals(Collections.singletonList("/order/**"), manifest.getDeniedRules());
+        assertTrue(manifest.getUndeterminedRules().isEmpty());
+    }
+
+    @Test
+    public void restfulUserRulesAreUndeterminedNotDenied() {
+        final List<GrantedAuthority> authorities = Arrays.asList(new SimpleGrantedAuthority("user:view"),
+                new MethodAndUrlGrantedAuthority("GET", "/order/1"));
+        final CapabilityManifest manifest = CapabilityManifest.compute(rules(), authorities);
+        assertEquals(Collections.singletonList("/user/**"), manifest.getAllowedRules());
+        assertTrue(manifest.getDeniedRules().isEmpty());
+        assertEquals(Collections.singletonList("/order/**"), manifest.getUndeterminedRules());
+        assertEquals(Collections.singletonList("GET:/order/1"), manifest.getRestfulAuthorities());
+    }
+
+    @Test
+    public void wildcardGrantsDoNotSatisfyRoleRules() {
+        final Map<String, Collection<String>> authorities = new LinkedHashMap<>();
+        authorities.put("/pet/cat", Arrays.asList("admin", "user", "guest"));
+        authorities.put("/pet/dog", Collections.singletonList("pet:dog:list"));
+        final AuthorizationRuleSet ruleSet = AuthorizationRuleSet.compile(authorities);
+        final List<GrantedAuthority> granted = Arrays.asList(new SimpleGrantedAuthority("*"), new SimpleGrantedAuthority("pet:*"));
+        final CapabilityManifest manifest = CapabilityManifest.compute(ruleSet, granted);
+        assertEquals(Collections.singletonList("/pet/dog"), manifest.getAllowedRules());
+        assertEquals(Collections.singletonList("/pet/cat"), manifest.getDeniedRules());
+    }
+
+    @Test
+    public void etagDependsOnContent() {
+        final List<GrantedAuthority> simple = Collections.singletonList(new SimpleGrantedAuthority("user:view"));
+        assertEquals(CapabilityManifest.compute(rules(), simple).getEtag(), CapabilityManifest.compute(rules(), simple).getEtag());
+        final List<GrantedAuthority> restful = Arrays.asList(new SimpleGrantedAuthority("user:view"),
+                new MethodAndUrlGrantedAuthority("GET", "/order/1"));
+        assertNotEquals(CapabilityManifest.compute(rules(), simple).getEtag(), CapabilityManifest.compute(rules(), restful).getEtag());
+    }
+}
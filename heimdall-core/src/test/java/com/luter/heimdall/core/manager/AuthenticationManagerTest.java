@@ -0,0 +1,132 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.manager;
+
+import com.luter.heimdall.core.cache.MapCache;
+import com.luter.heimdall.core.config.Config;
+import com.luter.heimdall.core.config.ConfigManager;
+import com.luter.heimdall.core.details.DefaultSimpleUserDetails;
+import com.luter.heimdall.core.details.UserDetails;
+import com.luter.heimdall.core.exception.AccountException;
+import com.luter.heimdall.core.session.SimpleSession;
+import com.luter.heimdall.core.session.dao.impl.CachedSessionDaoImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 认证管理器登录测试: 比较并创建 Session ，冲突时重试
+ *
+ * @author Luter
+ */
+public class AuthenticationManagerTest {
+    /**
+     * 前 conflicts 次比较并创建返回 null ，模拟其他节点同时登录
+     */
+    private final AtomicInteger conflicts = new AtomicInteger();
+    private final AtomicInteger attempts = new AtomicInteger();
+    private final List<String> expectedSessionIds = Collections.synchronizedList(new ArrayList<>());
+    private CachedSessionDaoImpl sessionDAO;
+    private AuthenticationManager manager;
+
+    @Before
+    public void setUp() {
+        ConfigManager.setConfig(new Config());
+        sessionDAO = new CachedSessionDaoImpl(new MapCache<>(new ConcurrentHashMap<>()), new MapCache<>(new ConcurrentHashMap<>()), null) {
+            @Override
+            public SimpleSession create(UserDetails userDetails, String expectedSessionId) {
+                attempts.incrementAndGet();
+                expectedSessionIds.add(expectedSessionId);
+                if (conflicts.getAndDecrement() > 0) {
+                    return null;
+                }
+                return super.create(userDetails, expectedSessionId);
+            }
+        };
+        manager = new AuthenticationManager(sessionDAO);
+    }
+
+    private static UserDetails user(String principal) {
+        final DefaultSimpleUserDetails details = new DefaultSimpleUserDetails();
+        details.setPrincipal(principal);
+        details.setEnabled(true);
+        return details;
+    }
+
+    private long sessionsOf(String principal) {
+        return sessionDAO.getActiveSessions().stream().filter(s -> principal.equals(s.getDetails().getPrincipal())).count();
+    }
+
+    @Test
+    public void loginRetriesAfterConflict() {
+        conflicts.set(2);
+        final SimpleSession session = manager.login(user("alice"));
+        assertNotNull(session);
+        assertEquals(3, attempts.get());
+        assertEquals(1, sessionsOf("alice"));
+    }
+
+    @Test
+    public void loginFailsWhenConflictsPersist() {
+        conflicts.set(Integer.MAX_VALUE);
+        try {
+            manager.login(user("alice"));
+            fail("expected AccountException");
+        } catch (AccountException e) {
+            assertEquals(3, attempts.get());
+        }
+        assertEquals(0, sessionsOf("alice"));
+    }
+
+    @Test
+    public void reloginKicksPreviousSession() {
+        final SimpleSession first = manager.login(user("alice"));
+        final SimpleSession second = manager.login(user("alice"));
+        assertNotEquals(first.getId(), second.getId());
+        assertNull(sessionDAO.readSession(first.getId()));
+        assertEquals(1, sessionsOf("alice"));
+        assertEquals(Arrays.asList(null, null), expectedSessionIds);
+    }
+
+    @Test
+    public void concurrentLoginsLeaveOneSession() throws Exception {
+        final int threads = 8;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<SimpleSession>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return manager.login(user("alice"));
+            }));
+        }
+        start.countDown();
+        for (Future<SimpleSession> future : futures) {
+            assertNotNull(future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(threads, attempts.get());
+        assertEquals(1, sessionsOf("alice"));
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.manager;
+
+import com.luter.heimdall.core.authorization.authority.GrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.MethodAndUrlGrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.SimpleGrantedAuthority;
+import com.luter.heimdall.core.authorization.rule.AuthorizationRule;
+import com.luter.heimdall.core.authorization.rule.BatchAuthorizationResult;
+import com.luter.heimdall.core.authorization.rule.RouteQuery;
+import com.luter.heimdall.core.authorization.service.AuthorizationMetaDataService;
+import com.luter.heimdall.core.cache.MapCache;
+import com.luter.heimdall.core.config.Config;
+import com.luter.heimdall.core.config.ConfigManager;
+import com.luter.heimdall.core.session.SimpleSession;
+import com.luter.heimdall.core.session.dao.impl.CachedSessionDaoImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 授权管理器测试
+ *
+ * @author Luter
+ */
+public class AuthorizationManagerTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Map<String, Collection<String>> sysAuthorities = new LinkedHashMap<>();
+    private final Map<String, Collection<String>> roleHierarchy = new LinkedHashMap<>();
+    private List<? extends GrantedAuthority> userAuthorities = Collections.emptyList();
+    private SimpleSession currentUser;
+
+    @Before
+    public void setUp() {
+        final Config config = new Config();
+        config.getAuthority().setSysCachedEnabled(false);
+        config.getAuthority().setUserCachedEnabled(false);
+        config.getAuthority().setDecisionCacheEnabled(true);
+        ConfigManager.setConfig(config);
+        sysAuthorities.put("/user/**", Collections.singletonList("user:view"));
+        currentUser = new SimpleSession("session-1", 60000);
+    }
+
+    private AuthorizationManager manager() {
+        final AuthorizationMetaDataService service = new AuthorizationMetaDataService() {
+            @Override
+            public Map<String, Collection<String>> loadSysAuthorities() {
+                return sysAuthorities;
+            }
+
+            @Override
+            public List<? extends GrantedAuthority> loadUserAuthorities(SimpleSession session) {
+                loads.incrementAndGet();
+                return userAuthorities;
+            }
+
+            @Override
+            public Map<String, ? extends Collection<String>> loadRoleHierarchy() {
+                return roleHierarchy;
+            }
+        };
+        final AuthenticationManager authenticationManager = new AuthenticationManager(
+                new CachedSessionDaoImpl(new MapCache<>(new HashMap<>()), new MapCache<>(new HashMap<>()), null)) {
+            @Override
+            public SimpleSession getCurrentUser() {
+                return currentUser;
+            }
+
+            @Override
+            public SimpleSession getCurrentUser(boolean isThrewEx) {
+                return currentUser;
+            }
+        };
+        return new AuthorizationManager(service, null, authenticationManager);
+    }
+
+    private static boolean isAuthorized(AuthorizationManager manager, String method, String url) {
+        final AuthorizationRule rule = manager.getRuleSet().match(url, manager.getPathMatcher());
+        return manager.isAuthorized(rule, method, url, false);
+    }
+
+    @Test
+    public void unprotectedRouteDoesNotLoadUserAuthorities() {
+        final AuthorizationManager manager = manager();
+        assertTrue(isAuthorized(manager, "GET", "/public/index"));
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    public void cachedDecisionIsSharedAcrossPathVariables() {
+        userAuthorities = Collections.singletonList(new SimpleGrantedAuthority("user:view"));
+        final AuthorizationManager manager = manager();
+        assertTrue(isAuthorized(manager, "GET", "/user/1"));
+        assertTrue(isAuthorized(manager, "DELETE", "/user/2"));
+        userAuthorities = Collections.singletonList(new SimpleGrantedAuthority("order:view"));
+        assertFalse(isAuthorized(manager, "GET", "/user/1"));
+    }
+
+    @Test
+    public void cachedRestfulDecisionDependsOnRequest() {
+        userAuthorities = Collections.singletonList(new MethodAndUrlGrantedAuthority("GET", "/user/1"));
+        final AuthorizationManager manager = manager();
+        assertTrue(isAuthorized(manager, "GET", "/user/1"));
+        assertFalse(isAuthorized(manager, "GET", "/user/2"));
+        assertFalse(isAuthorized(manager, "POST", "/user/1"));
+        assertTrue(isAuthorized(manager, "GET", "/user/1"));
+    }
+
+    @Test
+    public void wildcardGrantsDoNotSatisfyRoleRules() {
+        sysAuthorities.put("/pet/cat", Arrays.asList("admin", "user", "guest"));
+        roleHierarchy.put("manager", Collections.singletonList("x:*"));
+        userAuthorities = Arrays.asList(new SimpleGrantedAuthority("*"), new SimpleGrantedAuthority("pet:*"),
+                new SimpleGrantedAuthority("manager"));
+        final AuthorizationManager manager = manager();
+        assertFalse(isAuthorized(manager, "GET", "/pet/cat"));
+        userAuthorities = Collections.singletonList(new SimpleGrantedAuthority("guest"));
+        assertTrue(isAuthorized(manager, "GET", "/pet/cat"));
+    }
+
+    @Test
+    public void batchWithoutAuthoritiesDeniesProtectedResources() {
+        ConfigManager.getConfig().getAuthority().setUserCachedEnabled(true);
+        final AuthorizationManager manager = manager();
+        final BatchAuthorizationResult result = manager.isAuthorized(
+                Arrays.asList(RouteQuery.of("GET", "/user/1"), RouteQuery.of("GET", "/public/index")),
+                Collections.singletonList("user:view"));
+        assertFalse(result.isRouteAllowed(0));
+        assertTrue(result.isRouteAllowed(1));
+        assertFalse(result.hasPermission(0));
+    }
+
+    @Test
+    public void roleHierarchyIsKeptWithoutRules() {
+        sysAuthorities.clear();
+        roleHierarchy.put("admin", Collections.singletonList("manager"));
+        userAuthorities = Collections.singletonList(new SimpleGrantedAuthority("admin"));
+        final AuthorizationManager manager = manager();
+        assertTrue(manager.getRuleSet().getRules().isEmpty());
+        assertFalse(manager.getRuleSet().getRoleHierarchy().isEmpty());
+        assertTrue(manager.getCapabilityManifest().getPermissions().contains("manager"));
+    }
+
+    @Test
+    public void shutdownStopsPrefetcher() {
+        ConfigManager.getConfig().getAuthority().setUserCachedEnabled(true);
+        ConfigManager.getConfig().getAuthority().setPrefetchEnabled(true);
+        final AuthorizationManager manager = manager();
+        assertNotNull(manager.getAuthenticationManager().getAuthoritiesPrefetcher());
+        manager.shutdown();
+        assertNull(manager.getAuthenticationManager().getAuthoritiesPrefetcher());
+        manager.shutdown();
+    }
+}
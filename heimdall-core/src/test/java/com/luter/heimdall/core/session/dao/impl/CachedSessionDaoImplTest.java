@@ -0,0 +1,118 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.session.dao.impl;
+
+import com.luter.heimdall.core.cache.MapCache;
+import com.luter.heimdall.core.config.Config;
+import com.luter.heimdall.core.config.ConfigManager;
+import com.luter.heimdall.core.details.DefaultSimpleUserDetails;
+import com.luter.heimdall.core.session.Page;
+import com.luter.heimdall.core.session.SessionSummary;
+import com.luter.heimdall.core.session.SimpleSession;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * 内存 SessionDAO 测试: 在线用户查询分页，按代失效
+ *
+ * @author Luter
+ */
+public class CachedSessionDaoImplTest {
+    private CachedSessionDaoImpl sessionDAO;
+
+    @Before
+    public void setUp() {
+        ConfigManager.setConfig(new Config());
+        sessionDAO = new CachedSessionDaoImpl(new MapCache<>(new ConcurrentHashMap<>()), new MapCache<>(new ConcurrentHashMap<>()), null);
+    }
+
+    private SimpleSession login(String principal) {
+        final DefaultSimpleUserDetails details = new DefaultSimpleUserDetails();
+        details.setPrincipal(principal);
+        details.setEnabled(true);
+        return sessionDAO.create(details);
+    }
+
+    private static List<String> principals(Page<SessionSummary> page) {
+        return page.getRecords().stream().map(SessionSummary::getPrincipal).collect(Collectors.toList());
+    }
+
+    @Test
+    public void searchCountsWholeRange() {
+        for (String principal : new String[]{"a1", "a2", "a3", "a4", "a5", "b1"}) {
+            login(principal);
+        }
+        final Page<SessionSummary> page = sessionDAO.findSessionsByPrincipalPrefix("a", 2, 2);
+        assertEquals(Arrays.asList("a3", "a4"), principals(page));
+        assertEquals(5L, page.getTotalCount().longValue());
+    }
+
+    @Test
+    public void searchWithoutCountStopsAfterPage() {
+        ConfigManager.getConfig().getSession().setSearchCountEnabled(false);
+        for (String principal : new String[]{"a1", "a2", "a3", "a4", "a5", "b1"}) {
+            login(principal);
+        }
+        final Page<SessionSummary> second = sessionDAO.findSessionsByPrincipalPrefix("a", 2, 2);
+        assertEquals(Arrays.asList("a3", "a4"), principals(second));
+        assertEquals(5L, second.getTotalCount().longValue());
+        final Page<SessionSummary> third = sessionDAO.findSessionsByPrincipalPrefix("a", 3, 2);
+        assertEquals(Collections.singletonList("a5"), principals(third));
+        assertEquals(5L, third.getTotalCount().longValue());
+        assertEquals(2L, sessionDAO.findSessionsByPrincipalPrefix("a", 1, 1).getTotalCount().longValue());
+    }
+
+    @Test
+    public void principalGenerationIsDroppedWithLastSession() {
+        ConfigManager.getConfig().getSession().setGenerationEnabled(true);
+        final SimpleSession first = login("alice");
+        assertEquals(1L, sessionDAO.invalidatePrincipalSessions("alice"));
+        assertNull(sessionDAO.readSession(first.getId()));
+        //按代失效的 Session 还在，用户代数保留
+        assertEquals(2L, sessionDAO.invalidatePrincipalSessions("alice"));
+        sessionDAO.deleteSessions(Collections.singletonList(first));
+        assertEquals(1L, sessionDAO.invalidatePrincipalSessions("alice"));
+        final SimpleSession second = login("alice");
+        assertNotNull(sessionDAO.readSession(second.getId()));
+    }
+
+    @Test
+    public void principalGenerationWithoutSessionsIsPruned() {
+        ConfigManager.getConfig().getSession().setGenerationEnabled(true);
+        assertEquals(1L, sessionDAO.invalidatePrincipalSessions("bob"));
+        sessionDAO.validateExpiredSessions();
+        assertEquals(1L, sessionDAO.invalidatePrincipalSessions("bob"));
+    }
+
+    @Test
+    public void readSessionsSkipsSupersededSessions() {
+        ConfigManager.getConfig().getSession().setGenerationEnabled(true);
+        final SimpleSession alice = login("alice");
+        final SimpleSession bob = login("bob");
+        sessionDAO.invalidatePrincipalSessions("alice");
+        final List<SimpleSession> sessions = sessionDAO.readSessions(Arrays.asList(alice.getId(), bob.getId()));
+        assertEquals(Collections.singletonList(bob.getId()), sessions.stream().map(SimpleSession::getId).collect(Collectors.toList()));
+    }
+}
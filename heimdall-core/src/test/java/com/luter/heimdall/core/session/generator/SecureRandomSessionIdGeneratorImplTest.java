@@ -0,0 +1,88 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.session.generator;
+
+import com.luter.heimdall.core.exception.HeimdallException;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * SecureRandom SessionID 生成器测试
+ *
+ * @author Luter
+ */
+public class SecureRandomSessionIdGeneratorImplTest {
+
+    @Test
+    public void generatesUrlSafeIds() {
+        final SecureRandomSessionIdGeneratorImpl generator = new SecureRandomSessionIdGeneratorImpl();
+        for (int i = 0; i < 1000; i++) {
+            final String id = generator.generate();
+            assertEquals(22, id.length());
+            assertTrue(id, id.matches("[A-Za-z0-9_-]{22}"));
+            assertNull(SecureRandomSessionIdGeneratorImpl.getNodeTag(id));
+        }
+        assertEquals(43, new SecureRandomSessionIdGeneratorImpl(null, 32).generate().length());
+    }
+
+    @Test
+    public void prependsNodeTag() {
+        final String id = new SecureRandomSessionIdGeneratorImpl("node-1").generate();
+        assertTrue(id.startsWith("node-1."));
+        assertEquals(7 + 22, id.length());
+        assertEquals("node-1", SecureRandomSessionIdGeneratorImpl.getNodeTag(id));
+    }
+
+    @Test(expected = HeimdallException.class)
+    public void rejectsInvalidNodeTag() {
+        new SecureRandomSessionIdGeneratorImpl("node.1");
+    }
+
+    @Test(expected = HeimdallException.class)
+    public void rejectsShortEntropy() {
+        new SecureRandomSessionIdGeneratorImpl(null, 8);
+    }
+
+    @Test
+    public void idsAreUniqueAcrossThreads() throws Exception {
+        final SecureRandomSessionIdGeneratorImpl generator = new SecureRandomSessionIdGeneratorImpl();
+        final int threads = 4, perThread = 50000;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                final List<String> ids = new ArrayList<>(perThread);
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(generator.generate());
+                }
+                return ids;
+            }));
+        }
+        final Set<String> all = new HashSet<>();
+        for (Future<List<String>> future : futures) {
+            all.addAll(future.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        assertEquals(threads * perThread, all.size());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.core.session.generator;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SessionID 生成器吞吐量对比，不属于单元测试，手动运行:
+ * <p>
+ * java -cp target/test-classes:target/classes:... com.luter.heimdall.core.session.generator.SessionIdGeneratorBenchmark [线程数] [秒数]
+ * <p>
+ * 每个生成器先预热，再在指定线程数下运行固定时长，输出每秒生成的 SessionId 数量
+ *
+ * @author Luter
+ */
+public final class SessionIdGeneratorBenchmark {
+
+    private SessionIdGeneratorBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        final SessionIdGenerator[] generators = {new UUIDSessionIdGeneratorImpl(), new SecureRandomSessionIdGeneratorImpl()};
+        for (int n : new int[]{1, threads}) {
+            for (SessionIdGenerator generator : generators) {
+                run(generator, n, 1);
+                final double rate = run(generator, n, seconds);
+                System.out.printf("%-40s threads=%-3d %,.0f ids/s%n", generator.getClass().getSimpleName(), n, rate);
+            }
+        }
+    }
+
+    /**
+     * 在 n 个线程中持续生成 SessionId
+     *
+     * @param generator the generator
+     * @param n         线程数
+     * @param seconds   运行时长
+     * @return 每秒生成的数量
+     */
+    private static double run(SessionIdGenerator generator, int n, int seconds) throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(n);
+        final LongAdder count = new LongAdder();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            executor.execute(() -> {
+                long local = 0, sink = 0;
+                while ((local & 1023) != 0 || System.nanoTime() < deadline) {
+                    sink += generator.generate().length();
+                    local++;
+                }
+                count.add(local);
+                if (sink == 0) {
+                    System.out.println();
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        return count.sum() * 1e9 / (System.nanoTime() - start);
+    }
+}
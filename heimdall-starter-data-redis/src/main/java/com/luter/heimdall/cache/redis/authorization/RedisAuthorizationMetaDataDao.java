@@ -18,6 +18,7 @@
 
 package com.luter.heimdall.cache.redis.authorization;
 
+import com.luter.heimdall.cache.redis.replica.ReadYourWritesWindow;
 import com.luter.heimdall.core.authorization.dao.AuthorizationMetaDataCacheDao;
 import com.luter.heimdall.core.config.ConfigManager;
 import com.luter.heimdall.core.utils.StrUtils;
@@ -31,6 +32,8 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * 基于 redis 的系统权限缓存Dao实现
+ * <p>
+ * 可以设置只读副本，读取系统权限时路由到副本，本节点写入后的读己之写窗口内以及副本上读不到时读主节点
  *
  * @author luter
  */
@@ -49,6 +52,14 @@ public class RedisAuthorizationMetaDataDao implements AuthorizationMetaDataCache
      * 多久过期
      */
     private long expire;
+    /**
+     * 只读副本上的系统权限缓存，为 null 时读主节点
+     */
+    private RedisTemplate<String, Collection<String>> replicaTemplate;
+    /**
+     * 读己之写窗口
+     */
+    private ReadYourWritesWindow readYourWrites = new ReadYourWritesWindow();
 
     /**
      * 授权信息 Redis 缓存实现
@@ -65,13 +76,21 @@ public class RedisAuthorizationMetaDataDao implements AuthorizationMetaDataCache
     @Override
     public void clearSysAuthorities() {
         redisTemplate.delete(getCacheKey());
+        readYourWrites.markAllWritten();
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public Map<String, Collection<String>> getSysAuthorities() {
         Map<String, Collection<String>> authorityMap = new LinkedHashMap<>();
-        final Map<Object, Object> entries = redisTemplate.opsForHash().entries(getCacheKey());
+        Map<Object, Object> entries = null;
+        if (null != replicaTemplate && !readYourWrites.isRecentlyWritten(getCacheKey())) {
+            entries = replicaTemplate.opsForHash().entries(getCacheKey());
+        }
+        //副本上没有，读主节点
+        if (null == entries || entries.isEmpty()) {
+            entries = redisTemplate.opsForHash().entries(getCacheKey());
+        }
         if (!entries.isEmpty()) {
             entries.forEach((key, grantedAuthority) -> authorityMap.put(key.toString(), (Collection<String>) grantedAuthority));
         }
@@ -84,6 +103,7 @@ public class RedisAuthorizationMetaDataDao implements AuthorizationMetaDataCache
         log.debug("设置缓存系统权限:\n{}", authorities);
         redisTemplate.opsForHash().putAll(getCacheKey(), authorities);
         redisTemplate.expire(getCacheKey(), getExpire(), TimeUnit.HOURS);
+        readYourWrites.markAllWritten();
     }
 
     @Override
@@ -93,6 +113,24 @@ public class RedisAuthorizationMetaDataDao implements AuthorizationMetaDataCache
     }
 
 
+    /**
+     * 设置只读副本，使用与主节点相同的序列化方式
+     *
+     * @param replicaTemplate 副本上的系统权限缓存
+     */
+    public void setReadReplica(RedisTemplate<String, Collection<String>> replicaTemplate) {
+        this.replicaTemplate = replicaTemplate;
+    }
+
+    /**
+     * 设置读己之写窗口时长，默认 {@link ReadYourWritesWindow#DEFAULT_WINDOW_MILLIS}
+     *
+     * @param windowMillis 窗口时长，单位:毫秒
+     */
+    public void setReadYourWritesWindow(long windowMillis) {
+        this.readYourWrites = new ReadYourWritesWindow(windowMillis);
+    }
+
     public long getExpire() {
         return expire;
     }
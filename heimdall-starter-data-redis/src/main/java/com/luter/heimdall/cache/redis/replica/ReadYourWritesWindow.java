@@ -0,0 +1,140 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.cache.redis.replica;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读己之写窗口
+ * <p>
+ * 读操作路由到只读副本时，副本的数据有复制延迟，
+ * 本节点刚刚写过(创建、修改、删除)的 key 在窗口期内仍然从主节点读取，保证写完立即读到自己写入的数据。
+ * <p>
+ * 窗口只记录本节点的写入，其他节点的写入在复制延迟内可能读到旧数据。
+ *
+ * @author Luter
+ */
+public class ReadYourWritesWindow {
+    /**
+     * 默认窗口时长，单位:毫秒
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 2000;
+    /**
+     * 窗口内最多记录的 key 数量，超过后最早的提前移出窗口
+     */
+    private static final long MAX_TRACKED_KEYS = 100000;
+    /**
+     * 窗口时长，单位:毫秒
+     */
+    private final long windowMillis;
+    /**
+     * 窗口内写过的 key
+     */
+    private final Cache<String, Boolean> written;
+    /**
+     * 最近一次整体写入的时间(批量清除等无法逐个记录的写入)，单位:纳秒
+     */
+    private volatile long allWrittenAt;
+    /**
+     * 是否有过整体写入
+     */
+    private volatile boolean allWritten;
+
+    /**
+     * 默认窗口时长
+     */
+    public ReadYourWritesWindow() {
+        this(DEFAULT_WINDOW_MILLIS);
+    }
+
+    /**
+     * 指定窗口时长
+     *
+     * @param windowMillis 窗口时长，单位:毫秒
+     */
+    public ReadYourWritesWindow(long windowMillis) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("windowMillis 不能小于 0");
+        }
+        this.windowMillis = windowMillis;
+        this.written = CacheBuilder.newBuilder().maximumSize(MAX_TRACKED_KEYS)
+                .expireAfterWrite(windowMillis, TimeUnit.MILLISECONDS).build();
+    }
+
+    /**
+     * 记录写入
+     *
+     * @param key the key
+     */
+    public void markWritten(String key) {
+        if (windowMillis > 0 && null != key) {
+            written.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 批量记录写入
+     *
+     * @param keys the keys
+     */
+    public void markWritten(Collection<String> keys) {
+        for (String key : keys) {
+            markWritten(key);
+        }
+    }
+
+    /**
+     * 记录一次整体写入，窗口期内所有 key 都从主节点读取
+     */
+    public void markAllWritten() {
+        if (windowMillis > 0) {
+            allWrittenAt = System.nanoTime();
+            allWritten = true;
+        }
+    }
+
+    /**
+     * 是否在窗口期内写过
+     *
+     * @param key the key
+     * @return the boolean
+     */
+    public boolean isRecentlyWritten(String key) {
+        if (windowMillis <= 0) {
+            return false;
+        }
+        if (allWritten && System.nanoTime() - allWrittenAt < TimeUnit.MILLISECONDS.toNanos(windowMillis)) {
+            return true;
+        }
+        return null != key && null != written.getIfPresent(key);
+    }
+
+    /**
+     * Gets window millis.
+     *
+     * @return the window millis
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+}
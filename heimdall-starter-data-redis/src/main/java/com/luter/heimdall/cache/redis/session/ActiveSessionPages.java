@@ -0,0 +1,99 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.cache.redis.session;
+
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 活动 Session 分页计算
+ * <p>
+ * 页码从 1 开始，排名与 ZRANGE 一致，从 0 开始，结束排名包含在内。
+ * 分片时每个分片取出前 end + 1 条，按 Score 、SessionId 合并排序后再截取本页。
+ *
+ * @author Luter
+ */
+final class ActiveSessionPages {
+    /**
+     * 活动 Session 的排序: 与 ZSet 一致，先按 Score ，再按 SessionId
+     */
+    static final Comparator<ZSetOperations.TypedTuple<String>> ORDER =
+            Comparator.comparing((ZSetOperations.TypedTuple<String> t) -> null == t.getScore() ? 0D : t.getScore())
+                    .thenComparing(t -> null == t.getValue() ? "" : t.getValue());
+
+    private ActiveSessionPages() {
+    }
+
+    /**
+     * 分页起始排名
+     *
+     * @param page 页码，从 1 开始
+     * @param size 每页数量
+     * @return the start
+     */
+    static long start(int page, int size) {
+        final long start = (long) (page - 1) * (long) size;
+        return start < 0 ? 0 : start;
+    }
+
+    /**
+     * 分页结束排名(包含)，一页正好 size 条
+     *
+     * @param page 页码，从 1 开始
+     * @param size 每页数量，小于 1 时按 1 计算，避免结束排名为 -1 时 ZRANGE 返回全部
+     * @return the end
+     */
+    static long end(int page, int size) {
+        final int pageSize = Math.max(size, 1);
+        return start(page, pageSize) + pageSize - 1;
+    }
+
+    /**
+     * 合并各分片 ZRANGE WITHSCORES 的结果，排序后截取 [start , end] ，end 为 -1 时截取到最后
+     *
+     * @param shards 各分片的管道结果
+     * @param start  起始排名
+     * @param end    结束排名(包含)
+     * @return the list
+     */
+    static List<String> merge(List<?> shards, long start, long end) {
+        final List<ZSetOperations.TypedTuple<String>> merged = new ArrayList<>();
+        for (Object shard : shards) {
+            if (shard instanceof Collection) {
+                for (Object tuple : (Collection<?>) shard) {
+                    if (tuple instanceof ZSetOperations.TypedTuple) {
+                        @SuppressWarnings("unchecked") final ZSetOperations.TypedTuple<String> typed = (ZSetOperations.TypedTuple<String>) tuple;
+                        merged.add(typed);
+                    }
+                }
+            }
+        }
+        merged.sort(ORDER);
+        final int to = end < 0 ? merged.size() : (int) Math.min(end + 1, merged.size());
+        final List<String> sessionIds = new ArrayList<>();
+        for (int i = (int) Math.max(start, 0); i < to; i++) {
+            sessionIds.add(merged.get(i).getValue());
+        }
+        return sessionIds;
+    }
+}
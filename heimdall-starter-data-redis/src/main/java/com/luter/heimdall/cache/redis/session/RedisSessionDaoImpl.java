@@ -19,28 +19,44 @@
 package com.luter.heimdall.cache.redis.session;
 
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.luter.heimdall.cache.redis.replica.ReadYourWritesWindow;
 import com.luter.heimdall.core.authorization.authority.GrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.GrantedAuthorityList;
+import com.luter.heimdall.core.authorization.authority.SimpleGrantedAuthority;
 import com.luter.heimdall.core.config.Config;
 import com.luter.heimdall.core.config.ConfigManager;
 import com.luter.heimdall.core.config.property.AuthorityProperty;
+import com.luter.heimdall.core.config.property.SessionProperty;
 import com.luter.heimdall.core.cookie.CookieService;
 import com.luter.heimdall.core.details.UserDetails;
 import com.luter.heimdall.core.exception.*;
 import com.luter.heimdall.core.servlet.ServletHolder;
 import com.luter.heimdall.core.session.Page;
+import com.luter.heimdall.core.session.SessionSummary;
 import com.luter.heimdall.core.session.SimpleSession;
 import com.luter.heimdall.core.session.dao.SessionDAO;
 import com.luter.heimdall.core.session.generator.SessionIdGenerator;
-import com.luter.heimdall.core.session.generator.UUIDSessionIdGeneratorImpl;
+import com.luter.heimdall.core.session.generator.SecureRandomSessionIdGeneratorImpl;
 import com.luter.heimdall.core.session.listener.AbstractSessionEvent;
 import com.luter.heimdall.core.utils.StrUtils;
 import com.luter.heimdall.core.utils.WebUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -49,11 +65,194 @@ import java.util.stream.Collectors;
 
 /**
  * The type Redis session dao.
+ * <p>
+ * 缓存用户权限时同时维护 角色 -> SessionId 、principal -> SessionId 反向索引(Redis Set)，
+ * 用于按角色、按用户批量清除缓存的用户权限
+ * <p>
+ * 用户权限按内容摘要共享存储: 内容相同的权限只保存一份，会话只保存摘要，
+ * 本地再按摘要缓存反序列化后的共享实例，相同权限的用户不再重复反序列化。
+ * <p>
+ * 每个会话的权限摘要单独一个 key ，过期时间跟随会话(不超过用户权限缓存时长)，会话续签时一起续期，
+ * 不再把所有用户放在一个 Hash 里反复推后整体过期时间。
+ * <p>
+ * 创建、删除 Session 时，Session 数据和在线用户索引在一个 Lua 脚本中写入或删除，一次往返，执行期间不会穿插其他命令。
+ * 注意 Lua 脚本没有回滚，脚本中途出错时已经执行的命令仍然生效，残留的索引由过期清理任务清除。
+ * 批量删除(批量踢出)时每批 Session 的删除脚本在一个管道中发送。
+ * <p>
+ * 登录时对活动用户 Hash 中 principal -> SessionId 映射做比较并设置，多个节点同时为同一个用户登录时只有一个成功。
+ * <p>
+ * 活动 Session ZSet 和活动用户 Hash 可以按 SessionId 、principal 分片，计数、分页和清理在各分片上执行后合并。
+ * <p>
+ * 开启集群模式(session.clusterMode)后可以运行在 Redis Cluster 上: Session 、会话的权限摘要、会话 -> 角色 索引以 {SessionId} 作为 hash tag ，
+ * 落在同一个 slot ，在一个脚本中删除; 其他索引 key 各自独立，按单 key 命令管道发送，不再使用跨 slot 的脚本。
+ * 集群模式下管道需要 Lettuce 连接。Redis Cluster 的 keyspace 事件只由 key 所在的节点发出，事件监听只订阅了一个节点，
+ * 其他节点上过期的 Session 不会触发 {@link #clearOnlineUserCache(String)} ，在线用户索引依赖过期 Session 定期清理任务清理。
+ * <p>
+ * 每个 Session 同时保存一份摘要(不含 UserDetails)，与活动 Session ZSet 一样分片，在线用户列表只读取摘要。
+ * <p>
+ * 在线用户查询使用三个 ZSet 索引，随 Session 创建、删除一起维护: principal 、host 索引的 Score 都为 0 ，
+ * 成员为 值 + \0 + SessionId ，按 ZRANGEBYLEX 前缀查找; 登录时间索引以毫秒时间戳作为 Score 。查找和计数都是 O(log N) ，再读取一页摘要。
+ * <p>
+ * Session 属性单独保存在每个 Session 一个的 Hash 中，一个属性一个字段，按名称单独读写，随 Session 续期、删除。
+ * <p>
+ * 开启按代失效后，全局代数和用户代数保存在一个 Hash 中，创建 Session 时从主节点读取记录，读取 Session 时与本地短时缓存的代数比较，
+ * 失效的 Session 视为不存在，由 Redis 过期自然清除。用户的会话全部删除后用户代数一并删除，用户代数按时间增加，删除后不会回退。
+ * <p>
+ * 可以设置只读副本(session.readReplicaHost)，读取 Session 、Session 属性和权限集合时路由到副本，本节点刚写过的会话在读己之写窗口内仍然读主节点，
+ * 副本上读不到时也回到主节点读取。Session 是否存在和会话的权限引用总是在主节点确认。
  *
  * @author Luter
  */
 @Slf4j
 public class RedisSessionDaoImpl extends AbstractSessionEvent implements SessionDAO {
+    /**
+     * 本地缓存的共享权限列表最大数量，即不同权限集合的数量
+     */
+    private static final long AUTHORITY_SET_CACHE_SIZE = 1024;
+    /**
+     * 批量读取、删除 Session 时每个管道的 Session 数量
+     */
+    private static final int BATCH_SIZE = 500;
+    /**
+     * 代数 Hash 中全局代数的字段
+     */
+    private static final String GLOBAL_GENERATION_FIELD = "global";
+    /**
+     * 代数 Hash 中用户代数字段的前缀
+     */
+    private static final String PRINCIPAL_GENERATION_PREFIX = "principal:";
+    /**
+     * 本地缓存的代数最大数量
+     */
+    private static final long GENERATION_CACHE_SIZE = 10000;
+    /**
+     * 会话 -> 角色 索引比会话多保留的时长，单位:秒。会话过期事件到达时仍然能据此清除角色反向索引
+     */
+    private static final long SESSION_ROLES_GRACE_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    /**
+     * Session 摘要中最后访问时间的精度，单位:毫秒。最后访问时间跨过一个区间或者续签时才重写摘要
+     */
+    static final long SUMMARY_REFRESH_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    /**
+     * 创建 Session 脚本
+     * <p>
+     * KEYS: Session key，活动 Session ZSet，活动用户 Hash，principal 反向索引，Session 摘要 Hash，principal 查询索引，host 查询索引，登录时间索引
+     * <p>
+     * ARGV: Session 数据，有效期(秒)，Score，SessionId，principal，Session 摘要，principal 索引成员，host 索引成员(没有 host 时为空)，登录时间，
+     * 是否比较(1/0)，期望的 principal -> SessionId 映射(没有时为空)
+     * <p>
+     * 需要比较且映射已经被修改时什么也不写入，返回 0
+     */
+    private static final RedisScript<Long> CREATE_SESSION_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[10] == '1' then\n" +
+                    "  local current = redis.call('HGET', KEYS[3], ARGV[5])\n" +
+                    "  if (current or '') ~= ARGV[11] then return 0 end\n" +
+                    "end\n" +
+                    "redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[2])\n" +
+                    "redis.call('ZADD', KEYS[2], ARGV[3], ARGV[4])\n" +
+                    "redis.call('HSET', KEYS[3], ARGV[5], ARGV[4])\n" +
+                    "redis.call('SADD', KEYS[4], ARGV[4])\n" +
+                    "redis.call('EXPIRE', KEYS[4], ARGV[2])\n" +
+                    "redis.call('HSET', KEYS[5], ARGV[4], ARGV[6])\n" +
+                    "redis.call('ZADD', KEYS[6], 0, ARGV[7])\n" +
+                    "if ARGV[8] ~= '' then redis.call('ZADD', KEYS[7], 0, ARGV[8]) end\n" +
+                    "redis.call('ZADD', KEYS[8], ARGV[9], ARGV[4])\n" +
+                    "return 1", Long.class);
+    /**
+     * 删除 Session 脚本，同时清除会话的用户权限缓存和角色反向索引
+     * <p>
+     * KEYS: Session key，活动 Session ZSet，活动用户 Hash，principal 反向索引，会话权限摘要，会话 -> 角色 索引，Session 属性，Session 摘要 Hash，
+     * principal 查询索引，host 查询索引，登录时间索引，代数 Hash
+     * <p>
+     * ARGV: SessionId，principal，角色反向索引 key 前缀，principal 索引成员，host 索引成员，用户代数字段(未开启按代失效时为空)
+     * <p>
+     * 活动用户 Hash 只在仍然指向本会话时删除，不影响同一用户的其他会话。用户的最后一个会话删除后，用户代数一并删除
+     */
+    private static final RedisScript<Long> DELETE_SESSION_SCRIPT = new DefaultRedisScript<>(
+            "local roles = redis.call('SMEMBERS', KEYS[6])\n" +
+                    "for _, role in ipairs(roles) do redis.call('SREM', ARGV[3] .. role, ARGV[1]) end\n" +
+                    "local deleted = redis.call('DEL', KEYS[1])\n" +
+                    "redis.call('DEL', KEYS[5], KEYS[6], KEYS[7])\n" +
+                    "redis.call('ZREM', KEYS[2], ARGV[1])\n" +
+                    "redis.call('HDEL', KEYS[8], ARGV[1])\n" +
+                    "redis.call('ZREM', KEYS[9], ARGV[4])\n" +
+                    "redis.call('ZREM', KEYS[10], ARGV[5])\n" +
+                    "redis.call('ZREM', KEYS[11], ARGV[1])\n" +
+                    "if redis.call('HGET', KEYS[3], ARGV[2]) == ARGV[1] then redis.call('HDEL', KEYS[3], ARGV[2]) end\n" +
+                    "redis.call('SREM', KEYS[4], ARGV[1])\n" +
+                    "if ARGV[6] ~= '' and redis.call('SCARD', KEYS[4]) == 0 then redis.call('HDEL', KEYS[12], ARGV[6]) end\n" +
+                    "return deleted", Long.class);
+    /**
+     * 集群模式删除 Session 脚本，只操作同一个 slot 的 key ，返回会话所在的角色
+     * <p>
+     * KEYS: Session key，会话权限摘要，会话 -> 角色 索引，Session 属性
+     */
+    private static final RedisScript<List<Object>> DELETE_SESSION_SLOT_SCRIPT = listScript(
+            "local roles = redis.call('SMEMBERS', KEYS[3])\n" +
+                    "redis.call('DEL', KEYS[1], KEYS[2], KEYS[3], KEYS[4])\n" +
+                    "return roles");
+    /**
+     * 比较并设置活动用户 Hash 中的 principal -> SessionId 映射，单 key 脚本
+     * <p>
+     * KEYS: 活动用户 Hash ; ARGV: principal，期望的 SessionId(没有时为空)，新的 SessionId
+     */
+    private static final RedisScript<Long> COMPARE_AND_SET_ACTIVE_USER_SCRIPT = new DefaultRedisScript<>(
+            "if (redis.call('HGET', KEYS[1], ARGV[1]) or '') ~= ARGV[2] then return 0 end\n" +
+                    "redis.call('HSET', KEYS[1], ARGV[1], ARGV[3])\n" +
+                    "return 1", Long.class);
+    /**
+     * 活动用户 Hash 仍然指向本会话时才删除，单 key 脚本
+     * <p>
+     * KEYS: 活动用户 Hash ; ARGV: principal，SessionId
+     */
+    private static final byte[] DELETE_ACTIVE_USER_SCRIPT = bytes(
+            "if redis.call('HGET', KEYS[1], ARGV[1]) == ARGV[2] then return redis.call('HDEL', KEYS[1], ARGV[1]) end\n" +
+                    "return 0");
+    /**
+     * 增加用户代数: 取 当前代数 + 1 与 Redis 当前毫秒时间 中较大的一个
+     * <p>
+     * 用户代数在用户没有会话时会被删除，按时间增加保证删除后重新开始的代数仍然大于之前发出的任何代数
+     * <p>
+     * KEYS: 代数 Hash ; ARGV: 用户代数字段
+     */
+    private static final RedisScript<Long> INCREASE_PRINCIPAL_GENERATION_SCRIPT = new DefaultRedisScript<>(
+            "if redis.replicate_commands then redis.replicate_commands() end\n" +
+                    "local time = redis.call('TIME')\n" +
+                    "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)\n" +
+                    "local generation = math.max(tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0') + 1, now)\n" +
+                    "redis.call('HSET', KEYS[1], ARGV[1], string.format('%d', generation))\n" +
+                    "return generation", Long.class);
+    /**
+     * 设置 Session 属性脚本，Session 不存在时不写入，属性的过期时间与 Session 一致
+     * <p>
+     * KEYS: Session key，Session 属性 ; ARGV: 属性名称，属性值
+     */
+    private static final RedisScript<Long> SET_ATTRIBUTE_SCRIPT = new DefaultRedisScript<>(
+            "local ttl = redis.call('TTL', KEYS[1])\n" +
+                    "if ttl == -2 then return -2 end\n" +
+                    "redis.call('HSET', KEYS[2], ARGV[1], ARGV[2])\n" +
+                    "if ttl > 0 then redis.call('EXPIRE', KEYS[2], ttl) end\n" +
+                    "return ttl", Long.class);
+    /**
+     * 按字典序分页查找索引成员，同时返回范围内的总数
+     * <p>
+     * KEYS: 查询索引 ; ARGV: 起点，终点，偏移量，数量
+     */
+    private static final RedisScript<List<Object>> SEARCH_BY_LEX_SCRIPT = listScript(
+            "local members = redis.call('ZRANGEBYLEX', KEYS[1], ARGV[1], ARGV[2], 'LIMIT', ARGV[3], ARGV[4])\n" +
+                    "return {redis.call('ZLEXCOUNT', KEYS[1], ARGV[1], ARGV[2]), members}");
+    /**
+     * 按 Score 分页查找索引成员，同时返回范围内的总数
+     * <p>
+     * KEYS: 查询索引 ; ARGV: 最小 Score ，最大 Score ，偏移量，数量
+     */
+    private static final RedisScript<List<Object>> SEARCH_BY_SCORE_SCRIPT = listScript(
+            "local members = redis.call('ZRANGEBYSCORE', KEYS[1], ARGV[1], ARGV[2], 'LIMIT', ARGV[3], ARGV[4])\n" +
+                    "return {redis.call('ZCOUNT', KEYS[1], ARGV[1], ARGV[2]), members}");
+    /**
+     * 查询索引成员中值与 SessionId 的分隔符
+     */
+    private static final char SEARCH_INDEX_SEPARATOR = '\0';
 
     /**
      * The Session cache.
@@ -63,6 +262,10 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
      * The User auth cache.
      */
     private final RedisTemplate<String, List<? extends GrantedAuthority>> userAuthCache;
+    /**
+     * 内容摘要 -> 共享的用户权限列表，内容按摘要寻址，不会过时
+     */
+    private final Cache<String, GrantedAuthorityList> authoritySets = CacheBuilder.newBuilder().maximumSize(AUTHORITY_SET_CACHE_SIZE).build();
 
     /**
      * The Session id generator.
@@ -80,6 +283,26 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
      * The Cookie provider.
      */
     private CookieService cookieService;
+    /**
+     * 只读副本上的 Session 缓存，为 null 时全部读主节点
+     */
+    private RedisTemplate<String, SimpleSession> replicaSessionCache;
+    /**
+     * 只读副本上的用户权限缓存
+     */
+    private RedisTemplate<String, List<? extends GrantedAuthority>> replicaUserAuthCache;
+    /**
+     * 读己之写窗口，按 SessionId 记录
+     */
+    private ReadYourWritesWindow readYourWrites = new ReadYourWritesWindow();
+    /**
+     * 本地缓存的代数，代数 Hash 字段 -> 代数，为 null 时每次都从主节点读取
+     */
+    private final Cache<String, Long> generationCache;
+    /**
+     * 按配置(session.readReplicaHost)创建的副本连接工厂，关闭时释放
+     */
+    private LettuceConnectionFactory replicaConnectionFactory;
 
 
     /**
@@ -104,13 +327,44 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
         }
         this.sessionCache = sessionCache;
         this.userAuthCache = userAuthCache;
-        this.sessionIdGenerator = new UUIDSessionIdGeneratorImpl();
+        this.sessionIdGenerator = new SecureRandomSessionIdGeneratorImpl(ConfigManager.getConfig().getSession().getSessionIdNodeTag());
         this.activeUserCache = activeUserCache;
         this.servletHolder = servletHolder;
+        final SessionProperty sessionProperty = ConfigManager.getConfig().getSession();
+        final long generationCacheMillis = sessionProperty.getGenerationCacheMillis();
+        this.generationCache = generationCacheMillis > 0 ? CacheBuilder.newBuilder().maximumSize(GENERATION_CACHE_SIZE)
+                .expireAfterWrite(generationCacheMillis, TimeUnit.MILLISECONDS).build() : null;
+        if (StrUtils.isNotBlank(sessionProperty.getReadReplicaHost())) {
+            this.replicaConnectionFactory = createReplicaConnectionFactory(sessionProperty.getReadReplicaHost(), sessionProperty.getReadReplicaPort());
+            setReadReplica(replicaConnectionFactory);
+            setReadYourWritesWindow(sessionProperty.getReadYourWritesMillis());
+            log.info("Session 读取使用只读副本:{}:{}", sessionProperty.getReadReplicaHost(), sessionProperty.getReadReplicaPort());
+        }
+        if (isClusterMode()) {
+            log.warn("Redis Cluster 模式下 Session 过期、删除事件只由 key 所在的节点发出，事件监听只订阅了一个节点，" +
+                    "其他节点上过期的 Session 由过期 Session 定期清理任务清理在线用户索引，请确认清理任务的执行间隔");
+        }
     }
 
     @Override
     public SimpleSession create(UserDetails userDetails) {
+        return create(userDetails, false, null);
+    }
+
+    @Override
+    public SimpleSession create(UserDetails userDetails, String expectedSessionId) {
+        return create(userDetails, true, expectedSessionId);
+    }
+
+    /**
+     * 创建 Session
+     *
+     * @param userDetails       the user details
+     * @param compareAndSet     是否比较 principal -> SessionId 映射
+     * @param expectedSessionId 期望的映射当前值
+     * @return the simple session ，比较失败返回 null
+     */
+    private SimpleSession create(UserDetails userDetails, boolean compareAndSet, String expectedSessionId) {
         if (null == sessionIdGenerator) {
             throw new HeimdallException("sessionIdGenerator  must not be null");
         }
@@ -134,13 +388,60 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
         }
         long globalSessionTimeout = getGlobalSessionTimeout();
         session.setTimeout(globalSessionTimeout);
-        //存redis
-        sessionCache.opsForValue().set(getSessionIdPrefix() + sessionId, session, globalSessionTimeout, TimeUnit.SECONDS);
         LocalDateTime localDateTime = LocalDateTime.now();
         //把当天日期作为 Score
         final String score = localDateTime.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        activeUserCache.opsForZSet().add(getActiveSessionCacheKey(), session.getId(), Long.parseLong(score));
-        activeUserCache.opsForHash().put(getActiveUserCacheKey(), session.getDetails().getPrincipal(), session.getId());
+        final String principal = session.getDetails().getPrincipal();
+        if (isGenerationEnabled()) {
+            //先记录当前代数，与代数增加并发时 Session 按旧代数创建，随即失效。创建时不使用本地缓存
+            final long[] generations = getGenerations(principal, false);
+            session.setGlobalGeneration(generations[0]);
+            session.setPrincipalGeneration(generations[1]);
+        }
+        //存redis: Session 数据、活动 Session ZSet、活动用户 Hash、principal -> SessionId 反向索引(有效期不短于其中任何一个会话)一次写入
+        final byte[] summary = serializeSummary(SessionSummary.of(session));
+        final String expected = null == expectedSessionId ? "" : expectedSessionId;
+        if (isClusterMode()) {
+            //先比较并设置 principal -> SessionId 映射，成功后其余各 key 不在同一个 slot ，按单 key 命令管道发送
+            if (compareAndSet) {
+                final Long claimed = activeUserCache.execute(COMPARE_AND_SET_ACTIVE_USER_SCRIPT,
+                        Collections.singletonList(getActiveUserCacheKey(principal)), principal, expected, sessionId);
+                if (null == claimed || claimed == 0L) {
+                    log.debug("Principal:{} 的登录映射已经被修改，创建 Session 失败", principal);
+                    return null;
+                }
+            }
+            final byte[] value = serializeSession(session);
+            activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+                final byte[] member = bytes(sessionId);
+                final byte[] principalIndexKey = bytes(getPrincipalIndexKey(principal));
+                connection.setEx(bytes(getSessionKey(sessionId)), globalSessionTimeout, value);
+                connection.zAdd(bytes(getActiveSessionCacheKey(sessionId)), Double.parseDouble(score), member);
+                if (!compareAndSet) {
+                    connection.hSet(bytes(getActiveUserCacheKey(principal)), bytes(principal), member);
+                }
+                connection.sAdd(principalIndexKey, member);
+                connection.expire(principalIndexKey, globalSessionTimeout);
+                connection.hSet(bytes(getSessionSummaryCacheKey(sessionId)), member, summary);
+                connection.zAdd(bytes(getPrincipalSearchIndexKey()), 0, bytes(searchMember(principal, sessionId)));
+                if (null != session.getHost()) {
+                    connection.zAdd(bytes(getHostSearchIndexKey()), 0, bytes(searchMember(session.getHost(), sessionId)));
+                }
+                connection.zAdd(bytes(getStartTimeSearchIndexKey()), session.getStartTimestamp().getTime(), member);
+                return null;
+            });
+        } else {
+            final Long created = activeUserCache.execute(CREATE_SESSION_SCRIPT, RedisSerializer.byteArray(), null,
+                    Arrays.asList(getSessionKey(sessionId), getActiveSessionCacheKey(sessionId), getActiveUserCacheKey(principal), getPrincipalIndexKey(principal),
+                            getSessionSummaryCacheKey(sessionId), getPrincipalSearchIndexKey(), getHostSearchIndexKey(), getStartTimeSearchIndexKey()),
+                    serializeSession(session), bytes(String.valueOf(globalSessionTimeout)), bytes(score), bytes(sessionId), bytes(principal), summary,
+                    bytes(searchMember(principal, sessionId)), bytes(null == session.getHost() ? "" : searchMember(session.getHost(), sessionId)),
+                    bytes(String.valueOf(session.getStartTimestamp().getTime())), bytes(compareAndSet ? "1" : "0"), bytes(expected));
+            if (null == created || created == 0L) {
+                log.debug("Principal:{} 的登录映射已经被修改，创建 Session 失败", principal);
+                return null;
+            }
+        }
         //写入cookie
         if (config.getCookie().getEnabled()) {
             if (null != cookieService) {
@@ -151,15 +452,37 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
         } else {
             log.warn("Cookie 功能未开启");
         }
+        readYourWrites.markWritten(sessionId);
         //发布事件
         afterCreated(session);
         return session;
     }
 
 
+    /**
+     * 读取 Session 。设置了只读副本时从副本读取 Session 数据，再在主节点上 EXISTS 确认 Session 仍然存在，
+     * 已经删除(注销、踢出)的 Session 不会因为复制延迟继续生效
+     */
     @Override
     public SimpleSession readSession(String sessionId) throws InvalidSessionException {
-        final SimpleSession session = sessionCache.opsForValue().get(getSessionIdPrefix() + sessionId);
+        final String sessionKey = getSessionKey(sessionId);
+        SimpleSession session = null;
+        if (isReplicaReadable(sessionId)) {
+            session = replicaSessionCache.opsForValue().get(sessionKey);
+            if (null != session && !Boolean.TRUE.equals(sessionCache.hasKey(sessionKey))) {
+                log.debug("副本上的 Session 在主节点上已经不存在,SessionId:[{}]", sessionId);
+                afterRead(null);
+                return null;
+            }
+        }
+        //副本上没有(复制延迟或者本来就不存在)，读主节点
+        if (null == session) {
+            session = sessionCache.opsForValue().get(sessionKey);
+        }
+        if (null != session && isSuperseded(session)) {
+            log.debug("Session 已经按代失效,SessionId:[{}]", sessionId);
+            session = null;
+        }
         //发布事件
         afterRead(session);
         return session;
@@ -172,7 +495,7 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
         //全局过期时间
         final long globalSessionTimeout = getGlobalSessionTimeout();
         //组合缓存 Session Key
-        String sessionKey = getSessionIdPrefix() + session.getId();
+        String sessionKey = getSessionKey(session.getId());
         //写入缓存，不改变过期时间,这个方式有可能出问题，如果 Session 长度与原来不一致，就有偏差了
         //sessionCache.opsForValue().set(SessionKey, session, 0);
         //先拿到当前的 ttl,然后带着修改数据后的 Session 一起写入
@@ -189,6 +512,7 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
                 log.warn("请注意: 修改 Session 时发现 Session :{} 的 TTL = -1，重置 TTL 至 :{}", session.getId(), globalSessionTimeout);
                 expire = globalSessionTimeout;
             }
+            boolean renewed = false;
             //如果开启了续签，计算是否需要续签
             //如果expire=globalSessionTimeout那等于已经续签了,直接过
             if (expire != globalSessionTimeout && config.getSession().isRenew()) {
@@ -206,6 +530,9 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
                             v, radio, globalSessionTimeout);
                     //把过期时间重置为全局过期时间，也就是续签
                     expire = globalSessionTimeout;
+                    renewed = true;
+                    //反向索引和缓存的用户权限随之续期
+                    renewIndexes(session, globalSessionTimeout);
                 } else {
                     log.debug("续签 Session [key:{}],当前剩余时间:[{}]秒,全局过期时间:[{}]秒，占比:[{}],高于设置值:[{}],不做处理",
                             sessionKey, expire.doubleValue(), globalSessionTimeout,
@@ -213,9 +540,21 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
                 }
             }
             //设置最后访问时间
+            final Date previousAccessTime = session.getLastAccessTime();
             session.setLastAccessTime(new Date());
-            //执行更新操作
-            sessionCache.opsForValue().set(sessionKey, session, expire, TimeUnit.SECONDS);
+            //执行更新操作，Session 摘要需要更新时一起写入，一次管道完成
+            final long ttl = expire;
+            final byte[] value = serializeSession(session);
+            final byte[] summary = renewed || isSummaryStale(previousAccessTime, session.getLastAccessTime())
+                    ? serializeSummary(SessionSummary.of(session, new Date(System.currentTimeMillis() + ttl * 1000))) : null;
+            sessionCache.executePipelined((RedisCallback<Object>) connection -> {
+                connection.setEx(bytes(sessionKey), ttl, value);
+                if (null != summary) {
+                    connection.hSet(bytes(getSessionSummaryCacheKey(session.getId())), bytes(session.getId()), summary);
+                }
+                return null;
+            });
+            readYourWrites.markWritten(session.getId());
             //发布事件
             afterUpdated(session);
             return sessionCache.opsForValue().get(sessionKey);
@@ -230,12 +569,15 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
     @Override
     public void delete(SimpleSession session) {
         final Config config = ConfigManager.getConfig();
-        //清理用户权限缓存
-        clearUserAuthorities(session.getId());
-        //删除用户 Session 缓存
-        sessionCache.delete(getSessionIdPrefix() + session.getId());
-        activeUserCache.opsForZSet().remove(getActiveSessionCacheKey(), session.getId());
-        activeUserCache.opsForHash().delete(getActiveUserCacheKey(), session.getDetails().getPrincipal());
+        final String principal = session.getDetails().getPrincipal();
+        //删除用户 Session 缓存、在线用户索引和用户权限缓存，一次完成
+        log.info("清理系统用户缓存，SessionId:[{}]", session.getId());
+        if (isClusterMode()) {
+            deleteInCluster(Collections.singletonList(session));
+        } else {
+            activeUserCache.execute(DELETE_SESSION_SCRIPT, RedisSerializer.byteArray(), null,
+                    getDeleteSessionKeys(session.getId(), principal), (Object[]) getDeleteSessionArgs(session));
+        }
         //删除cookie
         if (config.getCookie().getEnabled()) {
             if (null != cookieService) {
@@ -244,12 +586,195 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
                 throw new CookieException("错误:CookieService 未设置.当前已开启 Cookie功能.请设置 CookieService 或者禁用 Cookie 功能");
             }
         }
+        readYourWrites.markWritten(session.getId());
         //发布事件
         afterDeleted(session);
     }
 
+    @Override
+    public List<SimpleSession> readSessions(Collection<String> sessionIds) {
+        final List<SimpleSession> sessions = new ArrayList<>(sessionIds.size());
+        for (List<String> batch : Lists.partition(new ArrayList<>(sessionIds), BATCH_SIZE)) {
+            final List<?> values;
+            if (isClusterMode()) {
+                //集群模式 mget ，由集群连接按 slot 分组后发往各个节点
+                values = sessionCache.opsForValue().multiGet(batch.stream().map(this::getSessionKey).collect(Collectors.toList()));
+            } else {
+                values = sessionCache.executePipelined((RedisCallback<Object>) connection -> {
+                    for (String sessionId : batch) {
+                        connection.get(bytes(getSessionKey(sessionId)));
+                    }
+                    return null;
+                });
+            }
+            if (null != values) {
+                for (Object value : values) {
+                    if (value instanceof SimpleSession && !isSuperseded((SimpleSession) value)) {
+                        sessions.add((SimpleSession) value);
+                    }
+                }
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * 每批 Session 的删除脚本在一个管道中发送，集群模式下分两个管道: 先删除同一个 slot 的 key ，再清理各个索引
+     */
+    @Override
+    public int deleteSessions(Collection<SimpleSession> sessions) {
+        if (null == sessions || sessions.isEmpty()) {
+            return 0;
+        }
+        final List<SimpleSession> targets = sessions.stream().filter(Objects::nonNull).collect(Collectors.toList());
+        final byte[] script = bytes(DELETE_SESSION_SCRIPT.getScriptAsString());
+        for (List<SimpleSession> batch : Lists.partition(targets, BATCH_SIZE)) {
+            if (isClusterMode()) {
+                deleteInCluster(batch);
+            } else {
+                activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+                    for (SimpleSession session : batch) {
+                        final List<String> keys = getDeleteSessionKeys(session.getId(), session.getDetails().getPrincipal());
+                        final byte[][] args = getDeleteSessionArgs(session);
+                        final byte[][] keysAndArgs = new byte[keys.size() + args.length][];
+                        for (int i = 0; i < keys.size(); i++) {
+                            keysAndArgs[i] = bytes(keys.get(i));
+                        }
+                        System.arraycopy(args, 0, keysAndArgs, keys.size(), args.length);
+                        connection.eval(script, ReturnType.INTEGER, keys.size(), keysAndArgs);
+                    }
+                    return null;
+                });
+            }
+            readYourWrites.markWritten(batch.stream().map(SimpleSession::getId).collect(Collectors.toList()));
+        }
+        log.info("批量删除 Session ，总数:{}", targets.size());
+        //发布事件
+        afterDeleted(targets);
+        return targets.size();
+    }
+
+    /**
+     * 删除 Session 脚本的 KEYS
+     *
+     * @param sessionId the session id
+     * @param principal the principal
+     * @return the list
+     */
+    private List<String> getDeleteSessionKeys(String sessionId, String principal) {
+        return Arrays.asList(getSessionKey(sessionId), getActiveSessionCacheKey(sessionId), getActiveUserCacheKey(principal),
+                getPrincipalIndexKey(principal), getAuthorityRefKey(sessionId), getSessionRolesKey(sessionId),
+                getSessionAttributesKey(sessionId), getSessionSummaryCacheKey(sessionId),
+                getPrincipalSearchIndexKey(), getHostSearchIndexKey(), getStartTimeSearchIndexKey(), getGenerationKey());
+    }
+
+    /**
+     * 删除 Session 脚本的 ARGV
+     *
+     * @param session the session
+     * @return the byte [ ] [ ]
+     */
+    private byte[][] getDeleteSessionArgs(SimpleSession session) {
+        final String principal = session.getDetails().getPrincipal();
+        return new byte[][]{bytes(session.getId()), bytes(principal), bytes(getRoleIndexKey("")),
+                bytes(searchMember(principal, session.getId())), bytes(getHostSearchMember(session)),
+                bytes(isGenerationEnabled() ? getPrincipalGenerationField(principal) : "")};
+    }
+
+    /**
+     * Session 的 host 索引成员，没有 host 时为空
+     *
+     * @param session the session
+     * @return the string
+     */
+    private static String getHostSearchMember(SimpleSession session) {
+        return null == session.getHost() ? "" : searchMember(session.getHost(), session.getId());
+    }
+
+    /**
+     * 集群模式删除 Session
+     * <p>
+     * 同一个 slot 的 Session 、权限摘要、会话 -> 角色 索引、Session 属性在一个脚本中删除，其余索引 key 按单 key 命令管道发送。
+     * 一批 Session 共两个管道
+     *
+     * @param sessions the sessions
+     */
+    private void deleteInCluster(List<SimpleSession> sessions) {
+        final byte[] script = bytes(DELETE_SESSION_SLOT_SCRIPT.getScriptAsString());
+        final List<Object> roles = activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            for (SimpleSession session : sessions) {
+                final String sessionId = session.getId();
+                connection.eval(script, ReturnType.MULTI, 4, bytes(getSessionKey(sessionId)), bytes(getAuthorityRefKey(sessionId)),
+                        bytes(getSessionRolesKey(sessionId)), bytes(getSessionAttributesKey(sessionId)));
+            }
+            return null;
+        });
+        activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < sessions.size(); i++) {
+                final String sessionId = sessions.get(i).getId();
+                final String principal = sessions.get(i).getDetails().getPrincipal();
+                final byte[] member = bytes(sessionId);
+                if (i < roles.size() && roles.get(i) instanceof Collection) {
+                    for (Object role : (Collection<?>) roles.get(i)) {
+                        final String name = role instanceof byte[] ? new String((byte[]) role, StandardCharsets.UTF_8) : String.valueOf(role);
+                        connection.sRem(bytes(getRoleIndexKey(name)), member);
+                    }
+                }
+                connection.zRem(bytes(getActiveSessionCacheKey(sessionId)), member);
+                connection.hDel(bytes(getSessionSummaryCacheKey(sessionId)), member);
+                connection.eval(DELETE_ACTIVE_USER_SCRIPT, ReturnType.INTEGER, 1, bytes(getActiveUserCacheKey(principal)), bytes(principal), member);
+                connection.sRem(bytes(getPrincipalIndexKey(principal)), member);
+                connection.zRem(bytes(getPrincipalSearchIndexKey()), bytes(searchMember(principal, sessionId)));
+                connection.zRem(bytes(getHostSearchIndexKey()), bytes(getHostSearchMember(sessions.get(i))));
+                connection.zRem(bytes(getStartTimeSearchIndexKey()), member);
+            }
+            return null;
+        });
+        //代数 Hash 与 principal 反向索引不在同一个 slot ，删除后再检查
+        clearPrincipalGenerations(sessions.stream().map(d -> d.getDetails().getPrincipal()).collect(Collectors.toList()));
+    }
+
+    @Override
+    public Set<String> getSessionIdsByPrincipals(Collection<String> principals) {
+        final List<String> principalList = principals.stream().filter(StrUtils::isNotBlank).collect(Collectors.toList());
+        return unionMembers(principalList.stream().map(this::getPrincipalIndexKey).collect(Collectors.toList()));
+    }
+
+    @Override
+    public Set<String> getSessionIdsByRoles(Collection<String> roles) {
+        return unionMembers(roles.stream().filter(Objects::nonNull).map(this::getRoleIndexKey).collect(Collectors.toList()));
+    }
+
+    /**
+     * 管道一次取出多个 Set 的全部成员并合并
+     *
+     * @param keys the keys
+     * @return the set
+     */
+    private Set<String> unionMembers(List<String> keys) {
+        final Set<String> members = new LinkedHashSet<>();
+        if (keys.isEmpty()) {
+            return members;
+        }
+        final List<Object> sets = activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.sMembers(bytes(key));
+            }
+            return null;
+        });
+        for (Object set : sets) {
+            if (set instanceof Collection) {
+                for (Object member : (Collection<?>) set) {
+                    members.add(member.toString());
+                }
+            }
+        }
+        return members;
+    }
+
     @Override
     public Collection<SimpleSession> getActiveSessions() {
+        //集群模式下 keys 由集群连接在所有主节点上执行后合并，mget 按 slot 分组执行
         final Set<String> keys = sessionCache.keys(getSessionIdPrefix() + "*");
         if (null != keys && !keys.isEmpty()) {
             return sessionCache.opsForValue().multiGet(keys);
@@ -259,35 +784,35 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
 
     @Override
     public Page<SimpleSession> getActiveSessions(int pageNo, int pageSize) {
-
-        final Config config = ConfigManager.getConfig();
-        //先从zset分页拿SessionId
-        final Set<String> range = activeUserCache.opsForZSet().range(config.getSession().getActiveSessionCacheKey(),
-                getStart(pageNo, pageSize), getEnd(pageNo, pageSize));
+        //先从zset分页拿SessionId，分片时各分片合并后分页
+        final List<String> range = rangeActiveSessions(ActiveSessionPages.start(pageNo, pageSize), ActiveSessionPages.end(pageNo, pageSize));
         //再从所有Session中获取这批SessionId对应的数据
         if (null != range && !range.isEmpty()) {
-            ////管道获取
-            final List<Object> activeSessions = sessionCache.executePipelined((RedisCallback<Object>) connection -> {
-                if (!CollectionUtils.isEmpty(range)) {
-                    for (String key : range) {
-                        //组合出Session缓存key
-                        connection.get((getSessionIdPrefix() + key).getBytes());
+            final List<?> activeSessions;
+            if (isClusterMode()) {
+                //集群模式 mget ，由集群连接按 slot 分组后发往各个节点
+                activeSessions = sessionCache.opsForValue().multiGet(range.stream().map(this::getSessionKey).collect(Collectors.toList()));
+            } else {
+                ////管道获取
+                activeSessions = sessionCache.executePipelined((RedisCallback<Object>) connection -> {
+                    if (!CollectionUtils.isEmpty(range)) {
+                        for (String key : range) {
+                            //组合出Session缓存key
+                            connection.get((getSessionKey(key)).getBytes());
+                        }
                     }
-                }
-                return null;
-            });
-            if (!activeSessions.isEmpty()) {
+                    return null;
+                });
+            }
+            if (null != activeSessions && !activeSessions.isEmpty()) {
                 final List<SimpleSession> records = activeSessions.stream().map(d -> {
                     if (null != d) {
                         return (SimpleSession) d;
                     }
                     return null;
                 }).collect(Collectors.toList());
-                final Set<String> keys = sessionCache.keys(getSessionIdPrefix() + "*");
-                long count = 0L;
-                if (null != keys && !keys.isEmpty()) {
-                    count = keys.size();
-                }
+                //各分片 ZCARD 求和，不再 keys 扫描全部 Session
+                final long count = countActiveSessions();
                 log.debug("分页获取在线用户，在线用户总数:{},本页数据总数:{}", count, records.size());
                 return new Page<>(pageNo, pageSize, count, records);
             } else {
@@ -328,147 +853,779 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
     }
 
 
+    /**
+     * 按活动 Session ZSet 分页，只读取 Session 摘要，一次管道完成。设置了只读副本时从副本读取
+     */
     @Override
-    public SimpleSession getByPrincipal(String principal) {
-        final Config config = ConfigManager.getConfig();
-        final Object sessionId = activeUserCache.opsForHash().get(config.getSession().getActiveUserCacheKey(), principal);
-        if (null == sessionId) {
-            return null;
+    public Page<SessionSummary> getActiveSessionSummaries(int pageNo, int pageSize) {
+        final List<String> range = rangeActiveSessions(ActiveSessionPages.start(pageNo, pageSize), ActiveSessionPages.end(pageNo, pageSize));
+        if (range.isEmpty()) {
+            return new Page<>(pageNo, pageSize, 0, null);
         }
-        return sessionCache.opsForValue().get(getSessionIdPrefix() + sessionId.toString());
+        return new Page<>(pageNo, pageSize, countActiveSessions(), readSessionSummaries(range));
     }
 
     @Override
-    public void validateExpiredSessions() {
-        final Config config = ConfigManager.getConfig();
-        log.debug("清理无效在线用户ID=  开始");
-        //合法SimpleSessions,这里没有，但是上面2个里面有的，就是需要清理的,这里的数据带Session前缀
-        final Set<String> validSessions = sessionCache.keys(getSessionIdPrefix() + "*");
-        //如果当前就没有登录用户，Hash 和 Zset全部清空
-        if (null == validSessions || validSessions.isEmpty()) {
-            log.debug("没合法的SessionId, Hash 、Zset、用户权限缓存 全部清空");
-            activeUserCache.delete(config.getSession().getActiveUserCacheKey());
-            activeUserCache.delete(config.getSession().getActiveSessionCacheKey());
-            //缓存的所有用户权限也全部清除
-            clearAllUserAuthorities();
-        } else {
-            log.debug("当前合法Session总数:{},现在开始进行Hash和ZSet清理", validSessions.size());
-            //活动用户Hash
-            final Map<Object, Object> activeUsers = activeUserCache.opsForHash().entries(config.getSession().getActiveUserCacheKey());
-            if (!activeUsers.isEmpty()) {
-                log.debug("当前活动用户Hash总数:{}", activeUsers.size());
-                List<String> activeUsersToBeDeleted = new ArrayList<>();
-                for (Map.Entry<Object, Object> data : activeUsers.entrySet()) {
-                    final Object value = data.getValue();
-                    if (null != value) {
-                        String sessionKey = getSessionIdPrefix() + value.toString();
-                        //合法session里没有这个value，说明这个无效了
-                        if (!validSessions.contains(sessionKey)) {
-                            //把 SessionId (value) 放入待删除列表
-                            activeUsersToBeDeleted.add(sessionKey);
-                        }
-                    }
-                }
-                log.debug("当前 待清理 活动用户Hash总数:{}", activeUsersToBeDeleted.size());
-                if (!activeUsersToBeDeleted.isEmpty()) {
-                    log.debug("被清理的 活动用户Hash，总数:{}", activeUsersToBeDeleted.size());
-                    activeUserCache.opsForHash().delete(config.getSession().getActiveUserCacheKey(), activeUsersToBeDeleted.toArray());
-                }
-            }
-            //活动Session ZSet
-            final Set<String> activeSessions = activeUserCache.opsForZSet().range(config.getSession().getActiveSessionCacheKey(), 0, -1);
-            if (null != activeSessions && !activeSessions.isEmpty()) {
-                log.debug("当前 活动Session ZSet 总数:{}", activeSessions.size());
-                final List<String> activeSessionsToBeDeleted =
-                        activeSessions.stream().filter(d -> !validSessions.contains(getSessionIdPrefix() + d))
-                                .collect(Collectors.toList());
-                if (!activeSessionsToBeDeleted.isEmpty()) {
-                    log.debug("被清理的 活动Session ZSet，总数:{}", activeSessionsToBeDeleted.size());
-                    activeUserCache.opsForZSet().remove(config.getSession().getActiveSessionCacheKey(), activeSessionsToBeDeleted.toArray());
-                }
+    public Page<SessionSummary> findSessionsByPrincipalPrefix(String prefix, int pageNo, int pageSize) {
+        return searchByLex(getPrincipalSearchIndexKey(), null == prefix ? "" : prefix, pageNo, pageSize);
+    }
 
-            } else {
-                log.debug("当前 活动Session ZSet 为空，不做处理");
-            }
+    @Override
+    public Page<SessionSummary> findSessionsByHost(String host, boolean prefix, int pageNo, int pageSize) {
+        final String from = null == host ? "" : (prefix ? host : host + SEARCH_INDEX_SEPARATOR);
+        return searchByLex(getHostSearchIndexKey(), from, pageNo, pageSize);
+    }
 
-        }
-        //发布事件
-        afterSessionValidScheduled();
+    @Override
+    public Page<SessionSummary> findSessionsByStartTime(Date from, Date to, int pageNo, int pageSize) {
+        final List<?> result = activeUserCache.execute(SEARCH_BY_SCORE_SCRIPT, RedisSerializer.byteArray(), null,
+                Collections.singletonList(getStartTimeSearchIndexKey()),
+                bytes(null == from ? "-inf" : String.valueOf(from.getTime())), bytes(null == to ? "+inf" : String.valueOf(to.getTime())),
+                bytes(String.valueOf(ActiveSessionPages.start(pageNo, pageSize))), bytes(String.valueOf(pageSize)));
+        return toSearchPage(result, pageNo, pageSize);
     }
 
     /**
-     * 清理 zset 缓存和 hash 缓存
-     * <p>
-     * 主要提供给 redis 事件使用
+     * 按前缀在字典序索引中分页查找: [prefix , prefix + 0xFF) ，UTF-8 编码中不会出现 0xFF 字节
+     *
+     * @param key      查询索引 key
+     * @param prefix   前缀
+     * @param pageNo   the page no
+     * @param pageSize the page size
+     * @return the page
      */
-    @Override
-    public void clearOnlineUserCache(String sessionId) {
-        final Config config = ConfigManager.getConfig();
-        //清理用户的权限缓存
-        log.debug("清理用户权限缓存,SessionId:[{}]", sessionId);
-        userAuthCache.opsForHash().delete(config.getAuthority().getUserCachedKey(), sessionId);
-        log.debug("Session 删除事件 ,key:[{}],从zSet删除", sessionId);
-        //删除ZSet中对应Key (SessionId)
-        final Long session = activeUserCache.opsForZSet().remove(config.getSession().getActiveSessionCacheKey(), sessionId);
-        log.debug("Session 删除事件 ,key:[{}],从 Session zSet 删除，结果:{}", sessionId, session);
-        //拿到 Hash 中所有数据
-        final Map<Object, Object> entries = activeUserCache.opsForHash().entries(config.getSession().getActiveUserCacheKey());
-        List<String> toBeDeleted = new ArrayList<>();
-        if (!entries.isEmpty()) {
-            //遍历，如果value(sessionId)  与传入的SessionId相同,把key加入待删除List
-            for (Map.Entry<Object, Object> data : entries.entrySet()) {
-                if (data.getValue().equals(sessionId)) {
-                    toBeDeleted.add(data.getKey().toString());
-                }
-            }
-        }
-        // Hash 中有数据要删除
-        if (!toBeDeleted.isEmpty()) {
-            final Long user = activeUserCache.opsForHash().delete(config.getSession().getActiveUserCacheKey(), toBeDeleted.toArray());
-            log.debug("Session 删除事件 ,key:[{}],从 User Hash 删除，结果:{}", sessionId, user);
-        }
+    private Page<SessionSummary> searchByLex(String key, String prefix, int pageNo, int pageSize) {
+        final byte[] value = bytes(prefix);
+        final byte[] min = new byte[value.length + 1];
+        final byte[] max = new byte[value.length + 2];
+        min[0] = '[';
+        max[0] = '(';
+        System.arraycopy(value, 0, min, 1, value.length);
+        System.arraycopy(value, 0, max, 1, value.length);
+        max[max.length - 1] = (byte) 0xFF;
+        final List<?> result = activeUserCache.execute(SEARCH_BY_LEX_SCRIPT, RedisSerializer.byteArray(), null,
+                Collections.singletonList(key), min, max, bytes(String.valueOf(ActiveSessionPages.start(pageNo, pageSize))), bytes(String.valueOf(pageSize)));
+        return toSearchPage(result, pageNo, pageSize);
     }
 
-    /////用户权限缓存
+    /**
+     * 查询脚本结果(总数，索引成员)转换为分页的 Session 摘要
+     *
+     * @param result   the result
+     * @param pageNo   the page no
+     * @param pageSize the page size
+     * @return the page
+     */
+    private Page<SessionSummary> toSearchPage(List<?> result, int pageNo, int pageSize) {
+        if (null == result || result.size() < 2 || !(result.get(1) instanceof List)) {
+            return new Page<>(pageNo, pageSize, 0, null);
+        }
+        final long count = result.get(0) instanceof Number ? ((Number) result.get(0)).longValue() : 0L;
+        final List<String> sessionIds = ((List<?>) result.get(1)).stream()
+                .map(d -> d instanceof byte[] ? new String((byte[]) d, StandardCharsets.UTF_8) : String.valueOf(d))
+                .map(d -> d.substring(d.lastIndexOf(SEARCH_INDEX_SEPARATOR) + 1)).collect(Collectors.toList());
+        return new Page<>(pageNo, pageSize, count, sessionIds.isEmpty() ? null : readSessionSummaries(sessionIds));
+    }
 
+    /**
+     * 按 SessionId 读取 Session 摘要，一次管道完成。设置了只读副本时从副本读取，已经失效的会话跳过
+     *
+     * @param sessionIds the session ids
+     * @return the list
+     */
+    private List<SessionSummary> readSessionSummaries(List<String> sessionIds) {
+        final RedisTemplate<String, SimpleSession> template = null == replicaSessionCache ? sessionCache : replicaSessionCache;
+        final List<Object> summaries = template.executePipelined((RedisCallback<Object>) connection -> {
+            for (String sessionId : sessionIds) {
+                connection.hGet(bytes(getSessionSummaryCacheKey(sessionId)), bytes(sessionId));
+            }
+            return null;
+        });
+        return summaries.stream().filter(d -> d instanceof SessionSummary)
+                .map(d -> (SessionSummary) d).collect(Collectors.toList());
+    }
 
     @Override
-    public void setUserAuthorities(String sessionId, List<? extends GrantedAuthority> authorities) {
-        final AuthorityProperty authority = ConfigManager.getConfig().getAuthority();
-        if (null != authorities && !authorities.isEmpty()) {
-            userAuthCache.opsForHash().put(authority.getUserCachedKey(), sessionId, authorities);
-            userAuthCache.expire(authority.getUserCachedKey(), authority.getUserExpire(), TimeUnit.HOURS);
-        } else {
-            log.warn("缓存用户权限失败，用户权限为空");
-        }
+    public String getSessionIdByPrincipal(String principal) {
+        final Object sessionId = activeUserCache.opsForHash().get(getActiveUserCacheKey(principal), principal);
+        return null == sessionId ? null : sessionId.toString();
     }
 
     @Override
-    public List<? extends GrantedAuthority> getUserAuthorities(String sessionId) {
-        final AuthorityProperty authority = ConfigManager.getConfig().getAuthority();
-        final Object o = userAuthCache.opsForHash().get(authority.getUserCachedKey(), sessionId);
-        if (null != o) {
-            return StrUtils.castList(o, GrantedAuthority.class);
+    public SimpleSession getByPrincipal(String principal) {
+        final Object sessionId = activeUserCache.opsForHash().get(getActiveUserCacheKey(principal), principal);
+        if (null == sessionId) {
+            return null;
         }
-        return null;
+        final SimpleSession session = sessionCache.opsForValue().get(getSessionKey(sessionId.toString()));
+        //已经按代失效的 Session 不算登录，不影响重复登录判断
+        return null == session || isSuperseded(session) ? null : session;
     }
 
     @Override
-    public void clearUserAuthorities(String sessionId) {
-        if (StrUtils.isNotBlank(sessionId)) {
-            final AuthorityProperty authority = ConfigManager.getConfig().getAuthority();
-            log.info("清理系统用户缓存，SessionId:[{}]", sessionId);
-            userAuthCache.opsForHash().delete(authority.getUserCachedKey(), sessionId);
-        } else {
-            log.warn("清理用户权限缓存失败，SessionID 为空");
-        }
-
+    public long invalidateAllSessions() {
+        checkGenerationEnabled();
+        final Long generation = activeUserCache.opsForHash().increment(getGenerationKey(), GLOBAL_GENERATION_FIELD, 1L);
+        cacheGeneration(GLOBAL_GENERATION_FIELD, generation);
+        return null == generation ? 0L : generation;
     }
 
     @Override
-    public void clearAllUserAuthorities() {
-        final AuthorityProperty authority = ConfigManager.getConfig().getAuthority();
+    public long invalidatePrincipalSessions(String principal) {
+        checkGenerationEnabled();
+        final String field = getPrincipalGenerationField(principal);
+        final Long generation = activeUserCache.execute(INCREASE_PRINCIPAL_GENERATION_SCRIPT, Collections.singletonList(getGenerationKey()), field);
+        cacheGeneration(field, generation);
+        return null == generation ? 0L : generation;
+    }
+
+    /**
+     * Session 是否已经按代失效，未开启按代失效时总是 false 。代数从主节点读取，在本地缓存 session.generationCacheMillis
+     * <p>
+     * 本节点增加的代数立即生效，其他节点增加的代数最迟在缓存时长之后生效。按缓存判断已经失效时再从主节点确认
+     *
+     * @param session the session
+     * @return the boolean
+     */
+    private boolean isSuperseded(SimpleSession session) {
+        if (!isGenerationEnabled()) {
+            return false;
+        }
+        final String principal = null == session.getDetails() ? null : session.getDetails().getPrincipal();
+        final long[] generations = getGenerations(principal, true);
+        if (!session.isSuperseded(generations[0], generations[1])) {
+            return false;
+        }
+        if (null == generationCache) {
+            return true;
+        }
+        //缓存的代数可能已经被删除(用户没有会话后重新登录)，失效前从主节点确认
+        final long[] current = getGenerations(principal, false);
+        return session.isSuperseded(current[0], current[1]);
+    }
+
+    /**
+     * 一次 HMGET 读取当前的全局代数和用户代数，没有记录的为 0
+     *
+     * @param principal the principal
+     * @param cached    是否先读本地缓存
+     * @return [全局代数, 用户代数]
+     */
+    private long[] getGenerations(String principal, boolean cached) {
+        final String principalField = getPrincipalGenerationField(String.valueOf(principal));
+        if (cached && null != generationCache) {
+            final Long global = generationCache.getIfPresent(GLOBAL_GENERATION_FIELD);
+            final Long user = generationCache.getIfPresent(principalField);
+            if (null != global && null != user) {
+                return new long[]{global, user};
+            }
+        }
+        final List<Object> values = activeUserCache.opsForHash().multiGet(getGenerationKey(),
+                Arrays.asList(GLOBAL_GENERATION_FIELD, principalField));
+        final long[] generations = new long[2];
+        for (int i = 0; null != values && i < values.size() && i < 2; i++) {
+            if (null != values.get(i)) {
+                generations[i] = Long.parseLong(values.get(i).toString());
+            }
+        }
+        cacheGeneration(GLOBAL_GENERATION_FIELD, generations[0]);
+        cacheGeneration(principalField, generations[1]);
+        return generations;
+    }
+
+    /**
+     * 本地缓存代数
+     *
+     * @param field      代数 Hash 字段
+     * @param generation 代数
+     */
+    private void cacheGeneration(String field, Long generation) {
+        if (null != generationCache && null != generation) {
+            generationCache.put(field, generation);
+        }
+    }
+
+    /**
+     * 用户已经没有会话时删除用户代数，避免代数 Hash 无限增长。一次管道取出各用户反向索引的会话数
+     * <p>
+     * 用户代数按时间增加，删除后重新开始的代数仍然大于之前发出的代数，并发创建的会话不会因此躲过失效
+     *
+     * @param principals the principals
+     */
+    private void clearPrincipalGenerations(Collection<String> principals) {
+        if (!isGenerationEnabled() || principals.isEmpty()) {
+            return;
+        }
+        final List<String> principalList = new ArrayList<>(new LinkedHashSet<>(principals));
+        final List<Object> counts = activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            for (String principal : principalList) {
+                connection.sCard(bytes(getPrincipalIndexKey(principal)));
+            }
+            return null;
+        });
+        final List<String> fields = new ArrayList<>();
+        for (int i = 0; i < principalList.size() && i < counts.size(); i++) {
+            if (counts.get(i) instanceof Number && ((Number) counts.get(i)).longValue() == 0L) {
+                fields.add(getPrincipalGenerationField(principalList.get(i)));
+            }
+        }
+        if (!fields.isEmpty()) {
+            log.debug("删除没有会话的用户代数，总数:{}", fields.size());
+            activeUserCache.opsForHash().delete(getGenerationKey(), fields.toArray());
+            if (null != generationCache) {
+                generationCache.invalidateAll(fields);
+            }
+        }
+    }
+
+    /**
+     * 清理代数 Hash 中已经没有会话的用户代数
+     */
+    private void validateGenerations() {
+        if (!isGenerationEnabled()) {
+            return;
+        }
+        final Set<Object> fields = activeUserCache.opsForHash().keys(getGenerationKey());
+        if (null == fields || fields.isEmpty()) {
+            return;
+        }
+        clearPrincipalGenerations(fields.stream().map(Object::toString).filter(f -> f.startsWith(PRINCIPAL_GENERATION_PREFIX))
+                .map(f -> f.substring(PRINCIPAL_GENERATION_PREFIX.length())).collect(Collectors.toList()));
+    }
+
+    /**
+     * 是否开启了按代失效
+     *
+     * @return the boolean
+     */
+    private boolean isGenerationEnabled() {
+        return ConfigManager.getConfig().getSession().isGenerationEnabled();
+    }
+
+    /**
+     * 未开启按代失效时抛出异常
+     */
+    private void checkGenerationEnabled() {
+        if (!isGenerationEnabled()) {
+            throw new SessionException("按代失效 Session 未开启，请设置 session.generationEnabled = true");
+        }
+    }
+
+    @Override
+    public void validateExpiredSessions() {
+        log.debug("清理无效在线用户ID=  开始");
+        //合法SimpleSessions,这里没有，但是上面2个里面有的，就是需要清理的,这里的数据带Session前缀
+        //集群模式下由集群连接在所有主节点上执行后合并
+        final Set<String> validSessions = sessionCache.keys(getSessionIdPrefix() + "*");
+        //如果当前就没有登录用户，Hash 和 Zset全部清空
+        if (null == validSessions || validSessions.isEmpty()) {
+            log.debug("没合法的SessionId, Hash 、Zset、用户权限缓存 全部清空");
+            //缓存的所有用户权限也全部清除，要按活动 Session ZSet 查找会话，先于 ZSet 删除
+            clearAllUserAuthorities();
+            activeUserCache.delete(getActiveUserCacheKeys());
+            activeUserCache.delete(getActiveSessionCacheKeys());
+            activeUserCache.delete(getSessionSummaryCacheKeys());
+            activeUserCache.delete(Arrays.asList(getPrincipalSearchIndexKey(), getHostSearchIndexKey(), getStartTimeSearchIndexKey()));
+        } else {
+            log.debug("当前合法Session总数:{},现在开始进行Hash和ZSet清理", validSessions.size());
+            //活动用户Hash，逐个分片清理
+            for (String activeUserCacheKey : getActiveUserCacheKeys()) {
+                validateActiveUsers(activeUserCacheKey, validSessions);
+            }
+            //活动Session ZSet，逐个分片清理
+            for (String activeSessionCacheKey : getActiveSessionCacheKeys()) {
+                validateActiveSessions(activeSessionCacheKey, validSessions);
+            }
+            //Session 摘要 Hash，逐个分片清理
+            for (String sessionSummaryCacheKey : getSessionSummaryCacheKeys()) {
+                validateSessionSummaries(sessionSummaryCacheKey, validSessions);
+            }
+            //在线用户查询索引
+            for (String searchIndexKey : Arrays.asList(getPrincipalSearchIndexKey(), getHostSearchIndexKey(), getStartTimeSearchIndexKey())) {
+                validateSearchIndex(searchIndexKey, validSessions);
+            }
+            //角色反向索引
+            validateRoleIndexes(validSessions);
+        }
+        //没有会话的用户代数
+        validateGenerations();
+        //发布事件
+        afterSessionValidScheduled();
+    }
+
+    /**
+     * 清理活动用户 Hash 中已经失效的 Session
+     *
+     * @param activeUserCacheKey 活动用户 Hash key(分片)
+     * @param validSessions      合法的 Session key
+     */
+    private void validateActiveUsers(String activeUserCacheKey, Set<String> validSessions) {
+        final Map<Object, Object> activeUsers = activeUserCache.opsForHash().entries(activeUserCacheKey);
+        if (!activeUsers.isEmpty()) {
+            log.debug("当前活动用户Hash总数:{}", activeUsers.size());
+            List<String> activeUsersToBeDeleted = new ArrayList<>();
+            for (Map.Entry<Object, Object> data : activeUsers.entrySet()) {
+                final Object value = data.getValue();
+                if (null != value) {
+                    String sessionKey = getSessionKey(value.toString());
+                    //合法session里没有这个value，说明这个无效了
+                    if (!validSessions.contains(sessionKey)) {
+                        //把 principal (key) 放入待删除列表
+                        activeUsersToBeDeleted.add(data.getKey().toString());
+                    }
+                }
+            }
+            log.debug("当前 待清理 活动用户Hash总数:{}", activeUsersToBeDeleted.size());
+            if (!activeUsersToBeDeleted.isEmpty()) {
+                log.debug("被清理的 活动用户Hash，总数:{}", activeUsersToBeDeleted.size());
+                activeUserCache.opsForHash().delete(activeUserCacheKey, activeUsersToBeDeleted.toArray());
+            }
+        }
+    }
+
+    /**
+     * 清理活动 Session ZSet 中已经失效的 Session
+     *
+     * @param activeSessionCacheKey 活动 Session ZSet key(分片)
+     * @param validSessions         合法的 Session key
+     */
+    private void validateActiveSessions(String activeSessionCacheKey, Set<String> validSessions) {
+        final Set<String> activeSessions = activeUserCache.opsForZSet().range(activeSessionCacheKey, 0, -1);
+        if (null != activeSessions && !activeSessions.isEmpty()) {
+            log.debug("当前 活动Session ZSet 总数:{}", activeSessions.size());
+            final List<String> activeSessionsToBeDeleted =
+                    activeSessions.stream().filter(d -> !validSessions.contains(getSessionKey(d)))
+                            .collect(Collectors.toList());
+            if (!activeSessionsToBeDeleted.isEmpty()) {
+                log.debug("被清理的 活动Session ZSet，总数:{}", activeSessionsToBeDeleted.size());
+                activeUserCache.opsForZSet().remove(activeSessionCacheKey, activeSessionsToBeDeleted.toArray());
+            }
+        } else {
+            log.debug("当前 活动Session ZSet 为空，不做处理");
+        }
+    }
+
+    /**
+     * 清理 Session 摘要 Hash 中已经失效的 Session
+     *
+     * @param sessionSummaryCacheKey Session 摘要 Hash key(分片)
+     * @param validSessions          合法的 Session key
+     */
+    private void validateSessionSummaries(String sessionSummaryCacheKey, Set<String> validSessions) {
+        final Set<Object> sessionIds = activeUserCache.opsForHash().keys(sessionSummaryCacheKey);
+        if (null != sessionIds && !sessionIds.isEmpty()) {
+            final Object[] toBeDeleted = sessionIds.stream().filter(d -> !validSessions.contains(getSessionKey(d.toString()))).toArray();
+            if (toBeDeleted.length > 0) {
+                log.debug("被清理的 Session 摘要，总数:{}", toBeDeleted.length);
+                activeUserCache.opsForHash().delete(sessionSummaryCacheKey, toBeDeleted);
+            }
+        }
+    }
+
+    /**
+     * 清理角色反向索引中已经失效的 Session ，没有会话的角色从角色登记中移除
+     * <p>
+     * 角色反向索引没有过期时间，会话过期事件丢失时由这里兜底。管道一次取出全部角色的会话
+     *
+     * @param validSessions 合法的 Session key
+     */
+    private void validateRoleIndexes(Set<String> validSessions) {
+        final Set<String> roles = activeUserCache.opsForSet().members(getRoleRegistryKey());
+        if (null == roles || roles.isEmpty()) {
+            return;
+        }
+        final List<String> roleList = new ArrayList<>(roles);
+        final List<Object> members = activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            for (String role : roleList) {
+                connection.sMembers(bytes(getRoleIndexKey(role)));
+            }
+            return null;
+        });
+        final List<String> emptyRoles = new ArrayList<>();
+        for (int i = 0; i < roleList.size() && i < members.size(); i++) {
+            final Collection<?> sessionIds = members.get(i) instanceof Collection ? (Collection<?>) members.get(i) : Collections.emptyList();
+            final Object[] toBeDeleted = sessionIds.stream().filter(d -> !validSessions.contains(getSessionKey(d.toString()))).toArray();
+            if (toBeDeleted.length == sessionIds.size()) {
+                emptyRoles.add(roleList.get(i));
+            }
+            if (toBeDeleted.length > 0) {
+                log.debug("被清理的 角色反向索引:{}，总数:{}", roleList.get(i), toBeDeleted.length);
+                activeUserCache.opsForSet().remove(getRoleIndexKey(roleList.get(i)), toBeDeleted);
+            }
+        }
+        if (!emptyRoles.isEmpty()) {
+            activeUserCache.opsForSet().remove(getRoleRegistryKey(), emptyRoles.toArray());
+        }
+    }
+
+    /**
+     * 清理在线用户查询索引中已经失效的 Session
+     *
+     * @param searchIndexKey 查询索引 key
+     * @param validSessions  合法的 Session key
+     */
+    private void validateSearchIndex(String searchIndexKey, Set<String> validSessions) {
+        final Set<String> members = activeUserCache.opsForZSet().range(searchIndexKey, 0, -1);
+        if (null != members && !members.isEmpty()) {
+            final Object[] toBeDeleted = members.stream()
+                    .filter(d -> !validSessions.contains(getSessionKey(d.substring(d.lastIndexOf(SEARCH_INDEX_SEPARATOR) + 1)))).toArray();
+            if (toBeDeleted.length > 0) {
+                log.debug("被清理的 在线用户查询索引:{}，总数:{}", searchIndexKey, toBeDeleted.length);
+                activeUserCache.opsForZSet().remove(searchIndexKey, toBeDeleted);
+            }
+        }
+    }
+
+    /**
+     * 清理 zset 缓存和 hash 缓存
+     * <p>
+     * 主要提供给 redis 事件使用
+     * <p>
+     * 通过 DAO 删除的 Session ，删除脚本已经清除了全部索引，活动 Session ZSet 和摘要中都已经没有该会话，直接返回，不再重复清理
+     */
+    @Override
+    public void clearOnlineUserCache(String key) {
+        //集群模式下从 Session key 截取的是 {SessionId}
+        final String sessionId = unwrapHashTag(key);
+        readYourWrites.markWritten(sessionId);
+        final Double score = activeUserCache.opsForZSet().score(getActiveSessionCacheKey(sessionId), sessionId);
+        final Object summary = sessionCache.opsForHash().get(getSessionSummaryCacheKey(sessionId), sessionId);
+        if (null == score && null == summary) {
+            log.debug("Session 删除事件 ,key:[{}],索引已经清除，忽略", sessionId);
+            return;
+        }
+        //Session 属性与 Session 同时过期，被删除时一并删除
+        activeUserCache.delete(getSessionAttributesKey(sessionId));
+        //清理用户的权限缓存
+        log.debug("清理用户权限缓存,SessionId:[{}]", sessionId);
+        clearUserAuthorities(sessionId);
+        log.debug("Session 删除事件 ,key:[{}],从zSet删除", sessionId);
+        //删除ZSet中对应Key (SessionId)
+        final Long session = activeUserCache.opsForZSet().remove(getActiveSessionCacheKey(sessionId), sessionId);
+        log.debug("Session 删除事件 ,key:[{}],从 Session zSet 删除，结果:{}", sessionId, session);
+        //Session 已经不在了，由摘要得到 principal 和 host ，清理在线用户查询索引
+        String principal = null;
+        if (summary instanceof SessionSummary) {
+            final SessionSummary sessionSummary = (SessionSummary) summary;
+            principal = sessionSummary.getPrincipal();
+            if (null != principal) {
+                activeUserCache.opsForZSet().remove(getPrincipalSearchIndexKey(), searchMember(principal, sessionId));
+            }
+            if (null != sessionSummary.getHost()) {
+                activeUserCache.opsForZSet().remove(getHostSearchIndexKey(), searchMember(sessionSummary.getHost(), sessionId));
+            }
+        }
+        activeUserCache.opsForZSet().remove(getStartTimeSearchIndexKey(), sessionId);
+        activeUserCache.opsForHash().delete(getSessionSummaryCacheKey(sessionId), sessionId);
+        if (null != principal) {
+            clearActiveUser(principal, sessionId);
+        } else {
+            clearActiveUserInAllShards(sessionId);
+        }
+    }
+
+    /**
+     * 已知 principal 时，只清理该用户所在分片的活动用户映射和 principal 反向索引，一次管道完成
+     *
+     * @param principal the principal
+     * @param sessionId the session id
+     */
+    private void clearActiveUser(String principal, String sessionId) {
+        final byte[] member = bytes(sessionId);
+        activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            connection.eval(DELETE_ACTIVE_USER_SCRIPT, ReturnType.INTEGER, 1, bytes(getActiveUserCacheKey(principal)), bytes(principal), member);
+            connection.sRem(bytes(getPrincipalIndexKey(principal)), member);
+            return null;
+        });
+        log.debug("Session 删除事件 ,key:[{}],从 User Hash 删除，principal:{}", sessionId, principal);
+        clearPrincipalGenerations(Collections.singletonList(principal));
+    }
+
+    /**
+     * 没有摘要、不知道 principal 时，管道一次拿到所有 Hash 分片中的数据，找到指向本会话的映射删除
+     *
+     * @param sessionId the session id
+     */
+    private void clearActiveUserInAllShards(String sessionId) {
+        final List<String> activeUserCacheKeys = getActiveUserCacheKeys();
+        final List<Object> shards = activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            for (String activeUserCacheKey : activeUserCacheKeys) {
+                connection.hGetAll(bytes(activeUserCacheKey));
+            }
+            return null;
+        });
+        for (int i = 0; i < shards.size() && i < activeUserCacheKeys.size(); i++) {
+            if (!(shards.get(i) instanceof Map)) {
+                continue;
+            }
+            List<String> toBeDeleted = new ArrayList<>();
+            //遍历，如果value(sessionId)  与传入的SessionId相同,把key加入待删除List
+            for (Map.Entry<?, ?> data : ((Map<?, ?>) shards.get(i)).entrySet()) {
+                if (sessionId.equals(data.getValue())) {
+                    toBeDeleted.add(data.getKey().toString());
+                }
+            }
+            // Hash 中有数据要删除
+            if (!toBeDeleted.isEmpty()) {
+                final Long user = activeUserCache.opsForHash().delete(activeUserCacheKeys.get(i), toBeDeleted.toArray());
+                log.debug("Session 删除事件 ,key:[{}],从 User Hash 删除，结果:{}", sessionId, user);
+                for (String principal : toBeDeleted) {
+                    activeUserCache.opsForSet().remove(getPrincipalIndexKey(principal), sessionId);
+                }
+                clearPrincipalGenerations(toBeDeleted);
+            }
+        }
+    }
+
+    /////Session 属性
+
+    @Override
+    public Object getAttribute(String sessionId, String name) {
+        Object value = null;
+        if (isReplicaReadable(sessionId)) {
+            value = replicaSessionCache.opsForHash().get(getSessionAttributesKey(sessionId), name);
+        }
+        if (null == value) {
+            value = sessionCache.opsForHash().get(getSessionAttributesKey(sessionId), name);
+        }
+        return value;
+    }
+
+    @Override
+    public Map<String, Object> getAttributes(String sessionId) {
+        Map<Object, Object> entries = null;
+        if (isReplicaReadable(sessionId)) {
+            entries = replicaSessionCache.opsForHash().entries(getSessionAttributesKey(sessionId));
+        }
+        if (null == entries || entries.isEmpty()) {
+            entries = sessionCache.opsForHash().entries(getSessionAttributesKey(sessionId));
+        }
+        final Map<String, Object> attributes = new HashMap<>(entries.size());
+        entries.forEach((name, value) -> attributes.put(name.toString(), value));
+        return attributes;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setAttribute(String sessionId, String name, Object value) throws InvalidSessionException {
+        if (null == value) {
+            removeAttribute(sessionId, name);
+            return;
+        }
+        final byte[] serialized = ((RedisSerializer<Object>) sessionCache.getHashValueSerializer()).serialize(value);
+        //只写这一个字段，过期时间跟随 Session ，一次完成
+        final Long ttl = activeUserCache.execute(SET_ATTRIBUTE_SCRIPT, RedisSerializer.byteArray(), null,
+                Arrays.asList(getSessionKey(sessionId), getSessionAttributesKey(sessionId)), bytes(name), serialized);
+        readYourWrites.markWritten(sessionId);
+        if (null != ttl && ttl == -2) {
+            log.warn("设置 Session 属性失败，Session 不存在，SessionId:[{}]", sessionId);
+            throw new InvalidSessionException();
+        }
+    }
+
+    @Override
+    public void removeAttribute(String sessionId, String name) {
+        sessionCache.opsForHash().delete(getSessionAttributesKey(sessionId), name);
+        readYourWrites.markWritten(sessionId);
+    }
+
+    /////用户权限缓存
+
+
+    @Override
+    public void setUserAuthorities(String sessionId, List<? extends GrantedAuthority> authorities) {
+        final AuthorityProperty authority = ConfigManager.getConfig().getAuthority();
+        if (null != authorities && !authorities.isEmpty()) {
+            final GrantedAuthorityList list = GrantedAuthorityList.intern(authorities);
+            final String contentHash = list.getContentHash();
+            final String setKey = getAuthoritySetKey(contentHash);
+            //内容相同的权限只保存一份，已经存在时只续期
+            if (!Boolean.TRUE.equals(userAuthCache.expire(setKey, authority.getUserExpire(), TimeUnit.HOURS))) {
+                userAuthCache.opsForValue().set(setKey, new ArrayList<>(authorities), authority.getUserExpire(), TimeUnit.HOURS);
+                log.debug("缓存用户权限，新的权限集合:{}，权限总数:{}", contentHash, list.size());
+            }
+            authoritySets.put(contentHash, list);
+            //会话只保存摘要，随会话一起过期
+            final long ttl = getUserAuthoritiesTtl(sessionId);
+            activeUserCache.opsForValue().set(getAuthorityRefKey(sessionId), contentHash, ttl, TimeUnit.SECONDS);
+            readYourWrites.markWritten(sessionId);
+            indexRoles(sessionId, authorities, ttl);
+        } else {
+            log.warn("缓存用户权限失败，用户权限为空");
+        }
+    }
+
+    @Override
+    public List<? extends GrantedAuthority> getUserAuthorities(String sessionId) {
+        final boolean replica = isReplicaReadable(sessionId);
+        //会话的权限引用决定授权结果，总是从主节点读取，清除或者重新缓存的权限立即生效
+        final String contentHash = activeUserCache.opsForValue().get(getAuthorityRefKey(sessionId));
+        if (null == contentHash) {
+            return null;
+        }
+        GrantedAuthorityList list = authoritySets.getIfPresent(contentHash);
+        if (null == list) {
+            //权限集合按内容寻址，副本上读到的不会过时
+            Object value = null;
+            if (replica) {
+                value = replicaUserAuthCache.opsForValue().get(getAuthoritySetKey(contentHash));
+            }
+            if (null == value) {
+                value = userAuthCache.opsForValue().get(getAuthoritySetKey(contentHash));
+            }
+            final List<GrantedAuthority> stored = StrUtils.castList(value, GrantedAuthority.class);
+            //权限集合已经过期，按未缓存处理
+            if (null == stored || stored.isEmpty()) {
+                return null;
+            }
+            list = GrantedAuthorityList.intern(stored);
+            authoritySets.put(contentHash, list);
+        }
+        return list;
+    }
+
+    @Override
+    public void clearUserAuthorities(String sessionId) {
+        if (StrUtils.isNotBlank(sessionId)) {
+            log.info("清理系统用户缓存，SessionId:[{}]", sessionId);
+            clearUserAuthorities(Collections.singleton(sessionId));
+        } else {
+            log.warn("清理用户权限缓存失败，SessionID 为空");
+        }
+
+    }
+
+    @Override
+    public void clearAllUserAuthorities() {
+        readYourWrites.markAllWritten();
+        final AuthorityProperty authority = ConfigManager.getConfig().getAuthority();
+        //兼容旧版本的整体 Hash
         userAuthCache.delete(authority.getUserCachedKey());
+        //按活动 Session ZSet 删除每个会话的权限引用，不使用 keys 扫描
+        final List<String> sessionIds = rangeActiveSessions(0, -1);
+        if (!sessionIds.isEmpty()) {
+            activeUserCache.delete(sessionIds.stream().map(this::getAuthorityRefKey).collect(Collectors.toList()));
+        }
+        //角色反向索引一并删除，按内容共享的权限集合和 会话 -> 角色 的索引随 TTL 过期
+        final Set<String> roles = activeUserCache.opsForSet().members(getRoleRegistryKey());
+        final List<String> keys = new ArrayList<>();
+        keys.add(getRoleRegistryKey());
+        if (null != roles) {
+            for (String role : roles) {
+                keys.add(getRoleIndexKey(role));
+            }
+        }
+        activeUserCache.delete(keys);
+    }
+
+    @Override
+    public int clearUserAuthoritiesByRoles(Collection<String> roles) {
+        final List<String> roleList = new ArrayList<>(roles);
+        if (roleList.isEmpty()) {
+            return 0;
+        }
+        //管道一次取出全部角色的会话
+        final Set<String> sessionIds = getSessionIdsByRoles(roleList);
+        clearUserAuthorities(sessionIds);
+        log.info("按角色清理用户权限缓存，角色:{}，会话总数:{}", roleList, sessionIds.size());
+        return sessionIds.size();
+    }
+
+    @Override
+    public int clearUserAuthoritiesByPrincipal(String principal) {
+        if (StrUtils.isBlank(principal)) {
+            return 0;
+        }
+        final Set<String> sessionIds = activeUserCache.opsForSet().members(getPrincipalIndexKey(principal));
+        if (null == sessionIds || sessionIds.isEmpty()) {
+            return 0;
+        }
+        clearUserAuthorities(sessionIds);
+        log.info("按用户清理用户权限缓存，principal:{}，会话总数:{}", principal, sessionIds.size());
+        return sessionIds.size();
+    }
+
+    /**
+     * 为缓存的用户权限建立 角色 -> SessionId 反向索引，只索引 SimpleGrantedAuthority
+     * <p>
+     * 同时记录 会话 -> 角色 ，清除会话的用户权限缓存时据此清除反向索引。
+     * 重新缓存时先取出会话原来的角色，不再拥有的角色从反向索引中移除，再一次管道重建
+     * <p>
+     * 角色索引被多个会话共享，不设置过期时间，已经失效的会话由过期清理任务移除。
+     * 会话 -> 角色 索引比会话的用户权限缓存多保留一段时间，会话过期事件到达时还能读取
+     *
+     * @param sessionId   the session id
+     * @param authorities the authorities
+     * @param ttl         会话的用户权限缓存有效期，单位:秒
+     */
+    private void indexRoles(String sessionId, List<? extends GrantedAuthority> authorities, long ttl) {
+        final Set<String> roles = new LinkedHashSet<>(authorities.size());
+        for (GrantedAuthority authority : authorities) {
+            if (authority instanceof SimpleGrantedAuthority && null != authority.getAuthority()) {
+                roles.add(authority.getAuthority());
+            }
+        }
+        final String sessionRolesKey = getSessionRolesKey(sessionId);
+        final Set<String> previous = activeUserCache.opsForSet().members(sessionRolesKey);
+        final List<String> removed = null == previous ? Collections.emptyList()
+                : previous.stream().filter(role -> !roles.contains(role)).collect(Collectors.toList());
+        if (roles.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            final byte[] member = bytes(sessionId);
+            final byte[] rolesKey = bytes(sessionRolesKey);
+            final byte[] registryKey = bytes(getRoleRegistryKey());
+            for (String role : removed) {
+                connection.sRem(bytes(getRoleIndexKey(role)), member);
+            }
+            connection.del(rolesKey);
+            for (String role : roles) {
+                final byte[] roleKey = bytes(getRoleIndexKey(role));
+                connection.sAdd(roleKey, member);
+                connection.sAdd(rolesKey, bytes(role));
+                connection.sAdd(registryKey, bytes(role));
+            }
+            if (!roles.isEmpty()) {
+                connection.expire(rolesKey, ttl + SESSION_ROLES_GRACE_SECONDS);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 批量清除会话的用户权限缓存和角色反向索引
+     * <p>
+     * 会话引用一次 DEL ，反向索引各一次管道，与会话数量无关。按内容共享的权限集合可能被其他会话引用，不删除
+     *
+     * @param sessionIds the session ids
+     */
+    private void clearUserAuthorities(Collection<String> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        final List<String> ids = new ArrayList<>(sessionIds);
+        readYourWrites.markWritten(ids);
+        activeUserCache.delete(ids.stream().map(this::getAuthorityRefKey).collect(Collectors.toList()));
+        final List<Object> sessionRoles = activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            for (String sessionId : ids) {
+                connection.sMembers(bytes(getSessionRolesKey(sessionId)));
+            }
+            return null;
+        });
+        activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < ids.size(); i++) {
+                final byte[] member = bytes(ids.get(i));
+                final Object roles = i < sessionRoles.size() ? sessionRoles.get(i) : null;
+                if (roles instanceof Collection) {
+                    for (Object role : (Collection<?>) roles) {
+                        connection.sRem(bytes(getRoleIndexKey(role.toString())), member);
+                    }
+                }
+                connection.del(bytes(getSessionRolesKey(ids.get(i))));
+            }
+            return null;
+        });
     }
 
     /**
@@ -536,6 +1693,114 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
         this.cookieService = cookieService;
     }
 
+    /**
+     * 设置只读副本，Session 数据、Session 属性、Session 摘要和按内容共享的权限集合从副本读取，写操作和其他读操作仍然在主节点
+     * <p>
+     * 限制: 副本有复制延迟。与安全相关的状态不从副本读取: Session 是否存在由主节点 EXISTS 确认，会话的权限引用从主节点读取，
+     * 所以副本只节省 Session 数据和权限集合的传输，每次读取 Session 仍然有一次主节点往返。
+     * Session 属性和在线用户列表在复制延迟内可能读到旧数据，读己之写窗口只覆盖本节点的写入。
+     * <p>
+     * 副本模板使用与主节点相同的序列化方式，如: 以副本的连接工厂调用 HeimdallRedisConfig 中的方法创建，
+     * 或者直接使用 {@link #setReadReplica(RedisConnectionFactory)} 。
+     * 本地可以启动两个 redis-server 验证，副本以 --replicaof 127.0.0.1 6379 启动，集成测试见 RedisReadReplicaTest
+     *
+     * @param sessionCache  副本上的 Session 缓存
+     * @param userAuthCache 副本上的用户权限缓存
+     */
+    public void setReadReplicas(RedisTemplate<String, SimpleSession> sessionCache,
+                                RedisTemplate<String, List<? extends GrantedAuthority>> userAuthCache) {
+        if (null == sessionCache || null == userAuthCache) {
+            throw new SessionException("只读副本 RedisTemplate 不能为空");
+        }
+        this.replicaSessionCache = sessionCache;
+        this.replicaUserAuthCache = userAuthCache;
+    }
+
+    /**
+     * 以副本的连接工厂设置只读副本，副本模板沿用主节点模板的序列化方式
+     *
+     * @param replicaConnectionFactory 副本的连接工厂
+     * @see #setReadReplicas(RedisTemplate, RedisTemplate)
+     */
+    public void setReadReplica(RedisConnectionFactory replicaConnectionFactory) {
+        if (null == replicaConnectionFactory) {
+            throw new SessionException("只读副本连接工厂不能为空");
+        }
+        setReadReplicas(replicaTemplate(sessionCache, replicaConnectionFactory), replicaTemplate(userAuthCache, replicaConnectionFactory));
+    }
+
+    /**
+     * 关闭按配置创建的副本连接
+     */
+    public void shutdown() {
+        final LettuceConnectionFactory factory = replicaConnectionFactory;
+        if (null != factory) {
+            replicaConnectionFactory = null;
+            factory.destroy();
+        }
+    }
+
+    /**
+     * 按配置创建副本的连接工厂，密码、库和客户端配置沿用主节点的 Lettuce 连接
+     *
+     * @param host the host
+     * @param port the port
+     * @return the lettuce connection factory
+     */
+    private LettuceConnectionFactory createReplicaConnectionFactory(String host, int port) {
+        final RedisConnectionFactory primary = sessionCache.getConnectionFactory();
+        if (!(primary instanceof LettuceConnectionFactory)) {
+            throw new CacheException("按配置使用只读副本需要 Lettuce 连接，其他连接请调用 setReadReplica 设置");
+        }
+        final LettuceConnectionFactory lettuce = (LettuceConnectionFactory) primary;
+        final RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(host, port);
+        configuration.setDatabase(lettuce.getDatabase());
+        if (null != lettuce.getPassword()) {
+            configuration.setPassword(lettuce.getPassword());
+        }
+        final LettuceConnectionFactory factory = new LettuceConnectionFactory(configuration, lettuce.getClientConfiguration());
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    /**
+     * 副本上的模板，序列化方式与主节点模板一致
+     *
+     * @param primary the primary
+     * @param factory 副本的连接工厂
+     * @param <V>     the type parameter
+     * @return the redis template
+     */
+    private static <V> RedisTemplate<String, V> replicaTemplate(RedisTemplate<String, V> primary, RedisConnectionFactory factory) {
+        final RedisTemplate<String, V> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(primary.getKeySerializer());
+        template.setValueSerializer(primary.getValueSerializer());
+        template.setHashKeySerializer(primary.getHashKeySerializer());
+        template.setHashValueSerializer(primary.getHashValueSerializer());
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * 设置读己之写窗口时长，默认 {@link ReadYourWritesWindow#DEFAULT_WINDOW_MILLIS}
+     *
+     * @param windowMillis 窗口时长，单位:毫秒，不小于副本的复制延迟
+     */
+    public void setReadYourWritesWindow(long windowMillis) {
+        this.readYourWrites = new ReadYourWritesWindow(windowMillis);
+    }
+
+    /**
+     * 是否可以从副本读取会话的数据: 设置了副本，并且会话不在读己之写窗口内
+     *
+     * @param sessionId the session id
+     * @return the boolean
+     */
+    private boolean isReplicaReadable(String sessionId) {
+        return null != replicaSessionCache && !readYourWrites.isRecentlyWritten(sessionId);
+    }
+
     /**
      * 获取 SessionID 前缀
      *
@@ -546,6 +1811,59 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
         return StrUtils.isBlank(sessionIdPrefix) ? DEFAULT_SESSION_ID_PREFIX : sessionIdPrefix;
     }
 
+    /**
+     * Session 属性 key ，集群模式下与 Session 在同一个 slot
+     *
+     * @param sessionId the session id
+     * @return the session attributes key
+     */
+    public String getSessionAttributesKey(String sessionId) {
+        final String prefix = ConfigManager.getConfig().getSession().getSessionAttributePrefix();
+        return (StrUtils.isBlank(prefix) ? DEFAULT_SESSION_ATTRIBUTE_PREFIX : prefix) + hashTag(sessionId);
+    }
+
+    /**
+     * 是否集群模式
+     *
+     * @return the boolean
+     */
+    public boolean isClusterMode() {
+        return ConfigManager.getConfig().getSession().isClusterMode();
+    }
+
+    /**
+     * Session 缓存 key ，集群模式下 SessionId 作为 hash tag
+     *
+     * @param sessionId the session id
+     * @return the session key
+     */
+    public String getSessionKey(String sessionId) {
+        return getSessionIdPrefix() + hashTag(sessionId);
+    }
+
+    /**
+     * 集群模式下把会话相关的 key 固定到 SessionId 所在的 slot
+     *
+     * @param sessionId the session id
+     * @return the string
+     */
+    private String hashTag(String sessionId) {
+        return isClusterMode() ? "{" + sessionId + "}" : sessionId;
+    }
+
+    /**
+     * 去掉 hash tag 的花括号
+     *
+     * @param sessionId the session id
+     * @return the string
+     */
+    private static String unwrapHashTag(String sessionId) {
+        if (null != sessionId && sessionId.length() > 1 && sessionId.charAt(0) == '{' && sessionId.charAt(sessionId.length() - 1) == '}') {
+            return sessionId.substring(1, sessionId.length() - 1);
+        }
+        return sessionId;
+    }
+
     /**
      * Gets global session timeout.
      *
@@ -577,27 +1895,408 @@ public class RedisSessionDaoImpl extends AbstractSessionEvent implements Session
     }
 
     /**
-     * 获取当前分页起始记录索引
+     * 活动 Session ZSet 和活动用户 Hash 的分片数量
+     *
+     * @return the active index shards
+     */
+    public int getActiveIndexShards() {
+        return Math.max(ConfigManager.getConfig().getSession().getActiveIndexShards(), 1);
+    }
+
+    /**
+     * SessionId 所在的活动 Session ZSet 分片 key
+     *
+     * @param sessionId the session id
+     * @return the active session cache key
+     */
+    public String getActiveSessionCacheKey(String sessionId) {
+        return shardKey(getActiveSessionCacheKey(), sessionId);
+    }
+
+    /**
+     * principal 所在的活动用户 Hash 分片 key
+     *
+     * @param principal the principal
+     * @return the active user cache key
+     */
+    public String getActiveUserCacheKey(String principal) {
+        return shardKey(getActiveUserCacheKey(), principal);
+    }
+
+    /**
+     * 全部活动 Session ZSet 分片 key
+     *
+     * @return the active session cache keys
+     */
+    public List<String> getActiveSessionCacheKeys() {
+        return shardKeys(getActiveSessionCacheKey());
+    }
+
+    /**
+     * 全部活动用户 Hash 分片 key
      *
-     * @param page the page
-     * @param size the size
-     * @return the start
+     * @return the active user cache keys
      */
-    private long getStart(int page, int size) {
-        long l = (long) (page - 1) * (long) size;
-        l = l < 0 ? 0 : l;
-        return l;
+    public List<String> getActiveUserCacheKeys() {
+        return shardKeys(getActiveUserCacheKey());
+    }
+
+    /**
+     * Gets session summary cache key.
+     *
+     * @return the session summary cache key
+     */
+    public String getSessionSummaryCacheKey() {
+        final String sessionSummaryCacheKey = ConfigManager.getConfig().getSession().getSessionSummaryCacheKey();
+        return StrUtils.isBlank(sessionSummaryCacheKey) ? DEFAULT_SESSION_SUMMARY_CACHE_KEY : sessionSummaryCacheKey;
+    }
+
+    /**
+     * SessionId 所在的 Session 摘要 Hash 分片 key ，与活动 Session ZSet 的分片一致
+     *
+     * @param sessionId the session id
+     * @return the session summary cache key
+     */
+    public String getSessionSummaryCacheKey(String sessionId) {
+        return shardKey(getSessionSummaryCacheKey(), sessionId);
+    }
+
+    /**
+     * 全部 Session 摘要 Hash 分片 key
+     *
+     * @return the session summary cache keys
+     */
+    public List<String> getSessionSummaryCacheKeys() {
+        return shardKeys(getSessionSummaryCacheKey());
+    }
+
+    /**
+     * 全局代数和用户代数 Hash key
+     *
+     * @return the generation key
+     */
+    public String getGenerationKey() {
+        return joinKey(getActiveSessionCacheKey(), "generations");
+    }
+
+    /**
+     * 代数 Hash 中用户代数的字段
+     *
+     * @param principal the principal
+     * @return the string
+     */
+    private static String getPrincipalGenerationField(String principal) {
+        return PRINCIPAL_GENERATION_PREFIX + principal;
+    }
+
+    /**
+     * principal 查询索引 key
+     *
+     * @return the principal search index key
+     */
+    public String getPrincipalSearchIndexKey() {
+        return joinKey(getActiveSessionCacheKey(), "search", "principal");
+    }
+
+    /**
+     * host 查询索引 key
+     *
+     * @return the host search index key
+     */
+    public String getHostSearchIndexKey() {
+        return joinKey(getActiveSessionCacheKey(), "search", "host");
+    }
+
+    /**
+     * 登录时间索引 key
+     *
+     * @return the start time search index key
+     */
+    public String getStartTimeSearchIndexKey() {
+        return joinKey(getActiveSessionCacheKey(), "search", "start");
+    }
+
+    /**
+     * 字典序查询索引成员: 值 + \0 + SessionId
+     *
+     * @param value     the value
+     * @param sessionId the session id
+     * @return the string
+     */
+    private static String searchMember(String value, String sessionId) {
+        return value + SEARCH_INDEX_SEPARATOR + sessionId;
+    }
+
+    /**
+     * 按值的哈希计算分片 key ，不分片时就是原 key
+     * <p>
+     * String.hashCode 的算法是固定的，不同节点计算结果一致
+     *
+     * @param key   the key
+     * @param value the value
+     * @return the string
+     */
+    private String shardKey(String key, String value) {
+        final int shards = getActiveIndexShards();
+        if (shards == 1) {
+            return key;
+        }
+        return joinKey(key, String.valueOf(Math.floorMod(String.valueOf(value).hashCode(), shards)));
+    }
+
+    /**
+     * 全部分片 key
+     *
+     * @param key the key
+     * @return the list
+     */
+    private List<String> shardKeys(String key) {
+        final int shards = getActiveIndexShards();
+        if (shards == 1) {
+            return Collections.singletonList(key);
+        }
+        final List<String> keys = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            keys.add(joinKey(key, String.valueOf(i)));
+        }
+        return keys;
+    }
+
+    /**
+     * 按排名获取活动 SessionId ，与 ZRANGE 含义相同，end 为 -1 时获取全部
+     * <p>
+     * 分片时每个分片取前 end + 1 条，一次管道完成，由 {@link ActiveSessionPages} 合并后截取
+     *
+     * @param start 起始排名
+     * @param end   结束排名(包含)
+     * @return the list
+     */
+    private List<String> rangeActiveSessions(long start, long end) {
+        final List<String> keys = getActiveSessionCacheKeys();
+        if (keys.size() == 1) {
+            final Set<String> range = activeUserCache.opsForZSet().range(keys.get(0), start, end);
+            return null == range ? Collections.emptyList() : new ArrayList<>(range);
+        }
+        final List<Object> shards = activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.zRangeWithScores(bytes(key), 0, end);
+            }
+            return null;
+        });
+        return ActiveSessionPages.merge(shards, start, end);
+    }
+
+    /**
+     * 活动 Session 总数，各分片 ZCARD 求和，一次管道完成
+     *
+     * @return the long
+     */
+    private long countActiveSessions() {
+        final List<String> keys = getActiveSessionCacheKeys();
+        final List<Object> counts = activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.zCard(bytes(key));
+            }
+            return null;
+        });
+        long count = 0L;
+        for (Object c : counts) {
+            if (c instanceof Number) {
+                count += ((Number) c).longValue();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 返回多值结果的脚本
+     * <p>
+     * DefaultRedisScript 的结果类型只能传入 List.class ，在这里统一转换为带泛型的类型
+     *
+     * @param script 脚本内容
+     * @return the redis script
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static RedisScript<List<Object>> listScript(String script) {
+        return (RedisScript<List<Object>>) (RedisScript) new DefaultRedisScript<>(script, List.class);
+    }
+
+    /**
+     * 按 Session 缓存的序列化方式序列化 Session ，作为脚本参数原样写入
+     *
+     * @param session the session
+     * @return the byte [ ]
+     */
+    @SuppressWarnings("unchecked")
+    private byte[] serializeSession(SimpleSession session) {
+        final byte[] value = ((RedisSerializer<Object>) sessionCache.getValueSerializer()).serialize(session);
+        if (null == value) {
+            throw new SessionException("Session 序列化失败");
+        }
+        return value;
+    }
+
+    /**
+     * 摘要中的最后访问时间是否需要更新: 两次访问不在同一个 {@link #SUMMARY_REFRESH_MILLIS} 区间内
+     * <p>
+     * 每个会话每个区间最多重写一次摘要，在线用户列表中的最后访问时间误差不超过一个区间
+     *
+     * @param previous 上次访问时间
+     * @param current  本次访问时间
+     * @return the boolean
+     */
+    static boolean isSummaryStale(Date previous, Date current) {
+        if (null == previous || null == current) {
+            return true;
+        }
+        return Math.floorDiv(previous.getTime(), SUMMARY_REFRESH_MILLIS) != Math.floorDiv(current.getTime(), SUMMARY_REFRESH_MILLIS);
+    }
+
+    /**
+     * 按 Session 缓存 Hash 值的序列化方式序列化 Session 摘要
+     *
+     * @param summary the summary
+     * @return the byte [ ]
+     */
+    @SuppressWarnings("unchecked")
+    private byte[] serializeSummary(SessionSummary summary) {
+        final byte[] value = ((RedisSerializer<Object>) sessionCache.getHashValueSerializer()).serialize(summary);
+        if (null == value) {
+            throw new SessionException("Session 摘要序列化失败");
+        }
+        return value;
+    }
+
+    /**
+     * 会话的用户权限缓存有效期: 会话剩余时长，不超过用户权限缓存时长
+     *
+     * @param sessionId the session id
+     * @return 有效期 ，单位:秒
+     */
+    private long getUserAuthoritiesTtl(String sessionId) {
+        final long max = getUserAuthoritiesMaxTtl();
+        final Long sessionTtl = sessionCache.getExpire(getSessionKey(sessionId));
+        //会话不存在(-2)或者没有过期时间(-1)，按用户权限缓存时长
+        if (null == sessionTtl || sessionTtl <= 0) {
+            return max;
+        }
+        return Math.min(sessionTtl, max);
+    }
+
+    /**
+     * 会话续签时，Session 属性、反向索引和缓存的用户权限一起续期，一次管道完成
+     *
+     * @param session the session
+     * @param timeout 续签后的会话时长，单位:秒
+     */
+    private void renewIndexes(SimpleSession session, long timeout) {
+        final long ttl = Math.min(timeout, getUserAuthoritiesMaxTtl());
+        activeUserCache.executePipelined((RedisCallback<Object>) connection -> {
+            if (null != session.getDetails()) {
+                connection.expire(bytes(getPrincipalIndexKey(session.getDetails().getPrincipal())), timeout);
+            }
+            connection.expire(bytes(getSessionAttributesKey(session.getId())), timeout);
+            connection.expire(bytes(getAuthorityRefKey(session.getId())), ttl);
+            //角色反向索引没有过期时间，不用续期
+            connection.expire(bytes(getSessionRolesKey(session.getId())), ttl + SESSION_ROLES_GRACE_SECONDS);
+            return null;
+        });
+    }
+
+    /**
+     * 会话的用户权限缓存最长有效期，即用户权限缓存时长
+     *
+     * @return 有效期 ，单位:秒
+     */
+    private long getUserAuthoritiesMaxTtl() {
+        return TimeUnit.HOURS.toSeconds(ConfigManager.getConfig().getAuthority().getUserExpire());
+    }
+
+    /**
+     * 会话 -> 权限集合摘要 key ，每个会话一个，随会话过期
+     *
+     * @param sessionId the session id
+     * @return the authority ref key
+     */
+    public String getAuthorityRefKey(String sessionId) {
+        return joinKey(ConfigManager.getConfig().getAuthority().getUserCachedKey(), "session", hashTag(sessionId));
+    }
+
+    /**
+     * 按内容摘要共享存储的权限集合 key
+     *
+     * @param contentHash 内容摘要
+     * @return the authority set key
+     */
+    public String getAuthoritySetKey(String contentHash) {
+        return joinKey(ConfigManager.getConfig().getAuthority().getUserCachedKey(), "sets", contentHash);
+    }
+
+    /**
+     * principal -> SessionId 反向索引 key
+     *
+     * @param principal the principal
+     * @return the principal index key
+     */
+    public String getPrincipalIndexKey(String principal) {
+        return joinKey(getActiveUserCacheKey(), "sessions", principal);
+    }
+
+    /**
+     * 角色 -> SessionId 反向索引 key
+     *
+     * @param role the role
+     * @return the role index key
+     */
+    public String getRoleIndexKey(String role) {
+        return joinKey(ConfigManager.getConfig().getAuthority().getUserCachedKey(), "roles", role);
+    }
+
+    /**
+     * 会话 -> 角色 索引 key
+     *
+     * @param sessionId the session id
+     * @return the session roles key
+     */
+    private String getSessionRolesKey(String sessionId) {
+        return joinKey(ConfigManager.getConfig().getAuthority().getUserCachedKey(), "session-roles", hashTag(sessionId));
+    }
+
+    /**
+     * 建立了反向索引的全部角色，清除所有用户权限缓存时使用
+     *
+     * @return the role registry key
+     */
+    private String getRoleRegistryKey() {
+        return joinKey(ConfigManager.getConfig().getAuthority().getUserCachedKey(), "roles");
+    }
+
+    /**
+     * 以 : 连接 key
+     *
+     * @param prefix the prefix
+     * @param parts  the parts
+     * @return the string
+     */
+    private static String joinKey(String prefix, String... parts) {
+        final StringBuilder key = new StringBuilder(prefix);
+        for (String part : parts) {
+            if (key.length() > 0 && key.charAt(key.length() - 1) != ':') {
+                key.append(':');
+            }
+            key.append(part);
+        }
+        return key.toString();
     }
 
     /**
-     * 获取当前分页结束记录索引
+     * 按 StringRedisTemplate 的序列化方式(UTF-8)转换为字节
      *
-     * @param page the page
-     * @param size the size
-     * @return the end
+     * @param value the value
+     * @return the byte [ ]
      */
-    private long getEnd(int page, int size) {
-        return page * size;
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
     }
 
 
@@ -0,0 +1,83 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.cache.redis.session;
+
+import org.junit.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * 活动 Session 分页计算测试
+ *
+ * @author Luter
+ */
+public class ActiveSessionPagesTest {
+    private static Set<ZSetOperations.TypedTuple<String>> shard(Object... scoreAndIds) {
+        final Set<ZSetOperations.TypedTuple<String>> tuples = new LinkedHashSet<>();
+        for (int i = 0; i < scoreAndIds.length; i += 2) {
+            tuples.add(new DefaultTypedTuple<>((String) scoreAndIds[i + 1], ((Number) scoreAndIds[i]).doubleValue()));
+        }
+        return tuples;
+    }
+
+    @Test
+    public void pageCoversExactlyPageSizeRanks() {
+        assertEquals(0, ActiveSessionPages.start(1, 10));
+        assertEquals(9, ActiveSessionPages.end(1, 10));
+        assertEquals(10, ActiveSessionPages.start(2, 10));
+        assertEquals(19, ActiveSessionPages.end(2, 10));
+        assertEquals(10, ActiveSessionPages.end(2, 10) - ActiveSessionPages.start(2, 10) + 1);
+    }
+
+    @Test
+    public void invalidPageArgumentsNeverSelectEverything() {
+        assertEquals(0, ActiveSessionPages.start(0, 10));
+        assertEquals(0, ActiveSessionPages.start(1, 0));
+        //结束排名为 -1 时 ZRANGE 返回全部
+        assertEquals(0, ActiveSessionPages.end(1, 0));
+        assertEquals(0, ActiveSessionPages.end(1, -5));
+    }
+
+    @Test
+    public void shardsAreMergedByScoreThenSessionId() {
+        final List<Object> shards = Arrays.asList(shard(1, "a", 4, "d", 5, "e"), shard(2, "b", 3, "c", 3, "bb"));
+        assertEquals(Arrays.asList("a", "b", "bb", "c", "d", "e"), ActiveSessionPages.merge(shards, 0, -1));
+    }
+
+    @Test
+    public void mergedPagesDoNotOverlap() {
+        final List<Object> shards = Arrays.asList(shard(1, "a", 4, "d", 5, "e"), shard(2, "b", 3, "c"));
+        final List<String> first = ActiveSessionPages.merge(shards, ActiveSessionPages.start(1, 2), ActiveSessionPages.end(1, 2));
+        final List<String> second = ActiveSessionPages.merge(shards, ActiveSessionPages.start(2, 2), ActiveSessionPages.end(2, 2));
+        final List<String> third = ActiveSessionPages.merge(shards, ActiveSessionPages.start(3, 2), ActiveSessionPages.end(3, 2));
+        assertEquals(Arrays.asList("a", "b"), first);
+        assertEquals(Arrays.asList("c", "d"), second);
+        assertEquals(Collections.singletonList("e"), third);
+    }
+
+    @Test
+    public void nonTupleShardResultsAreIgnored() {
+        final List<Object> shards = Arrays.asList(null, shard(1, "a"), "error");
+        assertEquals(Collections.singletonList("a"), ActiveSessionPages.merge(shards, 0, 9));
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.cache.redis.session;
+
+import com.luter.heimdall.cache.redis.config.HeimdallRedisConfig;
+import com.luter.heimdall.core.authorization.authority.GrantedAuthority;
+import com.luter.heimdall.core.authorization.authority.SimpleGrantedAuthority;
+import com.luter.heimdall.core.config.Config;
+import com.luter.heimdall.core.config.ConfigManager;
+import com.luter.heimdall.core.details.DefaultSimpleUserDetails;
+import com.luter.heimdall.core.session.SimpleSession;
+import com.luter.heimdall.core.utils.StrUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 只读副本集成测试，需要两个 redis-server ，没有指定时跳过
+ * <p>
+ * 第二个 redis-server 不作为副本启动，测试直接在上面写入数据，模拟复制延迟中还没有同步删除的副本:
+ * <pre>
+ * redis-server --port 6379
+ * redis-server --port 6380
+ * mvn test -Dheimdall.test.redis.primary=127.0.0.1:6379 -Dheimdall.test.redis.replica=127.0.0.1:6380
+ * </pre>
+ *
+ * @author Luter
+ */
+public class RedisReadReplicaTest {
+    private final HeimdallRedisConfig redisConfig = new HeimdallRedisConfig();
+    private LettuceConnectionFactory primaryFactory;
+    private StringRedisTemplate primaryActiveUserCache;
+    private RedisTemplate<String, List<? extends GrantedAuthority>> primaryUserAuthCache;
+    private LettuceConnectionFactory laggingReplicaFactory;
+    private RedisTemplate<String, SimpleSession> laggingSessionCache;
+    private RedisTemplate<String, List<? extends GrantedAuthority>> laggingUserAuthCache;
+    private StringRedisTemplate laggingActiveUserCache;
+    private RedisSessionDaoImpl sessionDAO;
+    private SimpleSession session;
+
+    private static LettuceConnectionFactory connect(String address) {
+        final String[] hostAndPort = address.split(":");
+        final LettuceConnectionFactory factory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(hostAndPort[0], Integer.parseInt(hostAndPort[1])));
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    private RedisSessionDaoImpl newSessionDAO() {
+        return new RedisSessionDaoImpl(redisConfig.redisStringSimpleSessionTemplate(primaryFactory), primaryActiveUserCache, primaryUserAuthCache, null);
+    }
+
+    @Before
+    public void setUp() {
+        final String primary = System.getProperty("heimdall.test.redis.primary");
+        final String replica = System.getProperty("heimdall.test.redis.replica");
+        Assume.assumeTrue("未指定 heimdall.test.redis.primary 和 heimdall.test.redis.replica", StrUtils.isNotBlank(primary) && StrUtils.isNotBlank(replica));
+        final Config config = new Config();
+        final String[] replicaHostAndPort = replica.split(":");
+        config.getSession().setReadReplicaHost(replicaHostAndPort[0]);
+        config.getSession().setReadReplicaPort(Integer.parseInt(replicaHostAndPort[1]));
+        //不使用读己之写窗口，写完立即从副本读取
+        config.getSession().setReadYourWritesMillis(0);
+        ConfigManager.setConfig(config);
+        primaryFactory = connect(primary);
+        primaryActiveUserCache = new StringRedisTemplate(primaryFactory);
+        primaryUserAuthCache = redisConfig.listRedisTemplate(primaryFactory);
+        laggingReplicaFactory = connect(replica);
+        laggingSessionCache = redisConfig.redisStringSimpleSessionTemplate(laggingReplicaFactory);
+        laggingUserAuthCache = redisConfig.listRedisTemplate(laggingReplicaFactory);
+        laggingActiveUserCache = new StringRedisTemplate(laggingReplicaFactory);
+        sessionDAO = newSessionDAO();
+        final DefaultSimpleUserDetails details = new DefaultSimpleUserDetails();
+        details.setPrincipal("replica-test-" + System.nanoTime());
+        details.setEnabled(true);
+        session = sessionDAO.create(details);
+        //模拟已经复制到副本的 Session
+        laggingSessionCache.opsForValue().set(sessionDAO.getSessionKey(session.getId()), session);
+    }
+
+    @After
+    public void tearDown() {
+        if (null != sessionDAO) {
+            sessionDAO.delete(session);
+            laggingSessionCache.delete(sessionDAO.getSessionKey(session.getId()));
+            laggingActiveUserCache.delete(sessionDAO.getAuthorityRefKey(session.getId()));
+            sessionDAO.shutdown();
+            primaryFactory.destroy();
+            laggingReplicaFactory.destroy();
+        }
+    }
+
+    @Test
+    public void sessionIsReadFromReplicaWhileItExists() {
+        final SimpleSession read = sessionDAO.readSession(session.getId());
+        assertNotNull(read);
+        assertEquals(session.getId(), read.getId());
+    }
+
+    @Test
+    public void deletedSessionIsNotReadFromLaggingReplica() {
+        sessionDAO.delete(session);
+        assertNotNull(laggingSessionCache.opsForValue().get(sessionDAO.getSessionKey(session.getId())));
+        assertNull(sessionDAO.readSession(session.getId()));
+    }
+
+    @Test
+    public void clearedAuthoritiesAreNotReadFromLaggingReplica() {
+        final List<GrantedAuthority> authorities = Arrays.asList(new SimpleGrantedAuthority("admin"), new SimpleGrantedAuthority("user"));
+        sessionDAO.setUserAuthorities(session.getId(), authorities);
+        assertEquals(2, sessionDAO.getUserAuthorities(session.getId()).size());
+        //副本上仍然是清除前的权限引用和权限集合
+        final String contentHash = primaryActiveUserCache.opsForValue().get(sessionDAO.getAuthorityRefKey(session.getId()));
+        laggingActiveUserCache.opsForValue().set(sessionDAO.getAuthorityRefKey(session.getId()), contentHash);
+        laggingUserAuthCache.opsForValue().set(sessionDAO.getAuthoritySetKey(contentHash), authorities);
+        sessionDAO.clearUserAuthorities(session.getId());
+        assertNull(sessionDAO.getUserAuthorities(session.getId()));
+        laggingUserAuthCache.delete(sessionDAO.getAuthoritySetKey(contentHash));
+    }
+
+    @Test
+    public void authoritySetsAreReadFromReplica() {
+        sessionDAO.setUserAuthorities(session.getId(), Collections.singletonList(new SimpleGrantedAuthority("user")));
+        final String contentHash = primaryActiveUserCache.opsForValue().get(sessionDAO.getAuthorityRefKey(session.getId()));
+        final String setKey = sessionDAO.getAuthoritySetKey(contentHash);
+        //权限集合只留在副本上，本地没有缓存的节点从副本读取
+        laggingUserAuthCache.opsForValue().set(setKey, primaryUserAuthCache.opsForValue().get(setKey));
+        primaryUserAuthCache.delete(setKey);
+        final RedisSessionDaoImpl another = newSessionDAO();
+        try {
+            final List<? extends GrantedAuthority> authorities = another.getUserAuthorities(session.getId());
+            assertNotNull(authorities);
+            assertEquals("user", authorities.get(0).getAuthority());
+        } finally {
+            another.shutdown();
+            laggingUserAuthCache.delete(setKey);
+        }
+    }
+}
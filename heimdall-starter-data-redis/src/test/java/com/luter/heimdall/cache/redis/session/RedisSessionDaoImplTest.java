@@ -0,0 +1,53 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.cache.redis.session;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Redis Session DAO 测试
+ *
+ * @author Luter
+ */
+public class RedisSessionDaoImplTest {
+    private static final long BUCKET = RedisSessionDaoImpl.SUMMARY_REFRESH_MILLIS;
+
+    @Test
+    public void summaryIsNotRewrittenWithinOneInterval() {
+        final long start = 100 * BUCKET;
+        assertFalse(RedisSessionDaoImpl.isSummaryStale(new Date(start), new Date(start + BUCKET - 1)));
+        assertFalse(RedisSessionDaoImpl.isSummaryStale(new Date(start + 10), new Date(start + 20)));
+    }
+
+    @Test
+    public void summaryIsRewrittenWhenAccessCrossesAnInterval() {
+        final long start = 100 * BUCKET;
+        assertTrue(RedisSessionDaoImpl.isSummaryStale(new Date(start - 1), new Date(start)));
+        assertTrue(RedisSessionDaoImpl.isSummaryStale(new Date(start), new Date(start + 3 * BUCKET)));
+    }
+
+    @Test
+    public void summaryWithoutPreviousAccessIsRewritten() {
+        assertTrue(RedisSessionDaoImpl.isSummaryStale(null, new Date()));
+    }
+}
@@ -18,10 +18,15 @@
 
 package com.luter.heimdall.boot.starter.config;
 
+import com.luter.heimdall.boot.starter.endpoint.CapabilityManifestEndpoint;
+import com.luter.heimdall.boot.starter.interceptor.HandlerMethodRuleBinder;
 import com.luter.heimdall.boot.starter.interceptor.PermBasedAuthorizeInterceptor;
 import com.luter.heimdall.core.manager.AuthorizationManager;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -32,6 +37,12 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  * <p>
  * <p>
  * 2、添加基于 URL 的权限拦截器，Restful 形式授权需要开启此拦截器
+ * <p>
+ * 3、注册系统权限拦截规则与处理器方法的绑定，开启 handler-binding-enabled 后生效
+ * <p>
+ * 4、注册当前登录用户能力清单接口，开启 manifest-enabled 后生效
+ * <p>
+ * 5、应用关闭时关闭授权管理器的后台线程池(用户权限预加载)
  *
  * <p>
  * 如有其他配置需求，继承并且覆盖此类配置即可
@@ -39,19 +50,45 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
  * @author Luter
  */
 @Slf4j
-public abstract class AbstractWebMvcConfigurer implements WebMvcConfigurer {
+public abstract class AbstractWebMvcConfigurer implements WebMvcConfigurer, DisposableBean {
     /**
      * 认证管理器
      */
     @Autowired
     private AuthorizationManager authorizationManager;
 
+    /**
+     * 系统权限拦截规则与处理器方法的绑定
+     * <p>
+     * 需要开启配置: heimdall.security.authority.handler-binding-enabled=true ，否则不生效
+     *
+     * @return the handler method rule binder
+     */
+    @Bean
+    public HandlerMethodRuleBinder handlerMethodRuleBinder() {
+        return new HandlerMethodRuleBinder(authorizationManager);
+    }
+
+    /**
+     * 当前登录用户能力清单接口
+     * <p>
+     * 需要开启配置: heimdall.security.authority.manifest-enabled=true
+     *
+     * @return the capability manifest endpoint
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "heimdall.security.authority", name = "manifest-enabled", havingValue = "true")
+    public CapabilityManifestEndpoint capabilityManifestEndpoint() {
+        log.warn("初始化能力清单接口");
+        return new CapabilityManifestEndpoint(authorizationManager);
+    }
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         //拦截处理操作的匹配路径
         //放开静态拦截
         log.warn("初始化 Url 权限拦截器");
-        registry.addInterceptor(new PermBasedAuthorizeInterceptor(authorizationManager))
+        registry.addInterceptor(new PermBasedAuthorizeInterceptor(authorizationManager, handlerMethodRuleBinder()))
                 //拦截所有路径
                 .addPathPatterns("/**")
                 //排除路径
@@ -66,4 +103,14 @@ public abstract class AbstractWebMvcConfigurer implements WebMvcConfigurer {
                         "/error/**");
 
     }
+
+    /**
+     * 应用关闭时关闭授权管理器的后台线程池
+     */
+    @Override
+    public void destroy() {
+        if (null != authorizationManager) {
+            authorizationManager.shutdown();
+        }
+    }
 }
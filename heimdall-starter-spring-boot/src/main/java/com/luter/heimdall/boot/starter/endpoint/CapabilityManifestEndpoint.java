@@ -0,0 +1,79 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.boot.starter.endpoint;
+
+import com.luter.heimdall.core.authorization.rule.CapabilityManifest;
+import com.luter.heimdall.core.manager.AuthorizationManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * 当前登录用户能力清单接口
+ * <p>
+ * 返回用户具备的权限标识、restful 权限以及可以通过的系统权限拦截规则，带强 ETag ，
+ * 客户端通过 If-None-Match 重新验证，清单没有变化时返回 304 。
+ * <p>
+ * 需要开启配置: heimdall.security.authority.manifest-enabled=true
+ * <p>
+ * 访问路径: heimdall.security.authority.manifest-path ，默认: /heimdall/capabilities
+ *
+ * @author Luter
+ */
+@Slf4j
+@RestController
+@RequestMapping("${heimdall.security.authority.manifest-path:/heimdall/capabilities}")
+public class CapabilityManifestEndpoint {
+    /**
+     * 授权管理器
+     */
+    private final AuthorizationManager authorizationManager;
+
+    /**
+     * 当前登录用户能力清单接口
+     *
+     * @param authorizationManager the authorization manager
+     */
+    public CapabilityManifestEndpoint(AuthorizationManager authorizationManager) {
+        this.authorizationManager = authorizationManager;
+    }
+
+    /**
+     * 获取当前登录用户能力清单
+     *
+     * @param request the request
+     * @return 清单没有变化返回 null ，响应状态为 304
+     */
+    @GetMapping
+    public ResponseEntity<CapabilityManifest> manifest(WebRequest request) {
+        final CapabilityManifest manifest = authorizationManager.getCapabilityManifest();
+        if (request.checkNotModified(manifest.getEtag())) {
+            log.debug("能力清单= 未变化，ETag:{}", manifest.getEtag());
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(manifest.getEtag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(manifest);
+    }
+}
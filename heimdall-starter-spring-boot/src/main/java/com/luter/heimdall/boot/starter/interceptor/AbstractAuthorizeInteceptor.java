@@ -19,9 +19,17 @@
 package com.luter.heimdall.boot.starter.interceptor;
 
 import com.luter.heimdall.core.annotation.*;
+import com.luter.heimdall.core.authorization.requirement.AuthorizationRequirementResolver;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.method.HandlerMethod;
 
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * 权限拦截器抽象类
  *
@@ -29,24 +37,53 @@ import org.springframework.web.method.HandlerMethod;
  */
 @Slf4j
 public abstract class AbstractAuthorizeInteceptor {
+    /**
+     * 授权注解，按优先级排列
+     */
+    private static final List<Class<? extends Annotation>> ANNOTATIONS = Arrays.asList(
+            RequiresUser.class, RequiresRole.class, RequiresRoles.class, RequiresPermission.class, RequiresPermissions.class);
+    /**
+     * 方法上没有任何授权注解
+     */
+    private static final String NONE = "";
+    /**
+     * 控制器方法 -> 方法上的授权注解名称，没有注解为 NONE
+     */
+    private final Map<Method, String> methodAnnotations = new ConcurrentHashMap<>();
+
     /**
      * 判断拦截到从控制器方法上是否存在任何授权注解，如果存在，注解优先
+     * <p>
+     * 与注解切面共用 AuthorizationRequirementResolver 的解析结果，每个方法只解析一次
      *
      * @param method the method
      * @return the string
      */
     public String isAnyAnnotationsExist(HandlerMethod method) {
-        if (method.hasMethodAnnotation(RequiresUser.class)) {
-            return RequiresRole.class.getSimpleName();
-        } else if (method.hasMethodAnnotation(RequiresRole.class)) {
-            return RequiresRole.class.getSimpleName();
-        } else if (method.hasMethodAnnotation(RequiresRoles.class)) {
-            return RequiresRoles.class.getSimpleName();
-        } else if (method.hasMethodAnnotation(RequiresPermission.class)) {
-            return RequiresPermission.class.getSimpleName();
-        } else if (method.hasMethodAnnotation(RequiresPermissions.class)) {
-            return RequiresPermissions.class.getSimpleName();
+        final String annotation = methodAnnotations.computeIfAbsent(method.getMethod(), m -> findMethodAnnotation(method));
+        return NONE.equals(annotation) ? null : annotation;
+    }
+
+    /**
+     * 查找控制器方法上的授权注解
+     * <p>
+     * 先取 AuthorizationRequirementResolver 的解析结果(只包含直接声明在方法上的注解)，
+     * 没有时再按 Spring 的规则查找，支持元注解(组合注解)和接口方法上声明的注解
+     *
+     * @param method the method
+     * @return 注解名称 ，没有返回 NONE
+     */
+    private static String findMethodAnnotation(HandlerMethod method) {
+        final String annotation = AuthorizationRequirementResolver.getInstance()
+                .resolve(method.getMethod(), method.getBeanType()).getMethodAnnotation();
+        if (null != annotation) {
+            return annotation;
+        }
+        for (Class<? extends Annotation> type : ANNOTATIONS) {
+            if (method.hasMethodAnnotation(type)) {
+                return type.getSimpleName();
+            }
         }
-        return null;
+        return NONE;
     }
 }
@@ -0,0 +1,230 @@
+/*
+ *
+ *  *    Copyright 2020-2021 Luter.me
+ *  *
+ *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *    you may not use this file except in compliance with the License.
+ *  *    You may obtain a copy of the License at
+ *  *
+ *  *      http://www.apache.org/licenses/LICENSE-2.0
+ *  *
+ *  *    Unless required by applicable law or agreed to in writing, software
+ *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *    See the License for the specific language governing permissions and
+ *  *    limitations under the License.
+ *
+ */
+
+package com.luter.heimdall.boot.starter.interceptor;
+
+import com.luter.heimdall.core.authorization.rule.AuthorizationRule;
+import com.luter.heimdall.core.authorization.rule.AuthorizationRuleSet;
+import com.luter.heimdall.core.authorization.rule.RouteRuleBinding;
+import com.luter.heimdall.core.config.ConfigManager;
+import com.luter.heimdall.core.manager.AuthorizationManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * 系统权限拦截规则与 Spring MVC 处理器方法的绑定
+ * <p>
+ * 系统启动(ContextRefreshedEvent)时收集全部 RequestMappingHandlerMapping 中处理器方法的路由路径，
+ * 按当前的系统权限拦截规则为每个 (处理器方法, 路由路径) 预先计算命中的规则，并报告不可能命中任何处理器的规则。
+ * <p>
+ * 请求时 Spring MVC 已经确定了处理器方法和匹配到的路由路径，直接取出预先计算的结果授权，不再对全部规则逐条做url匹配。
+ * <p>
+ * 系统权限拦截规则变化(规则集版本号变化)时重新绑定。
+ * <p>
+ * 需要开启配置: heimdall.security.authority.handler-binding-enabled=true
+ *
+ * @author Luter
+ * @see PermBasedAuthorizeInterceptor
+ */
+@Slf4j
+public class HandlerMethodRuleBinder implements ApplicationListener<ContextRefreshedEvent> {
+    /**
+     * 授权管理器
+     */
+    private final AuthorizationManager authorizationManager;
+    /**
+     * 处理器方法 -> 路由路径
+     */
+    private volatile Map<Method, Set<String>> routes;
+    /**
+     * context path ，请求uri 以此开头
+     */
+    private volatile String contextPath = "";
+    /**
+     * 当前规则集版本的绑定结果
+     */
+    private volatile Bindings bindings;
+
+    /**
+     * 系统权限拦截规则与 Spring MVC 处理器方法的绑定
+     *
+     * @param authorizationManager the authorization manager
+     */
+    public HandlerMethodRuleBinder(AuthorizationManager authorizationManager) {
+        this.authorizationManager = authorizationManager;
+    }
+
+    /**
+     * 是否开启
+     *
+     * @return the boolean
+     */
+    public boolean isEnabled() {
+        return ConfigManager.getConfig().getAuthority().isHandlerBindingEnabled();
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+        final ApplicationContext context = event.getApplicationContext();
+        final Map<String, RequestMappingHandlerMapping> mappings = context.getBeansOfType(RequestMappingHandlerMapping.class);
+        if (mappings.isEmpty()) {
+            return;
+        }
+        final Map<Method, Set<String>> collected = new HashMap<>();
+        for (RequestMappingHandlerMapping mapping : mappings.values()) {
+            for (Map.Entry<RequestMappingInfo, HandlerMethod> entry : mapping.getHandlerMethods().entrySet()) {
+                collected.computeIfAbsent(entry.getValue().getMethod(), k -> new LinkedHashSet<>())
+                        .addAll(entry.getKey().getPatternValues());
+            }
+        }
+        if (context instanceof WebApplicationContext) {
+            final ServletContext servletContext = ((WebApplicationContext) context).getServletContext();
+            if (null != servletContext) {
+                this.contextPath = servletContext.getContextPath();
+            }
+        }
+        this.routes = collected;
+        this.bindings = null;
+        log.warn("系统权限规则绑定= 收集到处理器方法总数:{}", collected.size());
+        try {
+            getBindings();
+        } catch (RuntimeException e) {
+            log.warn("系统权限规则绑定= 启动时加载系统权限失败，首次请求时重试:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按预先绑定的规则授权，不通过抛出 UnAuthorizedException 异常
+     * <p>
+     * 只有请求uri与 Spring MVC 解析出的路径完全一致(不含编码字符、路径参数等)，
+     * 并且能被路由路径本身匹配(不是尾部斜杠等放宽匹配的结果)时才使用绑定结果
+     *
+     * @param request the request
+     * @param handler 处理器方法
+     * @return 是否已经按绑定结果完成授权 ，false 表示无法使用绑定结果，调用方需要按url匹配授权
+     */
+    public boolean authorize(HttpServletRequest request, HandlerMethod handler) {
+        if (null == routes) {
+            return false;
+        }
+        final String uri = request.getRequestURI();
+        final Object lookupPath = request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        final Object bestPattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (null == uri || null == lookupPath || null == bestPattern || !isRoutedUri(uri, lookupPath.toString())) {
+            return false;
+        }
+        final Map<String, RouteRuleBinding> handlerBindings = getBindings().get(handler.getMethod());
+        final RouteRuleBinding binding = null == handlerBindings ? null : handlerBindings.get(bestPattern.toString());
+        if (null == binding || !binding.covers(uri, authorizationManager.getPathMatcher())) {
+            // 尾部斜杠等放宽匹配的请求，候选规则不能保证完整，回退到url匹配
+            return false;
+        }
+        final AuthorizationRule rule = binding.match(uri, authorizationManager.getPathMatcher());
+        log.debug("系统权限规则绑定= 请求资源:[{}:{}],路由:[{}],命中规则:[{}]", request.getMethod(), uri, binding.getRoute(), rule);
+        authorizationManager.isAuthorized(rule, request.getMethod(), uri, true);
+        return true;
+    }
+
+    /**
+     * 请求uri 是否就是 context path + Spring MVC 解析出的路径
+     *
+     * @param uri        the uri
+     * @param lookupPath the lookup path
+     * @return the boolean
+     */
+    private boolean isRoutedUri(String uri, String lookupPath) {
+        final String prefix = contextPath;
+        return uri.indexOf('%') < 0 && uri.indexOf(';') < 0
+                && uri.length() == prefix.length() + lookupPath.length()
+                && uri.startsWith(prefix) && uri.startsWith(lookupPath, prefix.length());
+    }
+
+    /**
+     * 获取当前规则集版本的绑定结果，规则集版本变化时重新绑定
+     *
+     * @return the bindings
+     */
+    private Map<Method, Map<String, RouteRuleBinding>> getBindings() {
+        final AuthorizationRuleSet ruleSet = authorizationManager.getRuleSet();
+        Bindings current = bindings;
+        if (null == current || current.version != ruleSet.getVersion()) {
+            synchronized (this) {
+                current = bindings;
+                if (null == current || current.version != ruleSet.getVersion()) {
+                    current = bind(ruleSet);
+                    bindings = current;
+                }
+            }
+        }
+        return current.handlers;
+    }
+
+    /**
+     * 绑定全部处理器方法的路由
+     *
+     * @param ruleSet the rule set
+     * @return the bindings
+     */
+    private Bindings bind(AuthorizationRuleSet ruleSet) {
+        final Map<String, RouteRuleBinding> byRoute = new HashMap<>();
+        final Map<Method, Map<String, RouteRuleBinding>> handlers = new HashMap<>(routes.size());
+        for (Map.Entry<Method, Set<String>> entry : routes.entrySet()) {
+            final Map<String, RouteRuleBinding> handlerBindings = new HashMap<>(entry.getValue().size());
+            for (String pattern : entry.getValue()) {
+                handlerBindings.put(pattern, byRoute.computeIfAbsent(pattern,
+                        p -> ruleSet.bind(contextPath + p, authorizationManager.getPathMatcher())));
+            }
+            handlers.put(entry.getKey(), handlerBindings);
+        }
+        final List<AuthorizationRule> unbound = ruleSet.unboundRules(byRoute.values());
+        for (AuthorizationRule rule : unbound) {
+            log.warn("系统权限规则绑定= 规则:[{}] 不可能命中任何处理器方法，请检查配置", rule.getPattern());
+        }
+        log.warn("系统权限规则绑定= 规则集版本:{}，规则总数:{}，路由总数:{}，未命中任何处理器的规则数:{}",
+                ruleSet.getVersion(), ruleSet.size(), byRoute.size(), unbound.size());
+        return new Bindings(ruleSet.getVersion(), handlers);
+    }
+
+    /**
+     * 某个规则集版本的绑定结果
+     */
+    private static final class Bindings {
+        private final long version;
+        private final Map<Method, Map<String, RouteRuleBinding>> handlers;
+
+        private Bindings(long version, Map<Method, Map<String, RouteRuleBinding>> handlers) {
+            this.version = version;
+            this.handlers = handlers;
+        }
+    }
+}
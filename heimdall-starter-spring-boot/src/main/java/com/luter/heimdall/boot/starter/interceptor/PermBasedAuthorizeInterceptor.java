@@ -57,6 +57,10 @@ public class PermBasedAuthorizeInterceptor extends AbstractAuthorizeInteceptor i
      * 授权管理器
      */
     private final AuthorizationManager authorizationManager;
+    /**
+     * 系统权限拦截规则与处理器方法的绑定，可以为空
+     */
+    private final HandlerMethodRuleBinder ruleBinder;
 
     /**
      * 基于Url的授权拦截器
@@ -66,7 +70,20 @@ public class PermBasedAuthorizeInterceptor extends AbstractAuthorizeInteceptor i
      * @param authorizationManager the authorization manager
      */
     public PermBasedAuthorizeInterceptor(AuthorizationManager authorizationManager) {
+        this(authorizationManager, null);
+    }
+
+    /**
+     * 基于Url的授权拦截器
+     * <p>
+     * 开启了处理器方法绑定时，优先使用预先绑定到处理器方法的规则授权
+     *
+     * @param authorizationManager the authorization manager
+     * @param ruleBinder           系统权限拦截规则与处理器方法的绑定
+     */
+    public PermBasedAuthorizeInterceptor(AuthorizationManager authorizationManager, HandlerMethodRuleBinder ruleBinder) {
         this.authorizationManager = authorizationManager;
+        this.ruleBinder = ruleBinder;
     }
 
 
@@ -92,7 +109,9 @@ public class PermBasedAuthorizeInterceptor extends AbstractAuthorizeInteceptor i
             log.info("方法:{}#{}() 上存在权限注解 @{} ,优先使用注解授权", declaringClass.getName(), method.getMethod().getName(), anyAnnotationExist);
         } else {
             log.info("方法:{}#{}() 上不存在任何权限注解，执行拦截器授权", declaringClass.getName(), method.getMethod().getName());
-            authorizationManager.authorize(request);
+            if (null == ruleBinder || !ruleBinder.isEnabled() || !ruleBinder.authorize(request, method)) {
+                authorizationManager.authorize(request);
+            }
         }
         return true;
 